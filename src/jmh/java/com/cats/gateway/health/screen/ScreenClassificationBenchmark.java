@@ -0,0 +1,101 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the screen classification by the shipped screen profiles on the 4CIF and 1080p fixture screenshots in
+ * src/test/resources/screens, compared with the legacy per pixel classification, and of the full and DC coefficient
+ * decoding of the screenshots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScreenClassificationBenchmark {
+
+    @Param({"4cif", "1080p"})
+    String resolution;
+
+    @Param({"black", "blue", "green", "partial-green", "normal"})
+    String screen;
+
+    @Param({"1", "2"})
+    int stride;
+
+    ScreenClassifier screenClassifier;
+
+    BufferedImage image;
+
+    byte[] jpeg;
+
+    @Setup
+    public void setup() throws IOException {
+        screenClassifier = new ScreenClassifier(stride, ScreenProfiles.shipped());
+        try (InputStream in = getClass().getResourceAsStream("/screens/" + resolution + "-" + screen + ".jpg")) {
+            jpeg = in.readAllBytes();
+        }
+        image = ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Benchmark
+    public ScreenClassification classify() {
+        return screenClassifier.classify(image);
+    }
+
+    @Benchmark
+    public String legacyScreenInfo() {
+        return LegacyScreenClassification.screenInfo(image);
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(jpeg));
+    }
+
+    @Benchmark
+    public BufferedImage decodeThumbnail() {
+        return JpegDcDecoder.decodeThumbnail(jpeg);
+    }
+
+    @Benchmark
+    public ScreenClassification decodeAndClassifyThumbnail() {
+        return screenClassifier.classify(new ScreenFrame(JpegDcDecoder.decodeThumbnail(jpeg), 8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.cats.gateway.slotmapping.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the Jackson serialization and deserialization of the slot mappings file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlotToPortMappingsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int slots;
+
+    ObjectMapper objectMapper;
+
+    SlotToPortMappings mappings;
+
+    byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper();
+        mappings = new SlotToPortMappings();
+        List<Device> devices = new ArrayList<>();
+        for (int id = 1; id <= (slots + 15) / 16; id++) {
+            devices.add(new Device(id, null, null, String.valueOf(28000 + id), String.valueOf(28400 + id),
+                    String.valueOf(25500 + id), "Axis.P7216", 16));
+        }
+        for (int i = 0; i < slots; i++) {
+            mappings.addMapping(String.valueOf(i + 1), (i / 16 + 1) + ":" + (i % 16 + 1));
+        }
+        mappings.setDevices(devices);
+        mappings.setRackHost("rack.example");
+        mappings.setRackIp("10.0.0.1");
+        json = objectMapper.writeValueAsBytes(mappings);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(mappings);
+    }
+
+    @Benchmark
+    public SlotToPortMappings deserialize() throws IOException {
+        return objectMapper.readValue(json, SlotToPortMappings.class);
+    }
+}
@@ -0,0 +1,75 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the url generation of the Axis and Hanwha video devices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VideoUrlBenchmark {
+
+    @Param({"Axis", "Hanwha"})
+    String vendor;
+
+    @Param({"", "704x480", "1920x1080"})
+    String resolution;
+
+    VideoDevice videoDevice;
+
+    @Setup
+    public void setup() {
+        videoDevice = vendor.equals("Axis")
+                ? new AxisVideoDevice(null, null, "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null)
+                : new HanwhaVideoDevice(null, null, "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null);
+    }
+
+    @Benchmark
+    public String videoUrl() {
+        return videoDevice.getVideoUrl(3, resolution, "h264", "1", "15", true, false, false);
+    }
+
+    @Benchmark
+    public String rtspUrl() {
+        return videoDevice.getVideoUrl(3, resolution, "h264", "1", "15", true, false, true);
+    }
+
+    @Benchmark
+    public String snapshotUrl() {
+        return videoDevice.getSnapShotUrl(3, resolution, "", "0", true, false);
+    }
+}
@@ -0,0 +1,102 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.video.SlotRoute;
+import com.cats.gateway.video.VideoDeviceFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the slot resolution through the gateway services, from a slot number or request path to the video
+ * device and outlet serving it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlotResolutionBenchmark {
+
+    @Param({"16", "256"})
+    int slots;
+
+    VideoService videoService;
+
+    int slot;
+
+    String path;
+
+    @Setup
+    public void setup() {
+        SlotToPortMappings mappings = new SlotToPortMappings();
+        List<Device> devices = new ArrayList<>();
+        int devicesNeeded = (slots + 15) / 16;
+        for (int id = 1; id <= devicesNeeded; id++) {
+            devices.add(new Device(id, null, null, String.valueOf(28000 + id), String.valueOf(28400 + id),
+                    String.valueOf(25500 + id), "Axis.P7216", 16));
+        }
+        for (int i = 0; i < slots; i++) {
+            mappings.addMapping(String.valueOf(i + 1), (i / 16 + 1) + ":" + (i % 16 + 1));
+        }
+        mappings.setDevices(devices);
+        mappings.setRackHost("rack.example");
+        mappings.setRackIp("10.0.0.1");
+
+        VideoDeviceFactory videoDeviceFactory = new VideoDeviceFactory();
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, mappings));
+        videoService = new VideoService();
+        videoService.videoDeviceFactory = videoDeviceFactory;
+
+        slot = slots / 2 + 1;
+        path = "/video/rest/axis/slot/" + slot + "/mjpg/video.mjpg";
+    }
+
+    @Benchmark
+    public SlotRoute route() {
+        return videoService.getRoute(slot);
+    }
+
+    @Benchmark
+    public String videoUrl() {
+        return videoService.generateVideoUrl(slot, "704x480", "", "", "15", true, false, false);
+    }
+
+    @Benchmark
+    public String snapshotUrlFromPath() {
+        return videoService.generateSnapShotUrl(path, "704x480", "", "", true, false);
+    }
+}
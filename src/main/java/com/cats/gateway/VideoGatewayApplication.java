@@ -24,9 +24,11 @@ import io.swagger.v3.oas.annotations.info.License;
 import io.swagger.v3.oas.annotations.servers.Server;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @OpenAPIDefinition( info = @Info(title = "Video-Gateway", version = "${build.version}", description = "API documentation for usage of video gateway microservice."))
 @SpringBootApplication
+@EnableScheduling
 public class VideoGatewayApplication {
 
 	public static void main(String[] args) {
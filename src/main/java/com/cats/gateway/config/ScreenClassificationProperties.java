@@ -0,0 +1,75 @@
+package com.cats.gateway.config;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration class to hold the profiles the screens of video outlets are classified by. Colors are named unions of
+ * boxes of rgb or ycbcr values, regions are named rectangles given as fractions of the screen, and profiles name a
+ * screen once the coverage of colors in regions meets all of their conditions.
+ **/
+@Data
+@Component
+@ConfigurationProperties(prefix = "video.health.screen.classification")
+public class ScreenClassificationProperties {
+
+    /**
+     * Named colors, in the order of the coverage reported per region.
+     */
+    private Map<String, ColorRange> colors = new LinkedHashMap<>();
+
+    /**
+     * Named regions as left,top,right,bottom fractions of the screen, such as 1/3 or 0.25.
+     */
+    private Map<String, String> regions = new LinkedHashMap<>();
+
+    /**
+     * Profiles in the order they are matched, the first matching profile names the screen.
+     */
+    private List<Profile> profiles = new ArrayList<>();
+
+    /**
+     * Range of a color as boxes of values separated by ;, each box given as lo-hi,lo-hi,lo-hi ranges of the three
+     * channels. A pixel is of the color if it is within any of its rgb or ycbcr boxes.
+     */
+    @Data
+    public static class ColorRange {
+        private String rgb;
+        private String ycbcr;
+    }
+
+    /**
+     * Profile of a screen. Conditions are given as region:color>=percent or region:color<=percent of the pixels of the
+     * region. Screens of still frame profiles are only reported once a later frame shows the screen has not moved.
+     */
+    @Data
+    public static class Profile {
+        private String name;
+        private boolean stillFrame;
+        private List<String> conditions = new ArrayList<>();
+    }
+}
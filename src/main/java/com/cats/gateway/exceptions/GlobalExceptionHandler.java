@@ -20,6 +20,8 @@ package com.cats.gateway.exceptions;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -63,18 +65,19 @@ public class GlobalExceptionHandler {
     }
 
     /**
-     * Handle VideoGatewayException
+     * Handle VideoGatewayException. Server errors, e.g. an unreachable video device, keep their status, all other
+     * errors are reported as bad request.
      *
      * @param e
      *  -- VideoGatewayException
      * @return
      *  -- error message
      */
-    @ResponseStatus(code = HttpStatus.BAD_REQUEST)
     @ExceptionHandler(value = VideoGatewayException.class)
-    public String videoGatewayException(VideoGatewayException e) {
+    public ResponseEntity<String> videoGatewayException(VideoGatewayException e) {
         log.warn("Exception caught : {}", e.getMessage());
-        return e.getMessage();
+        HttpStatusCode status = e.getStatusCode().is5xxServerError() ? e.getStatusCode() : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(e.getMessage());
     }
 
     /**
@@ -0,0 +1,41 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Pojo class to hold whether the screen of a slot has been frozen, as seen in the frames captured of the slot.
+ * */
+@Schema(description = "Represents how long the screen of a slot has been unchanged in the frames captured of the slot.")
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FreezeStatus {
+    private Integer slot;
+    private Boolean frozen;
+    private Boolean truncated;
+    private String unchangedSince;
+    private Long unchangedMillis;
+    private Integer unchangedFrames;
+    private String lastCapturedAt;
+    private Integer frames;
+    private String hash;
+}
@@ -34,4 +34,5 @@ public class HealthReport {
     String host;
     Map<String,String> version;
     Map<String,String> metadata;
+    String checkedAt;
 }
@@ -0,0 +1,63 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Immutable result of a background health check run. The snapshot holds a copy of the report with unmodifiable lists,
+ * so that the report of the run can no longer change the snapshot; the device and slot reports in the lists are shared
+ * with the run and must never be modified once the snapshot has been published.
+ *
+ * @param report
+ *      -- video health report of the run
+ * @param refreshedAt
+ *      -- time at which the run completed
+ * @param probeDuration
+ *      -- time taken by the run
+ */
+public record HealthSnapshot(HealthStatusBean report, Instant refreshedAt, Duration probeDuration) {
+
+    public HealthSnapshot {
+        report = copyOf(report);
+    }
+
+    private static HealthStatusBean copyOf(HealthStatusBean report) {
+        HealthStatusBean copy = new HealthStatusBean();
+        copy.setVersion(report.getVersion() != null ? Collections.unmodifiableMap(new HashMap<>(report.getVersion())) : null);
+        copy.setIsHealthy(report.getIsHealthy());
+        copy.setHwDevicesHealthStatus(copyOf(report.getHwDevicesHealthStatus()));
+        copy.setSlotHealthStatus(copyOf(report.getSlotHealthStatus()));
+        copy.setDependenciesHealthStatus(copyOf(report.getDependenciesHealthStatus()));
+        copy.setLeaseHealthStatus(report.getLeaseHealthStatus());
+        copy.setRemarks(report.getRemarks());
+        copy.setRefreshedAt(report.getRefreshedAt());
+        copy.setAgeMillis(report.getAgeMillis());
+        return copy;
+    }
+
+    private static <T> List<T> copyOf(List<T> list) {
+        return list != null ? Collections.unmodifiableList(new ArrayList<>(list)) : null;
+    }
+}
@@ -34,9 +34,12 @@ public class HealthStatusBean {
     Map<String,String> version = new HashMap<>();
     Boolean isHealthy;
     List<HealthReport> hwDevicesHealthStatus;
+    List<HealthReport> slotHealthStatus;
     List<HealthReport> dependenciesHealthStatus;
     RouterLeaseStatus leaseHealthStatus;
     String remarks;
+    String refreshedAt;
+    Long ageMillis;
 
 
 }
@@ -0,0 +1,44 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Lease status of the video devices as fetched from the router capability API.
+ *
+ * @param statuses
+ *      -- lease status of the VID and MTR entries of the router
+ * @param fetchedAt
+ *      -- time at which the lease status was fetched
+ * @param error
+ *      -- error of the last refresh if the lease status is served stale, null otherwise
+ */
+public record LeaseStatusSnapshot(List<RouterLeaseStatus> statuses, Instant fetchedAt, String error) {
+
+    /**
+     * Method to check whether the lease status is served after a failed refresh.
+     *
+     * @return boolean
+     */
+    public boolean isStale() {
+        return error != null;
+    }
+}
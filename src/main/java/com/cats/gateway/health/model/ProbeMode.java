@@ -0,0 +1,37 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+/**
+ * Mode of the health probe of a video device.
+ */
+public enum ProbeMode {
+    /**
+     * Requests a small status endpoint of the video device, no frame is captured.
+     */
+    LIGHT,
+    /**
+     * Downloads a full snapshot of the video device.
+     */
+    FULL,
+    /**
+     * Sends an rtsp OPTIONS request to the rtsp url of the outlet.
+     */
+    RTSP
+}
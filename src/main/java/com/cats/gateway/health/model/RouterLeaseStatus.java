@@ -30,4 +30,7 @@ public class RouterLeaseStatus {
     List<LeaseMetadata> metadata;
     Boolean isHealthy;
     String comment;
+    String fetchedAt;
+    Long ageMillis;
+    Boolean stale;
 }
@@ -0,0 +1,37 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Pojo class to hold a change of the screen observed on the video stream of a slot.
+ * */
+@Schema(description = "Represents a change of the screen of a monitored slot.")
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ScreenTransition {
+    private Integer slot;
+    private String screen;
+    private String previousScreen;
+    private String at;
+    private String error;
+}
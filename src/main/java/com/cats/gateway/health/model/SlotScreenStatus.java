@@ -0,0 +1,41 @@
+package com.cats.gateway.health.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Pojo class to hold the screen observed on a slot, or the error which prevented checking it.
+ * */
+@Schema(description = "Represents the status of the screen of a slot.")
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SlotScreenStatus {
+    private Integer slot;
+    private String screen;
+    private Double confidence;
+    private Map<String, Map<String, Double>> coverage;
+    private Integer status;
+    private String error;
+    private Long durationMillis;
+}
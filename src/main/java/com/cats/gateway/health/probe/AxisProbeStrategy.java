@@ -0,0 +1,81 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.VideoType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Probe of Axis encoders through VAPIX. The light probe reads /axis-cgi/videostatus.cgi, which reports whether the
+ * outlet receives a video signal.
+ */
+@Component
+public class AxisProbeStrategy extends HttpProbeStrategy {
+
+    private static final String NO_VIDEO = "no video";
+
+    private final Duration timeout;
+
+    private final int retries;
+
+    public AxisProbeStrategy(@Value("${video.health.probe.vapix.timeout:2000}") long timeout,
+                             @Value("${video.health.probe.vapix.retries:1}") int retries) {
+        this.timeout = Duration.ofMillis(timeout);
+        this.retries = retries;
+    }
+
+    @Override
+    public String name() {
+        return "vapix";
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+
+    @Override
+    public int retries() {
+        return retries;
+    }
+
+    @Override
+    public boolean supports(ProbeMode probeMode, VideoType videoType) {
+        return probeMode != ProbeMode.RTSP && (videoType == VideoType.AXIS_P7216 || videoType == VideoType.AXIS_FA54);
+    }
+
+    @Override
+    String statusPath(ProbeTarget target) {
+        return "/axis-cgi/videostatus.cgi?status=" + target.outlet();
+    }
+
+    @Override
+    String snapshotPath(ProbeTarget target) {
+        return "/axis-cgi/jpg/image.cgi?camera=" + target.outlet();
+    }
+
+    @Override
+    String checkStatus(ProbeTarget target, String body) {
+        return body.contains(NO_VIDEO) ? "No video signal on outlet " + target.outlet() : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.VideoType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Probe of Hanwha encoders through SUNAPI. The light probe checks the event status of the channel of the outlet,
+ * which reports a video loss. Hanwha channels are numbered from 0.
+ */
+@Component
+public class HanwhaProbeStrategy extends HttpProbeStrategy {
+
+    private static final String VIDEO_LOSS = "VideoLoss=True";
+
+    private final Duration timeout;
+
+    private final int retries;
+
+    public HanwhaProbeStrategy(@Value("${video.health.probe.sunapi.timeout:2000}") long timeout,
+                               @Value("${video.health.probe.sunapi.retries:1}") int retries) {
+        this.timeout = Duration.ofMillis(timeout);
+        this.retries = retries;
+    }
+
+    @Override
+    public String name() {
+        return "sunapi";
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+
+    @Override
+    public int retries() {
+        return retries;
+    }
+
+    @Override
+    public boolean supports(ProbeMode probeMode, VideoType videoType) {
+        return probeMode != ProbeMode.RTSP && videoType == VideoType.HANWHA_SPE_1620;
+    }
+
+    @Override
+    String statusPath(ProbeTarget target) {
+        return "/stw-cgi/eventstatus.cgi?msubmenu=eventstatus&action=check&Channel=" + (target.outlet() - 1);
+    }
+
+    @Override
+    String snapshotPath(ProbeTarget target) {
+        return "/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=" + (target.outlet() - 1);
+    }
+
+    @Override
+    String checkStatus(ProbeTarget target, String body) {
+        return body.contains(VIDEO_LOSS) ? "No video signal on outlet " + target.outlet() : null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.ProbeMode;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the strategies probing the http api of an encoder. The light probe reads the small status response
+ * of the outlet, the full probe downloads a snapshot of the outlet counting its bytes without buffering them.
+ */
+abstract class HttpProbeStrategy implements ProbeStrategy {
+
+    /**
+     * @param target
+     *      -- outlet to probe
+     * @return String
+     *      -- path and query of the status request of the outlet
+     */
+    abstract String statusPath(ProbeTarget target);
+
+    /**
+     * @param target
+     *      -- outlet to probe
+     * @return String
+     *      -- path and query of the snapshot request of the outlet
+     */
+    abstract String snapshotPath(ProbeTarget target);
+
+    /**
+     * @param target
+     *      -- probed outlet
+     * @param body
+     *      -- body of the status response
+     * @return String
+     *      -- reason the outlet is unhealthy, null if the status reports a video signal
+     */
+    abstract String checkStatus(ProbeTarget target, String body);
+
+    @Override
+    public Mono<HealthReport> probe(WebClient webClient, ProbeTarget target, ProbeMode probeMode) {
+        String path = probeMode == ProbeMode.FULL ? snapshotPath(target) : statusPath(target);
+        String url = "http://" + target.videoDevice().internalIp() + ":" + target.videoDevice().internalPort() + path;
+
+        return Mono.defer(() -> {
+            // every attempt reports in its own report, so that a retried attempt does not share the metadata of the
+            // failed one
+            HealthReport healthReport = ProbeStrategy.newReport(target, probeMode, name());
+            long start = System.nanoTime();
+            return webClient.get()
+                    .uri(url)
+                    .exchangeToMono(response -> {
+                        Mono<String> body = probeMode == ProbeMode.FULL
+                                ? response.bodyToFlux(DataBuffer.class)
+                                        .map(buffer -> {
+                                            int size = buffer.readableByteCount();
+                                            DataBufferUtils.release(buffer);
+                                            return (long) size;
+                                        })
+                                        .reduce(0L, Long::sum)
+                                        .map(bytes -> {
+                                            healthReport.getMetadata().put("bytes", String.valueOf(bytes));
+                                            return "";
+                                        })
+                                : response.bodyToMono(String.class);
+                        return body.defaultIfEmpty("").map(content -> {
+                            healthReport.getMetadata().put("status", String.valueOf(response.statusCode().value()));
+                            healthReport.getMetadata().put("latencyMillis", String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                            String problem = !response.statusCode().is2xxSuccessful()
+                                    ? "Video device responded with " + response.statusCode().value()
+                                    : probeMode == ProbeMode.FULL ? null : checkStatus(target, content);
+                            healthReport.setIsHealthy(problem == null);
+                            healthReport.setRemarks(problem);
+                            healthReport.setCheckedAt(Instant.now().toString());
+                            return healthReport;
+                        });
+                    });
+        });
+    }
+}
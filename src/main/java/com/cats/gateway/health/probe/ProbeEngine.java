@@ -0,0 +1,138 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.VideoType;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.VideoDeviceClients;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Engine running the health probes of video device outlets. The strategy of a probe is picked by the probe mode and
+ * the device type, every attempt is bounded by the timeout of the strategy and failed attempts are retried within its
+ * retry budget. Attempts go through the circuit breaker of the device, an open breaker fails the probe at once
+ * without retries. Probes are started on a bounded scheduler and never fail: errors, timeouts and unsupported devices
+ * are reported as unhealthy outlets, so a single device can not fail the health of the rack.
+ */
+@Slf4j
+@Component
+public class ProbeEngine {
+
+    @Autowired
+    private List<ProbeStrategy> strategies;
+
+    @Autowired
+    private VideoDeviceClients videoDeviceClients;
+
+    @Autowired
+    private DeviceCircuitBreakers deviceCircuitBreakers;
+
+    @Value("${video.health.probe.retry-backoff:200}")
+    private long retryBackoff;
+
+    private final Scheduler scheduler;
+
+    public ProbeEngine(@Value("${video.health.probe.threads:4}") int threads) {
+        this.scheduler = Schedulers.newBoundedElastic(threads, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "health-probe");
+    }
+
+    /**
+     * Method to probe an outlet.
+     *
+     * @param target
+     *      -- outlet to probe
+     * @param probeMode
+     *      -- requested probe mode
+     * @return Mono<HealthReport>
+     *      -- health report of the outlet, never an error
+     */
+    public Mono<HealthReport> probe(ProbeTarget target, ProbeMode probeMode) {
+        if (target.device() == null) {
+            return Mono.just(unhealthy(target, probeMode, null, "Video device not configured"));
+        }
+        VideoType videoType = VideoType.findType(target.device().getType());
+        if (target.videoDevice() == null) {
+            return Mono.just(unhealthy(target, probeMode, null, "Video device type " + target.device().getType() + " is not supported"));
+        }
+        ProbeStrategy strategy = strategies.stream()
+                .filter(candidate -> candidate.supports(probeMode, videoType))
+                .findFirst()
+                .orElse(null);
+        if (strategy == null) {
+            return Mono.just(unhealthy(target, probeMode, null, "No " + probeMode.name().toLowerCase() + " probe available for " + target.device().getType()));
+        }
+
+        AtomicInteger attempts = new AtomicInteger();
+        return Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return deviceCircuitBreakers.protect(target.device(),
+                            strategy.probe(videoDeviceClients.forDevice(target.device()), target, probeMode).timeout(strategy.timeout()));
+                })
+                .retryWhen(Retry.backoff(strategy.retries(), Duration.ofMillis(retryBackoff))
+                        .filter(e -> !(e instanceof ResponseStatusException)))
+                .map(report -> {
+                    report.getMetadata().put("attempts", String.valueOf(attempts.get()));
+                    return report;
+                })
+                .onErrorResume(e -> {
+                    Throwable cause = Exceptions.isRetryExhausted(e) ? e.getCause() : e;
+                    String remarks = cause instanceof TimeoutException
+                            ? "Probe timed out after " + strategy.timeout().toMillis() + " ms"
+                            : cause instanceof ResponseStatusException statusException ? statusException.getReason() : cause.getMessage();
+                    HealthReport report = unhealthy(target, probeMode, strategy.name(), remarks);
+                    report.getMetadata().put("attempts", String.valueOf(attempts.get()));
+                    return Mono.just(report);
+                })
+                .subscribeOn(scheduler);
+    }
+
+    private HealthReport unhealthy(ProbeTarget target, ProbeMode probeMode, String strategy, String remarks) {
+        HealthReport report = ProbeStrategy.newReport(target, probeMode, strategy);
+        report.setIsHealthy(false);
+        report.setRemarks(remarks);
+        report.setCheckedAt(Instant.now().toString());
+        return report;
+    }
+
+    /**
+     * Method to stop the probe scheduler on shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,108 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.VideoType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Strategy to probe the health of an outlet of a video device. Strategies are picked by the {@link ProbeEngine}
+ * based on the probe mode and the type of the device; the engine applies the timeout and retry budget of the
+ * strategy and turns errors into unhealthy reports.
+ */
+public interface ProbeStrategy {
+
+    /**
+     * @return String
+     *      -- name of the strategy, reported in the metadata of the health report
+     */
+    String name();
+
+    /**
+     * @param probeMode
+     *      -- requested probe mode
+     * @param videoType
+     *      -- type of the device, null if unknown
+     * @return boolean
+     *      -- true if the strategy can probe devices of the type in the given mode
+     */
+    boolean supports(ProbeMode probeMode, VideoType videoType);
+
+    /**
+     * @return Duration
+     *      -- time after which a single probe attempt fails
+     */
+    Duration timeout();
+
+    /**
+     * @return int
+     *      -- number of times a failed attempt is retried
+     */
+    int retries();
+
+    /**
+     * Method to probe an outlet. Unhealthy responses of the device are reported in the health report, errors such as
+     * unreachable devices are signalled as errors so the engine can retry them.
+     *
+     * @param webClient
+     *      -- client of the video device
+     * @param target
+     *      -- outlet to probe
+     * @param probeMode
+     *      -- requested probe mode
+     * @return Mono<HealthReport>
+     *      -- health report of the outlet
+     */
+    Mono<HealthReport> probe(WebClient webClient, ProbeTarget target, ProbeMode probeMode);
+
+    /**
+     * Method to create the health report of an outlet with the common device details and metadata.
+     *
+     * @param target
+     *      -- probed outlet
+     * @param probeMode
+     *      -- requested probe mode
+     * @param strategy
+     *      -- name of the strategy
+     * @return HealthReport
+     */
+    static HealthReport newReport(ProbeTarget target, ProbeMode probeMode, String strategy) {
+        HealthReport healthReport = new HealthReport();
+        if (target.videoDevice() != null) {
+            String internalIp = target.videoDevice().internalIp();
+            healthReport.setHost(internalIp);
+            healthReport.setEntity("VID" + internalIp.substring(internalIp.length() - 2));
+        }
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("probe", probeMode.name().toLowerCase());
+        metadata.put("outlet", String.valueOf(target.outlet()));
+        if (strategy != null) {
+            metadata.put("strategy", strategy);
+        }
+        healthReport.setMetadata(metadata);
+        return healthReport;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.video.VideoDevice;
+
+/**
+ * Outlet of a video device to be probed.
+ *
+ * @param slot
+ *      -- slot wired to the outlet, null if the device is probed without a mapped slot
+ * @param device
+ *      -- device to probe, null if the slot is mapped to a device which is not configured
+ * @param videoDevice
+ *      -- video device of the device, null if the device type is not supported
+ * @param outlet
+ *      -- outlet of the device
+ */
+public record ProbeTarget(Integer slot, Device device, VideoDevice videoDevice, int outlet) {
+}
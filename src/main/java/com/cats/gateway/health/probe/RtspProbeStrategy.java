@@ -0,0 +1,108 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.VideoType;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vendor independent probe of the rtsp url of an outlet. An OPTIONS request is sent to the rtsp port of the device,
+ * the outlet is healthy if the rtsp server answers with a success status.
+ */
+@Component
+public class RtspProbeStrategy implements ProbeStrategy {
+
+    private static final int DEFAULT_RTSP_PORT = 554;
+
+    private final Duration timeout;
+
+    private final int retries;
+
+    public RtspProbeStrategy(@Value("${video.health.probe.rtsp.timeout:2000}") long timeout,
+                             @Value("${video.health.probe.rtsp.retries:1}") int retries) {
+        this.timeout = Duration.ofMillis(timeout);
+        this.retries = retries;
+    }
+
+    @Override
+    public String name() {
+        return "rtsp";
+    }
+
+    @Override
+    public Duration timeout() {
+        return timeout;
+    }
+
+    @Override
+    public int retries() {
+        return retries;
+    }
+
+    @Override
+    public boolean supports(ProbeMode probeMode, VideoType videoType) {
+        return probeMode == ProbeMode.RTSP;
+    }
+
+    @Override
+    public Mono<HealthReport> probe(WebClient webClient, ProbeTarget target, ProbeMode probeMode) {
+        String url = target.videoDevice().getVideoUrl(target.outlet(), "", "", "", "", false, false, true);
+        URI uri = URI.create(url);
+        String request = "OPTIONS " + url + " RTSP/1.0\r\nCSeq: 1\r\nUser-Agent: video-gateway\r\n\r\n";
+
+        return Mono.defer(() -> {
+            HealthReport healthReport = ProbeStrategy.newReport(target, probeMode, name());
+            long start = System.nanoTime();
+            return TcpClient.newConnection()
+                    .host(uri.getHost())
+                    .port(uri.getPort() > 0 ? uri.getPort() : DEFAULT_RTSP_PORT)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeout.toMillis())
+                    .connect()
+                    .flatMap(connection -> connection.outbound()
+                            .sendString(Mono.just(request), StandardCharsets.US_ASCII)
+                            .then()
+                            .then(connection.inbound().receive().asString(StandardCharsets.US_ASCII).next())
+                            .doFinally(signal -> connection.dispose()))
+                    .map(response -> {
+                        String statusLine = response.lines().findFirst().orElse("");
+                        String[] parts = statusLine.split(" ", 3);
+                        boolean success = parts.length >= 2 && parts[0].startsWith("RTSP/") && parts[1].startsWith("2");
+                        healthReport.getMetadata().put("status", parts.length >= 2 ? parts[1] : "");
+                        healthReport.getMetadata().put("latencyMillis", String.valueOf(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                        healthReport.setIsHealthy(success);
+                        healthReport.setRemarks(success ? null : "Rtsp server responded with " + statusLine);
+                        healthReport.setCheckedAt(Instant.now().toString());
+                        return healthReport;
+                    });
+        });
+    }
+}
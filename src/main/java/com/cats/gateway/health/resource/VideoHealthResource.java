@@ -18,8 +18,16 @@ package com.cats.gateway.health.resource;
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import com.cats.gateway.health.model.FreezeStatus;
 import com.cats.gateway.health.model.HealthStatusBean;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.health.model.ScreenTransition;
+import com.cats.gateway.health.model.SlotScreenStatus;
+import com.cats.gateway.health.service.FrameHistory;
+import com.cats.gateway.health.service.HealthPoller;
 import com.cats.gateway.health.service.HealthService;
+import com.cats.gateway.health.service.ScreenMonitor;
+import com.cats.gateway.video.resource.SlotRange;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -29,12 +37,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+
 @Tag(name = "Video Health Resource", description = "Api to get video health status")
 @RestController
 public class VideoHealthResource {
@@ -42,12 +58,29 @@ public class VideoHealthResource {
     @Autowired
     private HealthService healthService;
 
+    @Autowired
+    private HealthPoller healthPoller;
+
+    @Autowired
+    private ScreenMonitor screenMonitor;
+
+    @Autowired
+    private FrameHistory frameHistory;
+
+    @Value("${video.health.monitor.heartbeat:15000}")
+    private long monitorHeartbeat;
+
     /**
-     * Method to get the video health status of all the devices in the slot mapping.
+     * Method to get the video health status of all the devices in the slot mapping. The health is refreshed in the
+     * background, the last result is returned unless a fresh result is requested.
      *
+     * @param fresh
+     *      -- refresh the health before returning it
+     * @param probe
+     *      -- light, full or rtsp probe
      * @return Mono<HealthStatusBean>
      */
-    @Operation(summary = "Get video health", description = "Get video health for all video devices in a rack")
+    @Operation(summary = "Get video health", description = "Get video health for all video devices in a rack, as last refreshed in the background")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "operation successful",
                     content = { @Content(mediaType = "application/json" , schema = @Schema(implementation = HealthStatusBean.class)) }),
@@ -55,8 +88,9 @@ public class VideoHealthResource {
             @ApiResponse(responseCode = "400", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     })
     @GetMapping(value= "/health", produces= "application/json")
-    public Mono<HealthStatusBean> getVideoHealthStatus()  {
-        return healthService.getVideoHealthReport();
+    public Mono<HealthStatusBean> getVideoHealthStatus(@Parameter(description = "Refresh the health before returning it") @RequestParam(required = false, defaultValue = "false") boolean fresh,
+                                                         @Parameter(description = "Probe of the video devices, light, full or rtsp. A full probe downloads a snapshot from every outlet, an rtsp probe sends an OPTIONS request to the rtsp url of every outlet. Full and rtsp probes always refresh the health") @RequestParam(required = false, defaultValue = "light") String probe)  {
+        return healthPoller.getHealth(fresh, ProbeMode.valueOf(probe.toUpperCase()));
     }
 
     /**
@@ -78,14 +112,112 @@ public class VideoHealthResource {
         return healthService.getScreenStatus(slotNo);
     }
 
+    /**
+     * Method to get the status of the screen of a slot, with the coverage of the colors of the screen profiles and the
+     * confidence of the classification.
+     *
+     * @param slot
+     *      -- Slot number of the device
+     * @return Mono<SlotScreenStatus>
+     */
+    @Operation(summary = "Get structured screen status", description = "Classifies the screen of a slot by the configured screen profiles and returns the screen with the percentage of the pixels of each region in each color and the confidence of the classification.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = SlotScreenStatus.class)) }),
+            @ApiResponse(responseCode = "404", description = "Slot not mapped", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "400", description = "Video device not configured", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping(value = "/v1/slot/{slot}/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<SlotScreenStatus> getScreenStatus(@Parameter(description = "Slot number for which status is to be fetched") @PathVariable("slot") int slot) {
+        return healthService.getSlotScreenStatus(slot);
+    }
+
+    /**
+     * Method to get the status of the screens of several slots, streamed as server-sent events.
+     *
+     * @param slots
+     *      -- slots and slot ranges, e.g. 1-16,20. All mapped slots if empty
+     * @return Flux<ServerSentEvent<SlotScreenStatus>>
+     *      -- one status event per slot, as soon as the screen of the slot has been checked
+     */
+    @Operation(summary = "Get screen status of several slots", description = "Checks the screens of a list or range of slots in parallel and streams the status of every slot as a server-sent event as soon as it is known. Errors of a slot are reported in its event.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = SlotScreenStatus.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid slot selection", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping(value = "/v1/slots/status", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<SlotScreenStatus>> getScreenStatuses(@Parameter(description = "slots and slot ranges, e.g. 1-16,20. All mapped slots if empty") @RequestParam(required = false, defaultValue = "") String slots) {
+        return healthService.getScreenStatuses(slots.isBlank() ? null : SlotRange.parse(slots))
+                .map(status -> ServerSentEvent.builder(status)
+                        .id(String.valueOf(status.getSlot()))
+                        .event("status")
+                        .build());
+    }
+
+    /**
+     * Method to monitor the screen of a slot, streamed as server-sent events.
+     *
+     * @param slot
+     *      -- Slot number of the device
+     * @return Flux<ServerSentEvent<ScreenTransition>>
+     *      -- current screen of the slot followed by every change of the screen, with heartbeat comments in between
+     */
+    @Operation(summary = "Monitor the screen of a slot", description = "Watches the video stream of a slot and streams the current screen and every change of the screen as server-sent events. The screen is Unavailable while the video stream can not be read.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = ScreenTransition.class)) }),
+            @ApiResponse(responseCode = "404", description = "Slot not mapped", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "400", description = "Video device not configured", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping(value = "/v1/slot/{slot}/monitor", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<ScreenTransition>> monitorScreen(@Parameter(description = "Slot number to monitor") @PathVariable("slot") int slot) {
+        Flux<ServerSentEvent<ScreenTransition>> transitions = screenMonitor.watch(slot)
+                .map(transition -> ServerSentEvent.builder(transition)
+                        .id(transition.getAt())
+                        .event("transition")
+                        .build());
+        Flux<ServerSentEvent<ScreenTransition>> heartbeats = Flux.interval(Duration.ofMillis(monitorHeartbeat))
+                .map(tick -> ServerSentEvent.<ScreenTransition>builder().comment("heartbeat").build());
+        return Flux.merge(transitions, heartbeats);
+    }
+
+    /**
+     * Method to check whether the screen of a slot has been frozen, from the frames already captured of the slot.
+     *
+     * @param slot
+     *      -- Slot number of the device
+     * @param seconds
+     *      -- minimum number of seconds for which the screen has to be unchanged
+     * @param distance
+     *      -- maximum Hamming distance of the hash of an unchanged frame to the hash of the last frame
+     * @return FreezeStatus
+     *      -- how long the screen has been unchanged
+     */
+    @Operation(summary = "Check whether the screen of a slot is frozen", description = "Answers from the perceptual hashes of the frames recently captured of the slot by screen checks and monitors, without capturing a new frame. The screen is frozen if it has been unchanged, within the given Hamming distance, for at least the given number of seconds up to the last captured frame. The status is truncated if the screen has been unchanged since the oldest frame kept.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = FreezeStatus.class)) }),
+            @ApiResponse(responseCode = "404", description = "Slot not mapped or no frames captured of the slot", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid duration or distance", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping(value = "/v1/slot/{slot}/freeze", produces = MediaType.APPLICATION_JSON_VALUE)
+    public FreezeStatus getFreezeStatus(@Parameter(description = "Slot number to check") @PathVariable("slot") int slot,
+                                        @Parameter(description = "minimum number of seconds for which the screen has to be unchanged") @RequestParam(required = false, defaultValue = "10") int seconds,
+                                        @Parameter(description = "maximum Hamming distance, from 0 to 64, of an unchanged frame to the last frame") @RequestParam(required = false, defaultValue = "2") int distance) {
+        return frameHistory.getFreezeStatus(slot, seconds, distance);
+    }
+
     /**
      * Method to get the video health status of a device in the slot mapping.
      *
      * @param slotNo
      *      -- Slot number of the device
-     * @return Mono<byte[]>
+     * @param maxAge
+     *      -- maximum age in milliseconds of a cached screenshot, 0 for a fresh screenshot
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
      */
-    @Operation(summary = "Get video slot screenshot", description = "Get video screenshot ")
+    @Operation(summary = "Get video slot screenshot", description = "Get video screenshot. Screenshots are cached for a short time, the X-Captured-At and X-Snapshot-Age headers tell when the screenshot was captured.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "operation successful",
                     content = { @Content(mediaType = "image/jpeg" , array = @ArraySchema(schema = @Schema(implementation = Byte.class))) }),
@@ -93,8 +225,9 @@ public class VideoHealthResource {
             @ApiResponse(responseCode = "400", description = "Video device not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     })
     @GetMapping(value = "{slotNo}/screenshot", produces = MediaType.IMAGE_JPEG_VALUE)
-    public Mono<byte[]> getScreen(@Parameter(description = "Slot number for which status is to be fetched") @PathVariable("slotNo") long slotNo) {
-        return healthService.getImageByteArray(slotNo);
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getScreen(@Parameter(description = "Slot number for which status is to be fetched") @PathVariable("slotNo") long slotNo,
+                                                          @Parameter(description = "maximum age in milliseconds of a cached screenshot, 0 for a fresh screenshot") @RequestParam(required = false) Long maxAge) {
+        return healthService.getScreenshot(slotNo, maxAge != null ? maxAge : Long.MAX_VALUE);
     }
 
 }
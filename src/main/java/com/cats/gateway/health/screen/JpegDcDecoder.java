@@ -0,0 +1,493 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Decoder of the DC coefficients of baseline JPEG images. The DC coefficient of an 8x8 block is the average of its
+ * samples, so decoding only the DC coefficients yields a thumbnail of 1/8 of the width and height of the image without
+ * dequantizing the AC coefficients or running the inverse DCT; the AC coefficients are only Huffman decoded to be
+ * skipped. Images the decoder does not handle, such as progressive, arithmetic coded, 12 bit, CMYK or multi scan
+ * images, are rejected so they can be decoded in full.
+ */
+public final class JpegDcDecoder {
+
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int DQT = 0xDB;
+    private static final int DHT = 0xC4;
+    private static final int DRI = 0xDD;
+    private static final int SOF0 = 0xC0;
+    private static final int SOF1 = 0xC1;
+    private static final int APP14 = 0xEE;
+
+    private JpegDcDecoder() {
+    }
+
+    /**
+     * Method to decode the thumbnail of a JPEG image from the DC coefficients of its blocks.
+     *
+     * @param jpeg
+     *      -- JPEG image
+     * @return BufferedImage
+     *      -- rgb thumbnail with a pixel per 8x8 block of the image, null if the image is not a supported JPEG
+     */
+    public static BufferedImage decodeThumbnail(byte[] jpeg) {
+        try {
+            return new Decoder(jpeg).decode();
+        } catch (UnsupportedJpegException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class UnsupportedJpegException extends Exception {
+        UnsupportedJpegException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final class Component {
+        int id;
+        int h;
+        int v;
+        int quantizationTable;
+        HuffmanTable dcTable;
+        HuffmanTable acTable;
+        int predictor;
+        int blocksPerLine;
+        int[] dc;
+    }
+
+    /**
+     * Huffman table with a lookup of the codes of up to 8 bits.
+     */
+    private static final class HuffmanTable {
+
+        private static final int LOOKAHEAD = 8;
+
+        final int[] lookup = new int[1 << LOOKAHEAD];
+        final int[] maxCode = new int[18];
+        final int[] valueOffset = new int[17];
+        final byte[] values;
+
+        HuffmanTable(int[] counts, byte[] values) {
+            this.values = values;
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                valueOffset[length] = index - code;
+                for (int i = 0; i < counts[length - 1]; i++, index++, code++) {
+                    if (length <= LOOKAHEAD) {
+                        int shift = LOOKAHEAD - length;
+                        for (int fill = 0; fill < 1 << shift; fill++) {
+                            lookup[(code << shift) | fill] = length << 8 | (values[index] & 0xff);
+                        }
+                    }
+                }
+                maxCode[length] = counts[length - 1] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+    }
+
+    private static final class Decoder {
+
+        private final byte[] data;
+        private int position;
+
+        private final int[][] quantizationTables = new int[4][];
+        private final HuffmanTable[] dcTables = new HuffmanTable[4];
+        private final HuffmanTable[] acTables = new HuffmanTable[4];
+        private Component[] components;
+        private int width;
+        private int height;
+        private int restartInterval;
+        private int adobeTransform = -1;
+
+        private int bitBuffer;
+        private int bitCount;
+        private boolean markerReached;
+
+        Decoder(byte[] data) {
+            this.data = data;
+        }
+
+        BufferedImage decode() throws UnsupportedJpegException {
+            if (data.length < 4 || (data[0] & 0xff) != 0xFF || (data[1] & 0xff) != SOI) {
+                throw new UnsupportedJpegException("not a JPEG image");
+            }
+            position = 2;
+            while (true) {
+                int marker = nextMarker();
+                switch (marker) {
+                    case SOF0, SOF1 -> readFrame();
+                    case DQT -> readQuantizationTables();
+                    case DHT -> readHuffmanTables();
+                    case DRI -> {
+                        readLength();
+                        restartInterval = readUnsignedShort();
+                    }
+                    case APP14 -> readAdobe();
+                    case SOS -> {
+                        readScan();
+                        return thumbnail();
+                    }
+                    case EOI -> throw new UnsupportedJpegException("no scan");
+                    default -> {
+                        if (marker >= 0xC0 && marker <= 0xCF && marker != DHT && marker != 0xC8 && marker != 0xCC) {
+                            throw new UnsupportedJpegException("unsupported frame type " + Integer.toHexString(marker));
+                        }
+                        position += readLength();
+                    }
+                }
+            }
+        }
+
+        private int nextMarker() throws UnsupportedJpegException {
+            while (position < data.length && (data[position] & 0xff) != 0xFF) {
+                position++;
+            }
+            while (position < data.length && (data[position] & 0xff) == 0xFF) {
+                position++;
+            }
+            if (position >= data.length) {
+                throw new UnsupportedJpegException("truncated image");
+            }
+            return data[position++] & 0xff;
+        }
+
+        private int readUnsignedShort() {
+            int value = (data[position] & 0xff) << 8 | (data[position + 1] & 0xff);
+            position += 2;
+            return value;
+        }
+
+        /**
+         * Reads the length of a segment and returns the length of its payload.
+         */
+        private int readLength() {
+            return readUnsignedShort() - 2;
+        }
+
+        private void readFrame() throws UnsupportedJpegException {
+            int end = readLength() + position;
+            int precision = data[position++] & 0xff;
+            height = readUnsignedShort();
+            width = readUnsignedShort();
+            int count = data[position++] & 0xff;
+            if (precision != 8 || height == 0 || width == 0 || (count != 1 && count != 3)) {
+                throw new UnsupportedJpegException("unsupported frame");
+            }
+            components = new Component[count];
+            for (int i = 0; i < count; i++) {
+                Component component = new Component();
+                component.id = data[position++] & 0xff;
+                int sampling = data[position++] & 0xff;
+                component.h = sampling >> 4;
+                component.v = sampling & 0x0f;
+                component.quantizationTable = data[position++] & 0x03;
+                if (component.h < 1 || component.h > 4 || component.v < 1 || component.v > 4) {
+                    throw new UnsupportedJpegException("invalid sampling factors");
+                }
+                components[i] = component;
+            }
+            position = end;
+        }
+
+        private void readQuantizationTables() {
+            int end = readLength() + position;
+            while (position < end) {
+                int info = data[position++] & 0xff;
+                boolean sixteenBit = info >> 4 != 0;
+                int[] table = new int[64];
+                for (int i = 0; i < 64; i++) {
+                    table[i] = sixteenBit ? readUnsignedShort() : data[position++] & 0xff;
+                }
+                quantizationTables[info & 0x03] = table;
+            }
+            position = end;
+        }
+
+        private void readHuffmanTables() {
+            int end = readLength() + position;
+            while (position < end) {
+                int info = data[position++] & 0xff;
+                int[] counts = new int[16];
+                int total = 0;
+                for (int i = 0; i < 16; i++) {
+                    counts[i] = data[position++] & 0xff;
+                    total += counts[i];
+                }
+                byte[] values = new byte[total];
+                System.arraycopy(data, position, values, 0, total);
+                position += total;
+                HuffmanTable table = new HuffmanTable(counts, values);
+                if (info >> 4 == 0) {
+                    dcTables[info & 0x03] = table;
+                } else {
+                    acTables[info & 0x03] = table;
+                }
+            }
+            position = end;
+        }
+
+        private void readAdobe() {
+            int length = readLength();
+            if (length >= 12 && data[position] == 'A' && data[position + 1] == 'd' && data[position + 2] == 'o'
+                    && data[position + 3] == 'b' && data[position + 4] == 'e') {
+                adobeTransform = data[position + 11] & 0xff;
+            }
+            position += length;
+        }
+
+        private void readScan() throws UnsupportedJpegException {
+            if (components == null) {
+                throw new UnsupportedJpegException("scan before frame");
+            }
+            readLength();
+            int count = data[position++] & 0xff;
+            if (count != components.length) {
+                throw new UnsupportedJpegException("multi scan image");
+            }
+            for (int i = 0; i < count; i++) {
+                int id = data[position++] & 0xff;
+                int tables = data[position++] & 0xff;
+                Component component = null;
+                for (Component candidate : components) {
+                    if (candidate.id == id) {
+                        component = candidate;
+                    }
+                }
+                if (component == null) {
+                    throw new UnsupportedJpegException("unknown scan component");
+                }
+                component.dcTable = dcTables[tables >> 4 & 0x03];
+                component.acTable = acTables[tables & 0x03];
+                if (component.dcTable == null || component.acTable == null || quantizationTables[component.quantizationTable] == null) {
+                    throw new UnsupportedJpegException("missing table");
+                }
+            }
+            int spectralStart = data[position++] & 0xff;
+            int spectralEnd = data[position++] & 0xff;
+            int approximation = data[position++] & 0xff;
+            if (spectralStart != 0 || spectralEnd != 63 || approximation != 0) {
+                throw new UnsupportedJpegException("not a baseline scan");
+            }
+            if (components.length == 3 && adobeTransform == 0) {
+                throw new UnsupportedJpegException("rgb image");
+            }
+            decodeBlocks();
+        }
+
+        private void decodeBlocks() throws UnsupportedJpegException {
+            int maxH = 1;
+            int maxV = 1;
+            for (Component component : components) {
+                maxH = Math.max(maxH, component.h);
+                maxV = Math.max(maxV, component.v);
+            }
+            boolean interleaved = components.length > 1;
+            int mcusX;
+            int mcusY;
+            if (interleaved) {
+                mcusX = (width + 8 * maxH - 1) / (8 * maxH);
+                mcusY = (height + 8 * maxV - 1) / (8 * maxV);
+            } else {
+                Component component = components[0];
+                mcusX = (int) Math.ceil(Math.ceil(width * component.h / (double) maxH) / 8);
+                mcusY = (int) Math.ceil(Math.ceil(height * component.v / (double) maxV) / 8);
+            }
+            for (Component component : components) {
+                int blocksX = interleaved ? mcusX * component.h : mcusX;
+                int blocksY = interleaved ? mcusY * component.v : mcusY;
+                component.blocksPerLine = blocksX;
+                component.dc = new int[blocksX * blocksY];
+                component.predictor = 0;
+            }
+
+            int mcus = mcusX * mcusY;
+            for (int mcu = 0; mcu < mcus; mcu++) {
+                if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                    restart();
+                }
+                int mcuX = mcu % mcusX;
+                int mcuY = mcu / mcusX;
+                for (Component component : components) {
+                    int[] quantization = quantizationTables[component.quantizationTable];
+                    int blocksH = interleaved ? component.h : 1;
+                    int blocksV = interleaved ? component.v : 1;
+                    for (int by = 0; by < blocksV; by++) {
+                        for (int bx = 0; bx < blocksH; bx++) {
+                            int level = Math.round(decodeBlock(component) * quantization[0] / 8f) + 128;
+                            int x = mcuX * blocksH + bx;
+                            int y = mcuY * blocksV + by;
+                            component.dc[y * component.blocksPerLine + x] = Math.max(0, Math.min(255, level));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Decodes the coefficients of a block and returns its DC coefficient, the AC coefficients are skipped.
+         */
+        private int decodeBlock(Component component) throws UnsupportedJpegException {
+            int size = decodeHuffman(component.dcTable);
+            component.predictor += size == 0 ? 0 : extend(readBits(size), size);
+            HuffmanTable acTable = component.acTable;
+            for (int k = 1; k < 64; k++) {
+                int symbol = decodeHuffman(acTable);
+                int run = symbol >> 4;
+                int bits = symbol & 0x0f;
+                if (bits == 0) {
+                    if (run != 15) {
+                        break;
+                    }
+                    k += 15;
+                } else {
+                    k += run;
+                    skipBits(bits);
+                }
+            }
+            return component.predictor;
+        }
+
+        private void restart() throws UnsupportedJpegException {
+            bitBuffer = 0;
+            bitCount = 0;
+            markerReached = false;
+            int marker = nextMarker();
+            if (marker < 0xD0 || marker > 0xD7) {
+                throw new UnsupportedJpegException("missing restart marker");
+            }
+            for (Component component : components) {
+                component.predictor = 0;
+            }
+        }
+
+        private void fill() {
+            while (bitCount <= 24) {
+                int next = 0;
+                if (!markerReached && position < data.length) {
+                    next = data[position] & 0xff;
+                    if (next == 0xFF) {
+                        int following = position + 1 < data.length ? data[position + 1] & 0xff : 0;
+                        if (following == 0x00) {
+                            position += 2;
+                        } else {
+                            markerReached = true;
+                            next = 0;
+                        }
+                    } else {
+                        position++;
+                    }
+                }
+                bitBuffer |= next << (24 - bitCount);
+                bitCount += 8;
+            }
+        }
+
+        private int decodeHuffman(HuffmanTable table) throws UnsupportedJpegException {
+            fill();
+            int entry = table.lookup[bitBuffer >>> (32 - HuffmanTable.LOOKAHEAD)];
+            if (entry != 0) {
+                consume(entry >> 8);
+                return entry & 0xff;
+            }
+            int code = 0;
+            for (int length = 1; length <= 16; length++) {
+                code = code << 1 | (bitBuffer >>> (32 - length)) & 1;
+                if (code <= table.maxCode[length]) {
+                    consume(length);
+                    return table.values[code + table.valueOffset[length]] & 0xff;
+                }
+            }
+            throw new UnsupportedJpegException("invalid huffman code");
+        }
+
+        private int readBits(int count) {
+            fill();
+            int value = bitBuffer >>> (32 - count);
+            consume(count);
+            return value;
+        }
+
+        private void skipBits(int count) {
+            fill();
+            consume(count);
+        }
+
+        private void consume(int count) {
+            bitBuffer <<= count;
+            bitCount -= count;
+        }
+
+        private static int extend(int value, int size) {
+            return value < 1 << (size - 1) ? value - (1 << size) + 1 : value;
+        }
+
+        private BufferedImage thumbnail() {
+            int maxH = 1;
+            int maxV = 1;
+            for (Component component : components) {
+                maxH = Math.max(maxH, component.h);
+                maxV = Math.max(maxV, component.v);
+            }
+            int thumbnailWidth = (width + 7) / 8;
+            int thumbnailHeight = (height + 7) / 8;
+            BufferedImage image = new BufferedImage(thumbnailWidth, thumbnailHeight, BufferedImage.TYPE_INT_RGB);
+            int[] rgb = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            Component luma = components[0];
+            for (int y = 0; y < thumbnailHeight; y++) {
+                for (int x = 0; x < thumbnailWidth; x++) {
+                    int lumaLevel = sample(luma, x, y, maxH, maxV);
+                    if (components.length == 1) {
+                        rgb[y * thumbnailWidth + x] = lumaLevel << 16 | lumaLevel << 8 | lumaLevel;
+                        continue;
+                    }
+                    int cb = sample(components[1], x, y, maxH, maxV) - 128;
+                    int cr = sample(components[2], x, y, maxH, maxV) - 128;
+                    int r = clamp(lumaLevel + Math.round(1.402f * cr));
+                    int g = clamp(lumaLevel - Math.round(0.344136f * cb + 0.714136f * cr));
+                    int b = clamp(lumaLevel + Math.round(1.772f * cb));
+                    rgb[y * thumbnailWidth + x] = r << 16 | g << 8 | b;
+                }
+            }
+            return image;
+        }
+
+        /**
+         * Returns the DC level of a component at a thumbnail pixel, subsampled components cover several pixels.
+         */
+        private static int sample(Component component, int x, int y, int maxH, int maxV) {
+            int blockX = x * component.h / maxH;
+            int blockY = y * component.v / maxV;
+            int blocksY = component.dc.length / component.blocksPerLine;
+            return component.dc[Math.min(blockY, blocksY - 1) * component.blocksPerLine + Math.min(blockX, component.blocksPerLine - 1)];
+        }
+
+        private static int clamp(int value) {
+            return Math.max(0, Math.min(255, value));
+        }
+    }
+}
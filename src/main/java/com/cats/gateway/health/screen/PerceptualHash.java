@@ -0,0 +1,143 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash of a screen. The luma of the frame is averaged over a grid of 9 by 8 cells, and every bit of the
+ * 64-bit hash tells whether a cell is noticeably darker than its right neighbour. Frames of the same screen hash to values a few
+ * bits apart regardless of compression noise and of the frame being a thumbnail or a full frame, so the Hamming
+ * distance of two hashes tells whether the screen has changed. Plain screens of any color hash to the same bits, so
+ * the mean luma of the frame is kept with the bits to tell them apart.
+ *
+ * @param bits
+ *      -- 64-bit difference hash
+ * @param luma
+ *      -- mean luma of the frame, from 0 to 255
+ */
+public record PerceptualHash(long bits, int luma) {
+
+    private static final int COLUMNS = 9;
+
+    private static final int ROWS = 8;
+
+    /**
+     * Number of samples read per cell in each direction of a full frame.
+     */
+    private static final int CELL_SAMPLES = 8;
+
+    /**
+     * Minimum difference of the mean luma of neighbouring cells for a cell to be darker, so that noise on plain parts
+     * of the screen does not flip bits.
+     */
+    private static final int DEAD_BAND = 3;
+
+    /**
+     * Maximum difference of the mean luma of frames of an unchanged screen.
+     */
+    private static final int LUMA_TOLERANCE = 12;
+
+    /**
+     * Method to compute the difference hash of a frame. Thumbnails are read in full, full frames on a grid of a few
+     * samples per cell.
+     *
+     * @param frame
+     *      -- ScreenFrame
+     * @return PerceptualHash
+     *      -- difference hash of the frame
+     */
+    public static PerceptualHash of(ScreenFrame frame) {
+        BufferedImage image = frame.image();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = frame.isThumbnail() ? 1 : Math.max(1, Math.min(width / (COLUMNS * CELL_SAMPLES), height / (ROWS * CELL_SAMPLES)));
+
+        long[] sums = new long[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+        int[] cellOfColumn = new int[(width + stride - 1) / stride];
+        for (int i = 0; i < cellOfColumn.length; i++) {
+            cellOfColumn[i] = i * stride * COLUMNS / width;
+        }
+        RowReader reader = RowReader.of(image);
+        int[] row = new int[cellOfColumn.length];
+        for (int y = 0; y < height; y += stride) {
+            int cellRow = y * ROWS / height * COLUMNS;
+            int count = reader.read(y, 0, width, stride, row);
+            for (int i = 0; i < count; i++) {
+                int rgb = row[i];
+                // integer BT.601 luma
+                int luma = (77 * ((rgb >> 16) & 0xff) + 150 * ((rgb >> 8) & 0xff) + 29 * (rgb & 0xff)) >> 8;
+                int cell = cellRow + cellOfColumn[i];
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        long total = 0;
+        int samples = 0;
+        for (int cell = 0; cell < sums.length; cell++) {
+            total += sums[cell];
+            samples += counts[cell];
+        }
+        for (int y = 0; y < ROWS; y++) {
+            for (int x = 0; x < COLUMNS - 1; x++) {
+                int cell = y * COLUMNS + x;
+                // compare the means of both cells without dividing
+                long count = Math.max(1, counts[cell]);
+                long next = Math.max(1, counts[cell + 1]);
+                boolean darker = (sums[cell] + DEAD_BAND * count) * next < sums[cell + 1] * count;
+                hash = hash << 1 | (darker ? 1 : 0);
+            }
+        }
+        return new PerceptualHash(hash, samples > 0 ? (int) (total / samples) : 0);
+    }
+
+    /**
+     * Method to count the bits in which two hashes differ.
+     *
+     * @param other
+     *      -- difference hash
+     * @return int
+     *      -- Hamming distance of the hashes, from 0 to 64
+     */
+    public int distance(PerceptualHash other) {
+        return Long.bitCount(bits ^ other.bits);
+    }
+
+    /**
+     * Method to check whether two hashes are of the same screen.
+     *
+     * @param other
+     *      -- difference hash
+     * @param distance
+     *      -- maximum Hamming distance of the hashes
+     * @return boolean
+     *      -- true if the hashes are within the distance and of frames of about the same brightness
+     */
+    public boolean matches(PerceptualHash other, int distance) {
+        return distance(other) <= distance && Math.abs(luma - other.luma) <= LUMA_TOLERANCE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x", bits);
+    }
+}
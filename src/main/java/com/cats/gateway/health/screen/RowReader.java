@@ -0,0 +1,162 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Reader of sampled rows of an image as packed rgb values. Rows of byte and int rasters are read from the backing
+ * arrays of the raster, rows of other images are converted by the image.
+ */
+abstract class RowReader {
+
+    abstract int read(int y, int from, int to, int stride, int[] rgb);
+
+    /**
+     * Method to align a coordinate to the sampling grid, so that overlapping parts of the screen are sampled on the
+     * same pixels.
+     */
+    static int align(int coordinate, int stride) {
+        return (coordinate + stride - 1) / stride * stride;
+    }
+
+    static int samples(int from, int to, int stride) {
+        return to > from ? (to - from + stride - 1) / stride : 0;
+    }
+
+    static RowReader of(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR -> {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+                return new ByteRowReader(dataBuffer.getData(), dataBuffer.getOffset(), sampleModel.getBandOffsets(),
+                        sampleModel.getPixelStride(), sampleModel.getScanlineStride(), translateX, translateY);
+            }
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+                return new IntRowReader(dataBuffer.getData(), dataBuffer.getOffset(),
+                        sampleModel.getScanlineStride(), translateX, translateY);
+            }
+            default -> {
+                return new ImageRowReader(image);
+            }
+        }
+    }
+
+    private static final class ByteRowReader extends RowReader {
+
+        private final byte[] data;
+        private final int offset;
+        private final int red;
+        private final int green;
+        private final int blue;
+        private final int pixelStride;
+        private final int scanlineStride;
+        private final int translateX;
+        private final int translateY;
+
+        ByteRowReader(byte[] data, int offset, int[] bandOffsets, int pixelStride, int scanlineStride, int translateX, int translateY) {
+            this.data = data;
+            this.offset = offset;
+            this.red = bandOffsets[0];
+            this.green = bandOffsets[1];
+            this.blue = bandOffsets[2];
+            this.pixelStride = pixelStride;
+            this.scanlineStride = scanlineStride;
+            this.translateX = translateX;
+            this.translateY = translateY;
+        }
+
+        @Override
+        int read(int y, int from, int to, int stride, int[] rgb) {
+            int index = offset + (y - translateY) * scanlineStride + (from - translateX) * pixelStride;
+            int step = stride * pixelStride;
+            int count = 0;
+            for (int x = from; x < to; x += stride, index += step) {
+                rgb[count++] = (data[index + red] & 0xff) << 16 | (data[index + green] & 0xff) << 8 | data[index + blue] & 0xff;
+            }
+            return count;
+        }
+    }
+
+    private static final class IntRowReader extends RowReader {
+
+        private final int[] data;
+        private final int offset;
+        private final int scanlineStride;
+        private final int translateX;
+        private final int translateY;
+
+        IntRowReader(int[] data, int offset, int scanlineStride, int translateX, int translateY) {
+            this.data = data;
+            this.offset = offset;
+            this.scanlineStride = scanlineStride;
+            this.translateX = translateX;
+            this.translateY = translateY;
+        }
+
+        @Override
+        int read(int y, int from, int to, int stride, int[] rgb) {
+            int index = offset + (y - translateY) * scanlineStride + (from - translateX);
+            int count = 0;
+            for (int x = from; x < to; x += stride, index += stride) {
+                rgb[count++] = data[index] & 0xffffff;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Reader of images of other types, converted to rgb by the image a row at a time.
+     */
+    private static final class ImageRowReader extends RowReader {
+
+        private final BufferedImage image;
+        private int[] line = new int[0];
+
+        ImageRowReader(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        int read(int y, int from, int to, int stride, int[] rgb) {
+            if (to <= from) {
+                return 0;
+            }
+            if (line.length < to - from) {
+                line = new int[to - from];
+            }
+            image.getRGB(from, y, to - from, 1, line, 0, to - from);
+            int count = 0;
+            for (int i = 0; i < to - from; i += stride) {
+                rgb[count++] = line[i] & 0xffffff;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+
+/**
+ * Classification of a screen by the screen profiles.
+ *
+ * @param label
+ *      -- name of the first matching profile, Normal if no profile matches
+ * @param stillFrame
+ *      -- whether the screen is only reported once a later frame shows the screen has not moved
+ * @param confidence
+ *      -- from 0.5 to 1, how far the coverage of the matching profile, or of the profile closest to matching for a
+ *      normal screen, is from the thresholds of the profile
+ * @param coverage
+ *      -- percentage of the sampled pixels of every region which are of each color, by region and color
+ */
+public record ScreenClassification(String label, boolean stillFrame, double confidence, Map<String, Map<String, Double>> coverage) {
+
+    public static final String NORMAL = "Normal";
+
+    /**
+     * Method to get the classification of a screen which turned out to have moved since it was classified as a still
+     * frame.
+     *
+     * @return ScreenClassification
+     *      -- Normal with full confidence and the coverage of the classified frame
+     */
+    public ScreenClassification moving() {
+        return new ScreenClassification(NORMAL, false, 1.0, coverage);
+    }
+}
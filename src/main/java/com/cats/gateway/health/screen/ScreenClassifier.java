@@ -0,0 +1,134 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.ScreenClassificationProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Classifier of the screen shown by a video outlet. The configured screen profiles are compiled once into a kernel
+ * which reads the pixels of a frame from the backing arrays of the image raster a row at a time, and buckets every
+ * sampled pixel into the colors of the regions it is in in a single pass. Full frames are sampled on a grid of the
+ * configured stride, thumbnails of the DC coefficients of a JPEG are read in full.
+ */
+@Component
+public class ScreenClassifier {
+
+    private final int sampleStride;
+
+    private final ScreenKernel kernel;
+
+    @Autowired
+    public ScreenClassifier(@Value("${video.health.screen.sample-stride:2}") int sampleStride, ScreenClassificationProperties properties) {
+        this.sampleStride = Math.max(1, sampleStride);
+        this.kernel = ScreenKernel.compile(properties);
+    }
+
+    /**
+     * Method to classify the screen of an image. A still frame classification only means that the current frame
+     * matches its profile, a still screen has to be told apart from video by comparing it with a later frame.
+     *
+     * @param image
+     *      -- BufferedImage
+     * @return ScreenClassification
+     *      -- first matching profile, Normal if no profile matches, with the coverage of the colors of each region
+     */
+    public ScreenClassification classify(BufferedImage image) {
+        return kernel.classify(image, sampleStride);
+    }
+
+    /**
+     * Method to classify the screen of a frame. Thumbnails are read in full, fully decoded frames on the sampling grid.
+     *
+     * @param frame
+     *      -- ScreenFrame
+     * @return ScreenClassification
+     *      -- first matching profile, Normal if no profile matches, with the coverage of the colors of each region
+     */
+    public ScreenClassification classify(ScreenFrame frame) {
+        return kernel.classify(frame.image(), strideOf(frame));
+    }
+
+    /**
+     * Method to check whether the center third of two frames differs by more than the noise of the encoder.
+     *
+     * @param frame
+     *      -- BufferedImage
+     * @param nextFrame
+     *      -- BufferedImage
+     * @return boolean
+     *      -- true if the frames differ in size or in the color of a sampled pixel
+     */
+    public boolean differs(BufferedImage frame, BufferedImage nextFrame) {
+        return differs(frame, nextFrame, sampleStride);
+    }
+
+    /**
+     * Method to check whether the center third of two frames differs by more than the noise of the encoder.
+     *
+     * @param frame
+     *      -- ScreenFrame
+     * @param nextFrame
+     *      -- ScreenFrame
+     * @return boolean
+     *      -- true if the frames differ in scale, size or in the color of a sampled pixel
+     */
+    public boolean differs(ScreenFrame frame, ScreenFrame nextFrame) {
+        return frame.scale() != nextFrame.scale() || differs(frame.image(), nextFrame.image(), strideOf(frame));
+    }
+
+    private boolean differs(BufferedImage frame, BufferedImage nextFrame, int stride) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (width != nextFrame.getWidth() || height != nextFrame.getHeight()) {
+            return true;
+        }
+        int x0 = RowReader.align(width / 3, stride);
+        int x1 = width - width / 3;
+        RowReader reader = RowReader.of(frame);
+        RowReader nextReader = RowReader.of(nextFrame);
+        int[] row = new int[RowReader.samples(0, width, stride)];
+        int[] nextRow = new int[row.length];
+        for (int y = RowReader.align(height / 3, stride); y < height - height / 3; y += stride) {
+            int count = reader.read(y, x0, x1, stride, row);
+            nextReader.read(y, x0, x1, stride, nextRow);
+            for (int i = 0; i < count; i++) {
+                int rgb = row[i];
+                int nextRgb = nextRow[i];
+                if (rgb != nextRgb) {
+                    int diff = Math.abs(((rgb >> 16) & 0xff) - ((nextRgb >> 16) & 0xff))
+                            + Math.abs(((rgb >> 8) & 0xff) - ((nextRgb >> 8) & 0xff))
+                            + Math.abs((rgb & 0xff) - (nextRgb & 0xff));
+                    if (diff > 6) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int strideOf(ScreenFrame frame) {
+        return frame.isThumbnail() ? 1 : sampleStride;
+    }
+}
@@ -0,0 +1,67 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Frame of a screen decoded for classification.
+ *
+ * @param image
+ *      -- decoded frame
+ * @param scale
+ *      -- number of screen pixels per frame pixel in each direction, 8 for thumbnails of the DC coefficients of a
+ *      JPEG and 1 for fully decoded frames
+ */
+public record ScreenFrame(BufferedImage image, int scale) {
+
+    /**
+     * Method to decode a JPEG frame. Baseline JPEG frames are decoded to a thumbnail of the DC coefficients of their
+     * blocks if enabled, other frames are decoded in full.
+     *
+     * @param jpeg
+     *      -- encoded frame
+     * @param dcDecode
+     *      -- decode baseline JPEG frames to a thumbnail
+     * @return ScreenFrame
+     *      -- decoded frame, null if the data is not an image
+     * @throws IOException
+     *      -- if the image can not be decoded
+     */
+    public static ScreenFrame decode(byte[] jpeg, boolean dcDecode) throws IOException {
+        BufferedImage thumbnail = dcDecode ? JpegDcDecoder.decodeThumbnail(jpeg) : null;
+        if (thumbnail != null) {
+            return new ScreenFrame(thumbnail, 8);
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        return image != null ? new ScreenFrame(image, 1) : null;
+    }
+
+    /**
+     * Method to check whether the frame is a downscaled thumbnail of the screen.
+     *
+     * @return boolean
+     */
+    public boolean isThumbnail() {
+        return scale > 1;
+    }
+}
@@ -0,0 +1,410 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.ScreenClassificationProperties;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Screen classification profiles compiled into a single pass bucket counting kernel. Every box of a color is a bit,
+ * and each channel of rgb and ycbcr has a table of the boxes its values are in, so the boxes of a pixel are found with
+ * three lookups per color space. Each sampled pixel is read once and counted for every color of every region it is in;
+ * the profiles are matched on the counts afterwards.
+ */
+final class ScreenKernel {
+
+    private static final Pattern CONDITION = Pattern.compile("\\s*([^:\\s]+)\\s*:\\s*([^<>=\\s]+)\\s*(>=|<=)\\s*([0-9]+(?:\\.[0-9]+)?)\\s*");
+
+    private record Fraction(long numerator, long denominator) {
+
+        static Fraction parse(String value) {
+            String[] parts = value.trim().split("/");
+            if (parts.length == 2) {
+                return new Fraction(Long.parseLong(parts[0].trim()), Long.parseLong(parts[1].trim()));
+            }
+            String[] decimal = parts[0].split("\\.");
+            long denominator = decimal.length == 2 ? (long) Math.pow(10, decimal[1].length()) : 1;
+            return new Fraction(Long.parseLong(decimal[0] + (decimal.length == 2 ? decimal[1] : "")), denominator);
+        }
+
+        int floor(int size) {
+            return (int) Math.floorDiv(size * numerator, denominator);
+        }
+
+        int ceil(int size) {
+            return (int) -Math.floorDiv(-size * numerator, denominator);
+        }
+
+        boolean isBetween(Fraction low, Fraction high) {
+            return numerator * low.denominator >= low.numerator * denominator
+                    && numerator * high.denominator <= high.numerator * denominator;
+        }
+
+        boolean isBelow(Fraction other) {
+            return numerator * other.denominator < other.numerator * denominator;
+        }
+    }
+
+    private record Region(String name, Fraction left, Fraction top, Fraction right, Fraction bottom) {
+    }
+
+    private record Condition(int region, int color, double percent, boolean atMost) {
+    }
+
+    private record Profile(String name, boolean stillFrame, Condition[] conditions) {
+    }
+
+    private final String[] colors;
+
+    private final long[] colorBoxes;
+
+    /**
+     * Whether every color is a single box whose bit is the bit of the color.
+     */
+    private final boolean direct;
+
+    private final boolean ycbcr;
+
+    private final long[] red = new long[256];
+    private final long[] green = new long[256];
+    private final long[] blue = new long[256];
+    private final long[] luma = new long[256];
+    private final long[] blueDifference = new long[256];
+    private final long[] redDifference = new long[256];
+
+    private final Region[] regions;
+
+    private final Profile[] profiles;
+
+    private ScreenKernel(ScreenClassificationProperties properties) {
+        colors = properties.getColors().keySet().toArray(new String[0]);
+        if (colors.length > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " screen colors can be configured");
+        }
+        colorBoxes = new long[colors.length];
+        int boxes = 0;
+        boolean anyYcbcr = false;
+        for (int color = 0; color < colors.length; color++) {
+            ScreenClassificationProperties.ColorRange range = properties.getColors().get(colors[color]);
+            List<int[]> rgbBoxes = parseBoxes(colors[color], range.getRgb());
+            List<int[]> ycbcrBoxes = parseBoxes(colors[color], range.getYcbcr());
+            if (rgbBoxes.isEmpty() && ycbcrBoxes.isEmpty()) {
+                throw new IllegalArgumentException("Screen color " + colors[color] + " has no rgb or ycbcr range");
+            }
+            if (boxes + rgbBoxes.size() + ycbcrBoxes.size() > Long.SIZE) {
+                throw new IllegalArgumentException("At most " + Long.SIZE + " ranges of screen colors can be configured");
+            }
+            for (int[] box : rgbBoxes) {
+                colorBoxes[color] |= mark(box, 1L << boxes++, red, green, blue);
+            }
+            for (int[] box : ycbcrBoxes) {
+                colorBoxes[color] |= mark(box, 1L << boxes++, luma, blueDifference, redDifference);
+            }
+            anyYcbcr |= !ycbcrBoxes.isEmpty();
+        }
+        ycbcr = anyYcbcr;
+        boolean identity = true;
+        for (int color = 0; color < colors.length; color++) {
+            identity &= colorBoxes[color] == 1L << color;
+        }
+        direct = identity;
+
+        List<Region> compiledRegions = new ArrayList<>();
+        properties.getRegions().forEach((name, bounds) -> compiledRegions.add(parseRegion(name, bounds)));
+        regions = compiledRegions.toArray(new Region[0]);
+
+        profiles = new Profile[properties.getProfiles().size()];
+        for (int i = 0; i < profiles.length; i++) {
+            ScreenClassificationProperties.Profile profile = properties.getProfiles().get(i);
+            if (profile.getName() == null || profile.getName().isBlank()) {
+                throw new IllegalArgumentException("Screen profile " + i + " has no name");
+            }
+            if (profile.getConditions().isEmpty()) {
+                throw new IllegalArgumentException("Screen profile " + profile.getName() + " has no conditions");
+            }
+            Condition[] conditions = profile.getConditions().stream()
+                    .map(condition -> parseCondition(profile.getName(), condition))
+                    .toArray(Condition[]::new);
+            profiles[i] = new Profile(profile.getName(), profile.isStillFrame(), conditions);
+        }
+    }
+
+    /**
+     * Method to compile the configured screen profiles.
+     *
+     * @param properties
+     *      -- configured colors, regions and profiles
+     * @return ScreenKernel
+     * @throws IllegalArgumentException
+     *      -- if a color, region or profile is invalid
+     */
+    static ScreenKernel compile(ScreenClassificationProperties properties) {
+        return new ScreenKernel(properties);
+    }
+
+    /**
+     * Method to classify an image sampled on a grid of the given stride.
+     *
+     * @param image
+     *      -- BufferedImage
+     * @param stride
+     *      -- stride in pixels of the sampling grid
+     * @return ScreenClassification
+     */
+    ScreenClassification classify(BufferedImage image, int stride) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] x0 = new int[regions.length];
+        int[] x1 = new int[regions.length];
+        int[] y0 = new int[regions.length];
+        int[] y1 = new int[regions.length];
+        long[] totals = new long[regions.length];
+        int minY = height;
+        int maxY = 0;
+        for (int r = 0; r < regions.length; r++) {
+            x0[r] = RowReader.align(regions[r].left().floor(width), stride);
+            x1[r] = regions[r].right().ceil(width);
+            y0[r] = RowReader.align(regions[r].top().floor(height), stride);
+            y1[r] = regions[r].bottom().ceil(height);
+            totals[r] = (long) RowReader.samples(x0[r], x1[r], stride) * RowReader.samples(y0[r], y1[r], stride);
+            if (totals[r] > 0) {
+                minY = Math.min(minY, y0[r]);
+                maxY = Math.max(maxY, y1[r]);
+            }
+        }
+
+        long[] counts = new long[regions.length * colors.length];
+        RowReader reader = RowReader.of(image);
+        int[] row = new int[RowReader.samples(0, width, stride)];
+        long[] pixelColors = new long[row.length];
+        for (int y = minY; y < maxY; y += stride) {
+            // each row is read once over the regions it is in
+            int from = width;
+            int to = 0;
+            for (int r = 0; r < regions.length; r++) {
+                if (totals[r] > 0 && y >= y0[r] && y < y1[r]) {
+                    from = Math.min(from, x0[r]);
+                    to = Math.max(to, x1[r]);
+                }
+            }
+            if (from >= to) {
+                continue;
+            }
+            int count = reader.read(y, from, to, stride, row);
+            for (int i = 0; i < count; i++) {
+                pixelColors[i] = colorsOf(row[i]);
+            }
+            for (int r = 0; r < regions.length; r++) {
+                if (totals[r] == 0 || y < y0[r] || y >= y1[r]) {
+                    continue;
+                }
+                int offset = r * colors.length;
+                int end = (x0[r] - from) / stride + RowReader.samples(x0[r], x1[r], stride);
+                for (int i = (x0[r] - from) / stride; i < end; i++) {
+                    for (long bits = pixelColors[i]; bits != 0; bits &= bits - 1) {
+                        counts[offset + Long.numberOfTrailingZeros(bits)]++;
+                    }
+                }
+            }
+        }
+        return evaluate(counts, totals);
+    }
+
+    private long colorsOf(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        long boxes = red[r] & green[g] & blue[b];
+        if (ycbcr) {
+            // integer full range BT.601, as used by JPEG
+            int y = (77 * r + 150 * g + 29 * b) >> 8;
+            int cb = ((-43 * r - 85 * g + 128 * b) >> 8) + 128;
+            int cr = ((128 * r - 107 * g - 21 * b) >> 8) + 128;
+            boxes |= luma[y] & blueDifference[cb] & redDifference[cr];
+        }
+        if (direct || boxes == 0) {
+            return boxes;
+        }
+        long pixelColors = 0;
+        for (int color = 0; color < colorBoxes.length; color++) {
+            if ((boxes & colorBoxes[color]) != 0) {
+                pixelColors |= 1L << color;
+            }
+        }
+        return pixelColors;
+    }
+
+    private ScreenClassification evaluate(long[] counts, long[] totals) {
+        Map<String, Map<String, Double>> coverage = new LinkedHashMap<>();
+        for (int r = 0; r < regions.length; r++) {
+            Map<String, Double> regionCoverage = new LinkedHashMap<>();
+            for (int color = 0; color < colors.length; color++) {
+                regionCoverage.put(colors[color], Math.round(percent(counts[r * colors.length + color], totals[r]) * 100) / 100.0);
+            }
+            coverage.put(regions[r].name(), regionCoverage);
+        }
+
+        double closest = 0;
+        for (Profile profile : profiles) {
+            boolean matches = true;
+            double score = 1;
+            for (Condition condition : profile.conditions()) {
+                long count = counts[condition.region() * colors.length + condition.color()];
+                long total = totals[condition.region()];
+                matches &= holds(condition, count, total);
+                score = Math.min(score, score(condition, percent(count, total)));
+            }
+            if (matches) {
+                return new ScreenClassification(profile.name(), profile.stillFrame(), round(Math.max(0.5, score)), coverage);
+            }
+            closest = Math.max(closest, Math.min(0.5, score));
+        }
+        return new ScreenClassification(ScreenClassification.NORMAL, false, round(1 - closest), coverage);
+    }
+
+    /**
+     * Checks a condition on the counts, without rounding the coverage, so that whole percent thresholds are exact.
+     */
+    private static boolean holds(Condition condition, long count, long total) {
+        if (total == 0) {
+            return false;
+        }
+        return condition.atMost() ? count * 100.0 <= condition.percent() * total : count * 100.0 >= condition.percent() * total;
+    }
+
+    /**
+     * Scores a coverage from 0 to 1, 0.5 at the threshold of the condition and 1 at the far end of its range.
+     */
+    private static double score(Condition condition, double coverage) {
+        double threshold = condition.percent();
+        if (condition.atMost()) {
+            if (coverage <= threshold) {
+                return threshold <= 0 ? 1 : 0.5 + 0.5 * (threshold - coverage) / threshold;
+            }
+            return 0.5 * (100 - coverage) / (100 - threshold);
+        }
+        if (coverage >= threshold) {
+            return threshold >= 100 ? 1 : 0.5 + 0.5 * (coverage - threshold) / (100 - threshold);
+        }
+        return 0.5 * coverage / threshold;
+    }
+
+    private static double percent(long count, long total) {
+        return total > 0 ? count * 100.0 / total : 0;
+    }
+
+    private static double round(double confidence) {
+        return Math.round(confidence * 1000) / 1000.0;
+    }
+
+    private static long mark(int[] box, long bit, long[] first, long[] second, long[] third) {
+        for (int value = box[0]; value <= box[1]; value++) {
+            first[value] |= bit;
+        }
+        for (int value = box[2]; value <= box[3]; value++) {
+            second[value] |= bit;
+        }
+        for (int value = box[4]; value <= box[5]; value++) {
+            third[value] |= bit;
+        }
+        return bit;
+    }
+
+    private static List<int[]> parseBoxes(String color, String ranges) {
+        List<int[]> boxes = new ArrayList<>();
+        if (ranges == null || ranges.isBlank()) {
+            return boxes;
+        }
+        for (String box : ranges.split(";")) {
+            String[] channels = box.split(",");
+            if (channels.length != 3) {
+                throw new IllegalArgumentException("Range " + box + " of screen color " + color + " must have three channels");
+            }
+            int[] bounds = new int[6];
+            for (int channel = 0; channel < 3; channel++) {
+                String[] limits = channels[channel].trim().split("-");
+                try {
+                    bounds[2 * channel] = Integer.parseInt(limits[0].trim());
+                    bounds[2 * channel + 1] = Integer.parseInt(limits[limits.length - 1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Range " + box + " of screen color " + color + " is not a range of values", e);
+                }
+                if (limits.length > 2 || bounds[2 * channel] < 0 || bounds[2 * channel] > bounds[2 * channel + 1] || bounds[2 * channel + 1] > 255) {
+                    throw new IllegalArgumentException("Range " + box + " of screen color " + color + " must be lo-hi values from 0 to 255");
+                }
+            }
+            boxes.add(bounds);
+        }
+        return boxes;
+    }
+
+    private static Region parseRegion(String name, String bounds) {
+        String[] values = bounds.split(",");
+        if (values.length != 4) {
+            throw new IllegalArgumentException("Screen region " + name + " must be given as left,top,right,bottom");
+        }
+        Fraction[] fractions = new Fraction[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                fractions[i] = Fraction.parse(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Screen region " + name + " must be given as fractions of the screen", e);
+        }
+        Fraction zero = new Fraction(0, 1);
+        Fraction one = new Fraction(1, 1);
+        boolean valid = Arrays.stream(fractions).allMatch(fraction -> fraction.denominator() > 0 && fraction.isBetween(zero, one))
+                && fractions[0].isBelow(fractions[2]) && fractions[1].isBelow(fractions[3]);
+        if (!valid) {
+            throw new IllegalArgumentException("Screen region " + name + " must be a non empty rectangle within the screen");
+        }
+        return new Region(name, fractions[0], fractions[1], fractions[2], fractions[3]);
+    }
+
+    private Condition parseCondition(String profile, String condition) {
+        Matcher matcher = CONDITION.matcher(condition);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Condition " + condition + " of screen profile " + profile + " must be region:color>=percent or region:color<=percent");
+        }
+        int region = indexOf(Arrays.stream(regions).map(Region::name).toArray(String[]::new), matcher.group(1));
+        int color = indexOf(colors, matcher.group(2));
+        double percent = Double.parseDouble(matcher.group(4));
+        if (region < 0 || color < 0 || percent > 100) {
+            throw new IllegalArgumentException("Condition " + condition + " of screen profile " + profile + " must name a configured region and color and a percentage up to 100");
+        }
+        return new Condition(region, color, percent, matcher.group(3).equals("<="));
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Non-blocking limit of the number of tasks running at the same time. Tasks beyond the limit are queued without
+ * holding a thread and started in order as running tasks complete; cancelling a queued task removes it from the queue.
+ */
+class ConcurrencyLimit {
+
+    private final int permits;
+
+    private final Queue<Runnable> queued = new ArrayDeque<>();
+
+    private int running;
+
+    ConcurrencyLimit(int permits) {
+        this.permits = Math.max(1, permits);
+    }
+
+    /**
+     * Method to run a task within the limit.
+     *
+     * @param task
+     *      -- task to run
+     * @return Mono<T>
+     *      -- result of the task, once it has been started and completed
+     */
+    <T> Mono<T> run(Mono<T> task) {
+        return Mono.create(sink -> {
+            Disposable[] subscription = new Disposable[1];
+            boolean[] cancelled = new boolean[1];
+            Runnable start = () -> {
+                synchronized (subscription) {
+                    if (cancelled[0]) {
+                        release();
+                        return;
+                    }
+                    subscription[0] = task.doFinally(signal -> release()).subscribe(sink::success, sink::error, sink::success);
+                }
+            };
+            sink.onCancel(() -> {
+                synchronized (subscription) {
+                    cancelled[0] = true;
+                    if (subscription[0] != null) {
+                        subscription[0].dispose();
+                    }
+                }
+                synchronized (this) {
+                    queued.remove(start);
+                }
+            });
+            if (tryAcquire(start)) {
+                start.run();
+            }
+        });
+    }
+
+    private synchronized boolean tryAcquire(Runnable start) {
+        if (running < permits) {
+            running++;
+            return true;
+        }
+        queued.add(start);
+        return false;
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = queued.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        next.run();
+    }
+}
@@ -0,0 +1,206 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.health.model.FreezeStatus;
+import com.cats.gateway.health.screen.PerceptualHash;
+import com.cats.gateway.health.screen.ScreenFrame;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.video.service.AbstractGatewayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Service class to keep the history of the screens captured of every slot. Each frame decoded by the gateway is
+ * reduced to a 64-bit difference hash and its mean luma, kept with its capture time in a fixed size ring buffer per slot. Freezes of
+ * the screen are detected from the ring buffer alone, without capturing or decoding any frame. Consecutive frames with
+ * the same hash and luma are collapsed into a single run, so a frozen screen takes one entry of the ring however long
+ * it stays frozen.
+ *
+ * */
+@Service
+@Slf4j
+public class FrameHistory extends AbstractGatewayService {
+
+    @Value("${video.health.frame-history.size:512}")
+    private int size;
+
+    private final Map<Integer, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * Method to record a frame captured of a slot. Frames captured no later than the last recorded frame, such as a
+     * cached snapshot decoded again, are ignored.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param frame
+     *      -- decoded frame
+     * @param capturedAt
+     *      -- time at which the frame was captured
+     */
+    public void record(int slot, ScreenFrame frame, Instant capturedAt) {
+        PerceptualHash hash = PerceptualHash.of(frame);
+        rings.computeIfAbsent(slot, key -> new Ring(Math.max(1, size))).add(hash, capturedAt.toEpochMilli());
+    }
+
+    /**
+     * Method to check whether the screen of a slot has been frozen. The screen is frozen if every frame captured
+     * within the given number of seconds up to the last captured frame is within the given Hamming distance of the
+     * last frame and of about the same brightness. The status is flagged as truncated if the screen has been unchanged
+     * since the oldest frame kept and older frames have been dropped, the screen may have been unchanged for longer.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param seconds
+     *      -- minimum number of seconds for which the screen has to be unchanged
+     * @param distance
+     *      -- maximum Hamming distance, from 0 to 64, of the hash of an unchanged frame to the hash of the last frame
+     * @return FreezeStatus
+     *      -- how long the screen has been unchanged
+     */
+    public FreezeStatus getFreezeStatus(int slot, int seconds, int distance) {
+        if (seconds < 0 || distance < 0 || distance > 64) {
+            throw new VideoGatewayException(HttpStatus.BAD_REQUEST, "Seconds must not be negative and distance must be between 0 and 64");
+        }
+        getRoute(slot);
+        Ring ring = rings.get(slot);
+        FreezeStatus status = ring != null ? ring.freezeStatus(seconds * 1000L, distance) : null;
+        if (status == null) {
+            throw new VideoGatewayException(HttpStatus.NOT_FOUND, "No frames have been captured of slot " + slot);
+        }
+        status.setSlot(slot);
+        return status;
+    }
+
+    /**
+     * Method to drop the history of all slots once a new mapping version is published, as slots may show the screen
+     * of another device.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        rings.clear();
+        log.debug("Frame history cleared for mapping version {}", snapshot.version());
+    }
+
+    /**
+     * Ring buffer of runs of frames, oldest first from the head. A run holds the hash and mean luma shared by its frames,
+     * the capture times in epoch milliseconds of its first and last frame and its number of frames.
+     */
+    private static final class Ring {
+
+        private final long[] hashes;
+
+        private final byte[] luma;
+
+        private final long[] firstAt;
+
+        private final long[] lastAt;
+
+        private final int[] frames;
+
+        private int head;
+
+        private int count;
+
+        private int frameCount;
+
+        private boolean truncated;
+
+        private Ring(int size) {
+            this.hashes = new long[size];
+            this.luma = new byte[size];
+            this.firstAt = new long[size];
+            this.lastAt = new long[size];
+            this.frames = new int[size];
+        }
+
+        private synchronized void add(PerceptualHash hash, long at) {
+            if (count > 0 && at <= lastAt[index(count - 1)]) {
+                return;
+            }
+            if (count > 0 && hash.equals(hash(count - 1))) {
+                int last = index(count - 1);
+                lastAt[last] = at;
+                frames[last]++;
+                frameCount++;
+                return;
+            }
+            int index = index(count);
+            if (count < hashes.length) {
+                count++;
+            } else {
+                frameCount -= frames[index];
+                truncated = true;
+                head = (head + 1) % hashes.length;
+            }
+            hashes[index] = hash.bits();
+            luma[index] = (byte) hash.luma();
+            firstAt[index] = at;
+            lastAt[index] = at;
+            frames[index] = 1;
+            frameCount++;
+        }
+
+        private synchronized FreezeStatus freezeStatus(long duration, int distance) {
+            if (count == 0) {
+                return null;
+            }
+            PerceptualHash last = hash(count - 1);
+            long until = lastAt[index(count - 1)];
+            int runs = 1;
+            int unchangedFrames = frames[index(count - 1)];
+            while (runs < count && hash(count - 1 - runs).matches(last, distance)) {
+                unchangedFrames += frames[index(count - 1 - runs)];
+                runs++;
+            }
+            long since = firstAt[index(count - runs)];
+
+            FreezeStatus status = new FreezeStatus();
+            status.setFrozen(until - since >= duration);
+            status.setTruncated(runs == count && truncated);
+            status.setUnchangedSince(Instant.ofEpochMilli(since).toString());
+            status.setUnchangedMillis(until - since);
+            status.setUnchangedFrames(unchangedFrames);
+            status.setLastCapturedAt(Instant.ofEpochMilli(until).toString());
+            status.setFrames(frameCount);
+            status.setHash(last.toString());
+            return status;
+        }
+
+        private PerceptualHash hash(int offset) {
+            int index = index(offset);
+            return new PerceptualHash(hashes[index], luma[index] & 0xff);
+        }
+
+        private int index(int offset) {
+            return (head + offset) % hashes.length;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthSnapshot;
+import com.cats.gateway.health.model.HealthStatusBean;
+import com.cats.gateway.health.model.ProbeMode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Background poller of the video health. The health of the video devices and the lease status are refreshed at a
+ * configurable interval with a random jitter, and the result is published as an immutable snapshot which is served
+ * to the health API without contacting any device. Refreshes are coalesced: while a run is in progress every caller
+ * requesting a refresh shares its result. The last snapshot is kept per probe mode, so a full or rtsp probe requested
+ * on demand never replaces the snapshot of the background light probe. Polling starts once the application is ready,
+ * and is disabled by an interval of zero or less, in which case the health is refreshed on demand only.
+ */
+@Slf4j
+@Component
+public class HealthPoller {
+
+    @Autowired
+    private HealthService healthService;
+
+    @Value("${video.health.poll.interval:30000}")
+    private long pollInterval;
+
+    @Value("${video.health.poll.jitter:5000}")
+    private long pollJitter;
+
+    private final Map<ProbeMode, HealthSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final Map<ProbeMode, AtomicReference<Mono<HealthSnapshot>>> inFlight = new EnumMap<>(ProbeMode.class);
+
+    {
+        for (ProbeMode probeMode : ProbeMode.values()) {
+            inFlight.put(probeMode, new AtomicReference<>());
+        }
+    }
+
+    private Disposable polling;
+
+    /**
+     * Method to start polling the video health once the application is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (pollInterval <= 0) {
+            log.info("Video health polling is disabled, the health is refreshed on demand");
+            return;
+        }
+        polling = Mono.defer(() -> refresh(ProbeMode.LIGHT))
+                .onErrorResume(e -> {
+                    log.warn("Video health refresh failed: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> Mono.delay(nextDelay())))
+                .repeat()
+                .subscribe();
+    }
+
+    /**
+     * Method to stop polling the video health.
+     */
+    @PreDestroy
+    public void stop() {
+        if (polling != null) {
+            polling.dispose();
+        }
+    }
+
+    /**
+     * Method to get the video health. The last published snapshot is returned unless a fresh report or a full or rtsp
+     * probe is requested, or no snapshot has been published yet.
+     *
+     * @param fresh
+     *      -- refresh the health before returning it
+     * @param probeMode
+     *      -- probe of the devices, probes other than the background light probe always refresh the health
+     * @return Mono<HealthStatusBean>
+     *      -- video health with the time of the refresh and its age
+     */
+    public Mono<HealthStatusBean> getHealth(boolean fresh, ProbeMode probeMode) {
+        HealthSnapshot current = snapshots.get(probeMode);
+        boolean refresh = fresh || current == null || probeMode != ProbeMode.LIGHT;
+        Mono<HealthSnapshot> source = refresh ? refresh(probeMode) : Mono.just(current);
+        return source.map(this::toResponse);
+    }
+
+    /**
+     * Method to get the last published health snapshot of the background light probe.
+     *
+     * @return HealthSnapshot
+     *      -- last snapshot, null if no run has completed yet
+     */
+    public HealthSnapshot getSnapshot() {
+        return getSnapshot(ProbeMode.LIGHT);
+    }
+
+    /**
+     * Method to get the last published health snapshot of a probe mode.
+     *
+     * @param probeMode
+     *      -- probe of the devices
+     * @return HealthSnapshot
+     *      -- last snapshot, null if no run with the probe mode has completed yet
+     */
+    public HealthSnapshot getSnapshot(ProbeMode probeMode) {
+        return snapshots.get(probeMode);
+    }
+
+    /**
+     * Method to refresh the video health. Joins the run in progress with the same probe mode if there is one.
+     *
+     * @param probeMode
+     *      -- light or full probe of the devices
+     * @return Mono<HealthSnapshot>
+     *      -- snapshot published by the run for the probe mode
+     */
+    public Mono<HealthSnapshot> refresh(ProbeMode probeMode) {
+        AtomicReference<Mono<HealthSnapshot>> inFlight = this.inFlight.get(probeMode);
+        while (true) {
+            Mono<HealthSnapshot> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            AtomicReference<Mono<HealthSnapshot>> self = new AtomicReference<>();
+            Mono<HealthSnapshot> run = Mono.defer(() -> {
+                        long start = System.nanoTime();
+                        return healthService.getVideoHealthReport(probeMode)
+                                .map(report -> new HealthSnapshot(report, Instant.now(), Duration.ofNanos(System.nanoTime() - start)));
+                    })
+                    .doOnNext(published -> {
+                        snapshots.put(probeMode, published);
+                        log.debug("Video health refreshed with {} probe in {} ms", probeMode, published.probeDuration().toMillis());
+                    })
+                    .doFinally(signal -> inFlight.compareAndSet(self.get(), null))
+                    .cache();
+            self.set(run);
+            if (inFlight.compareAndSet(null, run)) {
+                return run;
+            }
+        }
+    }
+
+    private Duration nextDelay() {
+        long jitter = pollJitter > 0 ? ThreadLocalRandom.current().nextLong(pollJitter + 1) : 0;
+        return Duration.ofMillis(pollInterval + jitter);
+    }
+
+    private HealthStatusBean toResponse(HealthSnapshot healthSnapshot) {
+        HealthStatusBean report = healthSnapshot.report();
+        HealthStatusBean response = new HealthStatusBean();
+        response.setVersion(report.getVersion());
+        response.setIsHealthy(report.getIsHealthy());
+        response.setHwDevicesHealthStatus(report.getHwDevicesHealthStatus());
+        response.setSlotHealthStatus(report.getSlotHealthStatus());
+        response.setDependenciesHealthStatus(report.getDependenciesHealthStatus());
+        response.setLeaseHealthStatus(report.getLeaseHealthStatus());
+        response.setRemarks(report.getRemarks());
+        response.setRefreshedAt(healthSnapshot.refreshedAt().toString());
+        response.setAgeMillis(Math.max(0, Duration.between(healthSnapshot.refreshedAt(), Instant.now()).toMillis()));
+        return response;
+    }
+}
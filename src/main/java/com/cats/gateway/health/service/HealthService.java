@@ -19,26 +19,42 @@ package com.cats.gateway.health.service;
  */
 
 import com.cats.gateway.health.model.*;
+import com.cats.gateway.health.probe.ProbeEngine;
+import com.cats.gateway.health.probe.ProbeStrategy;
+import com.cats.gateway.health.probe.ProbeTarget;
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.health.screen.ScreenClassification;
+import com.cats.gateway.health.screen.ScreenClassifier;
+import com.cats.gateway.health.screen.ScreenFrame;
 import com.cats.gateway.config.Configuration;
 import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
 import com.cats.gateway.slotmapping.service.SlotMappingService;
-import com.cats.gateway.video.VideoDevice;
+import com.cats.gateway.video.SlotRoute;
+import com.cats.gateway.video.SlotRoutingTable;
+import com.cats.gateway.video.DeviceCircuitBreakers;
 import com.cats.gateway.video.VideoDeviceFactory;
+import com.cats.gateway.video.service.SnapshotService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import reactor.core.scheduler.Schedulers;
 import java.util.List;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
@@ -50,47 +66,195 @@ public class HealthService {
     @Autowired
     private Configuration config;
 
-    private VideoDevice videoDevice;
-
     @Autowired
     private VideoDeviceFactory videoDeviceFactory;
 
-    @Value("${cats.rack.capability.details}")
-    public String catsRackCapability;
+    @Autowired
+    private SnapshotService snapshotService;
+
+    @Autowired
+    private ProbeEngine probeEngine;
+
+    @Autowired
+    private DeviceCircuitBreakers deviceCircuitBreakers;
+
+    @Autowired
+    private LeaseStatusService leaseStatusService;
+
+    @Autowired
+    private ScreenClassifier screenClassifier;
+
+    @Autowired
+    private FrameHistory frameHistory;
+
+    @Value("${video.health.probe.deadline:10000}")
+    private long probeDeadline;
+
+    @Value("${video.health.probe.concurrency-per-device:2}")
+    private int probeConcurrencyPerDevice;
+
+    @Value("${video.health.screen.black-check.delay:5000}")
+    private long blackCheckDelay;
+
+    @Value("${video.health.screen.black-check.frames:1}")
+    private int blackCheckFrames;
+
+    @Value("${video.health.screen.dc-decode:true}")
+    private boolean dcDecode;
 
-    @Value("${cats.rack.url}")
-    private String rackUrl;
+    @Value("${video.health.screen.sweep.concurrency-per-device:2}")
+    private int screenSweepConcurrencyPerDevice;
+
+    private ConcurrencyLimit screenCheckLimit;
+
+    private final Map<Integer, ConcurrencyLimit> screenCheckDeviceLimits = new ConcurrentHashMap<>();
+
+    @Value("${video.health.screen.sweep.concurrency:32}")
+    void setScreenSweepConcurrency(int concurrency) {
+        screenCheckLimit = new ConcurrencyLimit(concurrency);
+    }
+
+    private static final String SCREENSHOT_RESOLUTION = "704x480";
+
+    /**
+     * Method to drop the screen check limits of the devices which are no longer configured once a mapping update has
+     * been published. Checks already running or queued on a dropped limit complete within it.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        Set<Integer> configured = new HashSet<>();
+        if (snapshot.mappings().getDevices() != null) {
+            snapshot.mappings().getDevices().forEach(device -> configured.add(device.getId()));
+        }
+        screenCheckDeviceLimits.keySet().retainAll(configured);
+    }
 
 
     //Collection HealthStatus Bean from every device in the slot mapping
     /**
-     * Method to get the health report of all the devices in the slot mapping.
+     * Method to get the health report of all the devices in the slot mapping. Every mapped slot is probed on the
+     * outlet of its video device, devices without mapped slots are probed on their first outlet. Probes of a device run
+     * with a bounded concurrency, all devices are probed in parallel. Probes which have not completed by the probe
+     * deadline are reported as unhealthy.
      *
-     * @return Mono<List<HealthStatusBean>>
+     * @param probeMode
+     *      -- light or full probe of the devices
+     * @return Mono<HealthStatusBean>
+     *      -- health per device and per slot
      */
-    public Mono<List<HealthStatusBean>> getHealthReport() {
+    public Mono<HealthStatusBean> getHealthReport(ProbeMode probeMode) {
+        SlotRoutingTable routingTable = videoDeviceFactory.getRoutingTable();
+        Map<Integer, List<ProbeTarget>> targetsByDevice = new LinkedHashMap<>();
+        List<ProbeTarget> unconfigured = new ArrayList<>();
 
-        HealthStatusBean result = new HealthStatusBean();
-        List<HealthReport> healthReportArrayList = new ArrayList<>();
-        result.setIsHealthy(true);
+        for (Integer slot : routingTable.slots()) {
+            SlotRoute route = routingTable.route(slot);
+            if (route.device() == null) {
+                unconfigured.add(new ProbeTarget(slot, null, null, route.outlet()));
+            } else {
+                targetsByDevice.computeIfAbsent(route.device().getId(), id -> new ArrayList<>())
+                        .add(new ProbeTarget(slot, route.device(), route.videoDevice(), route.outlet()));
+            }
+        }
+        List<Device> devices = slotMappingService.getVideoDevices();
+        if (devices != null) {
+            for (Device device : devices) {
+                if (device != null && device.getId() != null && !targetsByDevice.containsKey(device.getId())) {
+                    targetsByDevice.put(device.getId(), List.of(new ProbeTarget(null, device, routingTable.videoDevice(device.getId()), 1)));
+                }
+            }
+        }
 
-        List<Device> deviceAndPort = slotMappingService.getVideoDevices();
+        Map<ProbeTarget, HealthReport> results = new ConcurrentHashMap<>();
+        return Flux.fromIterable(targetsByDevice.values())
+                .flatMap(targets -> Flux.fromIterable(targets)
+                        .flatMap(target -> probeEngine.probe(target, probeMode)
+                                .doOnNext(report -> results.put(target, report)), probeConcurrencyPerDevice),
+                        Math.max(1, targetsByDevice.size()))
+                .then()
+                .timeout(Duration.ofMillis(probeDeadline), Mono.empty())
+                .then(Mono.fromCallable(() -> aggregate(targetsByDevice, unconfigured, results, probeMode)));
+    }
 
-        return Flux.fromIterable(deviceAndPort)
-                .flatMap(device -> {
-                    videoDevice = videoDeviceFactory.getVideoDevice(device);
-                    return videoDevice.getHealthStatus(result, device, healthReportArrayList);
-                })
-                .collectList();
+    private HealthReport unhealthyReport(ProbeTarget target, ProbeMode probeMode, String remarks) {
+        HealthReport healthReport = ProbeStrategy.newReport(target, probeMode, null);
+        healthReport.setIsHealthy(false);
+        healthReport.setRemarks(remarks);
+        return healthReport;
+    }
+
+    private HealthStatusBean aggregate(Map<Integer, List<ProbeTarget>> targetsByDevice, List<ProbeTarget> unconfigured,
+                                       Map<ProbeTarget, HealthReport> results, ProbeMode probeMode) {
+        List<HealthReport> deviceReports = new ArrayList<>();
+        List<HealthReport> slotReports = new ArrayList<>();
+
+        for (List<ProbeTarget> targets : targetsByDevice.values()) {
+            Device device = targets.get(0).device();
+            HealthReport deviceReport = new HealthReport();
+            deviceReport.setDeviceId(String.valueOf(device.getId()));
+            deviceReport.setIsHealthy(true);
+            List<String> remarks = new ArrayList<>();
+            int unhealthyOutlets = 0;
+
+            for (ProbeTarget target : targets) {
+                HealthReport report = results.get(target);
+                if (report == null) {
+                    report = unhealthyReport(target, probeMode, "Probe did not complete within " + probeDeadline + " ms");
+                }
+                report.setDeviceId(String.valueOf(device.getId()));
+                if (deviceReport.getHost() == null) {
+                    deviceReport.setHost(report.getHost());
+                    deviceReport.setEntity(report.getEntity());
+                }
+                if (!Boolean.TRUE.equals(report.getIsHealthy())) {
+                    deviceReport.setIsHealthy(false);
+                    unhealthyOutlets++;
+                    remarks.add("outlet " + target.outlet() + ": " + report.getRemarks());
+                }
+                if (deviceReport.getCheckedAt() == null || (report.getCheckedAt() != null && report.getCheckedAt().compareTo(deviceReport.getCheckedAt()) > 0)) {
+                    deviceReport.setCheckedAt(report.getCheckedAt());
+                }
+                if (target.slot() != null) {
+                    report.getMetadata().put("slot", String.valueOf(target.slot()));
+                    slotReports.add(report);
+                }
+            }
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put("probe", probeMode.name().toLowerCase());
+            metadata.put("outlets", String.valueOf(targets.size()));
+            metadata.put("unhealthyOutlets", String.valueOf(unhealthyOutlets));
+            metadata.put("circuitBreaker", deviceCircuitBreakers.getState(device.getId()).name().toLowerCase());
+            deviceReport.setMetadata(metadata);
+            deviceReport.setRemarks(remarks.isEmpty() ? null : String.join("; ", remarks));
+            deviceReports.add(deviceReport);
+        }
+
+        for (ProbeTarget target : unconfigured) {
+            HealthReport report = unhealthyReport(target, probeMode, "Video device not configured");
+            report.getMetadata().put("slot", String.valueOf(target.slot()));
+            slotReports.add(report);
+        }
+        slotReports.sort(Comparator.comparing(report -> Integer.valueOf(report.getMetadata().get("slot"))));
+
+        HealthStatusBean result = new HealthStatusBean();
+        result.setIsHealthy(deviceReports.stream().allMatch(report -> report.getIsHealthy()) && unconfigured.isEmpty());
+        result.setHwDevicesHealthStatus(deviceReports);
+        result.setSlotHealthStatus(slotReports);
+        return result;
     }
 
     /**
      * Method to get the health report of all the devices in the slot mapping.
      *
+     * @param probeMode
+     *      -- light or full probe of the devices
      * @return Mono<List<HealthStatusBean>>
      */
-    public Mono<HealthStatusBean> getVideoHealthReport() {
-        Mono<List<RouterLeaseStatus>> leaseStatusMono = getVideoLeaseStatus();
+    public Mono<HealthStatusBean> getVideoHealthReport(ProbeMode probeMode) {
+        Mono<LeaseStatusSnapshot> leaseStatusMono = getVideoLeaseStatus();
         HealthStatusBean videoHealthStatusBean = new HealthStatusBean();
         videoHealthStatusBean.setIsHealthy(true);
         videoHealthStatusBean.getVersion().put("MS_VERSION", getMicroServiceVersion());
@@ -100,8 +264,8 @@ public class HealthService {
         videoRouterLeaseStatus.setIsHealthy(true);
 
         //Setting the video health status bean
-        return leaseStatusMono.flatMap(routerLeaseStatuses -> {
-            for (RouterLeaseStatus routerLeaseStatus : routerLeaseStatuses) {
+        return leaseStatusMono.flatMap(leaseStatus -> {
+            for (RouterLeaseStatus routerLeaseStatus : leaseStatus.statuses()) {
                 log.info("Processing routerLeaseStatus: {}", routerLeaseStatus);
                 if(routerLeaseStatus.getMetadata()!=null){
                     leaseMetadata.addAll(routerLeaseStatus.getMetadata());
@@ -116,16 +280,23 @@ public class HealthService {
             }
             //setting the video lease status
             videoRouterLeaseStatus.setMetadata(leaseMetadata);
+            videoRouterLeaseStatus.setFetchedAt(leaseStatus.fetchedAt().toString());
+            videoRouterLeaseStatus.setAgeMillis(Math.max(0, Duration.between(leaseStatus.fetchedAt(), Instant.now()).toMillis()));
+            if (leaseStatus.isStale()) {
+                videoRouterLeaseStatus.setStale(true);
+                comment.append(comment.length() > 0 ? "; " : "")
+                        .append("Lease status is ").append(videoRouterLeaseStatus.getAgeMillis())
+                        .append(" ms old, router capability failed: ").append(leaseStatus.error());
+            }
             videoRouterLeaseStatus.setComment(comment.toString());
             videoHealthStatusBean.setLeaseHealthStatus(videoRouterLeaseStatus);
-                return getHealthReport()
-                        .flatMap(healthStatusBeans -> {
-                            healthStatusBeans.forEach(healthStatusBean -> {
-                                if(!healthStatusBean.getIsHealthy()){
-                                    videoHealthStatusBean.setIsHealthy(false);
-                                }
-                                videoHealthStatusBean.setHwDevicesHealthStatus(healthStatusBean.getHwDevicesHealthStatus());
-                            });
+                return getHealthReport(probeMode)
+                        .flatMap(healthStatusBean -> {
+                            if(!healthStatusBean.getIsHealthy()){
+                                videoHealthStatusBean.setIsHealthy(false);
+                            }
+                            videoHealthStatusBean.setHwDevicesHealthStatus(healthStatusBean.getHwDevicesHealthStatus());
+                            videoHealthStatusBean.setSlotHealthStatus(healthStatusBean.getSlotHealthStatus());
                             log.info("the video health is {}",videoHealthStatusBean.getIsHealthy());
                             return Mono.just(videoHealthStatusBean);
                         })
@@ -145,27 +316,11 @@ public class HealthService {
     /**
      * Method to get the lease status of the video devices.
      *
-     * @return Mono<List<RouterLeaseStatus>>
+     * @return Mono<LeaseStatusSnapshot>
+     *      -- cached lease status of the VID and MTR entries of the router
      */
-    public Mono<List<RouterLeaseStatus>> getVideoLeaseStatus() {
-        log.info("Capability url: {}", catsRackCapability);
-        WebClient webClient = WebClient.create();
-        return webClient.get()
-                .uri(catsRackCapability)
-                .retrieve()
-                .bodyToMono(RouterHealthStatus.class)
-                .map(videoDeviceDetails -> {
-                    List<RouterLeaseStatus> routerLeaseStatuses = new ArrayList<>();
-                    RouterLeaseStatus vidStatus = videoDeviceDetails.get("VID");
-                    RouterLeaseStatus mtrStatus = videoDeviceDetails.get("MTR");
-                    if (vidStatus != null) {
-                        routerLeaseStatuses.add(vidStatus);
-                    }
-                    if (mtrStatus != null) {
-                        routerLeaseStatuses.add(mtrStatus);
-                    }
-                    return routerLeaseStatuses;
-                });
+    public Mono<LeaseStatusSnapshot> getVideoLeaseStatus() {
+        return leaseStatusService.getLeaseStatus();
     }
 
     /**
@@ -202,170 +357,209 @@ public class HealthService {
     }
 
     /**
-     * Method to get the video health status of a device in the slot mapping.
+     * Method to get the status of the screens of several slots. Slots of a video device are checked with a bounded
+     * concurrency, all devices in parallel, and the number of checks running on a device and in the gateway are bounded
+     * across all requests. A check waits for its device before waiting for the gateway, so that a check queued behind a
+     * busy device does not hold back the checks of the other devices. The status of every slot is emitted as soon as
+     * its check completes.
      *
-     * @param slotNo
+     * @param slots
+     *      -- slots to check, all mapped slots if null
+     * @return Flux<SlotScreenStatus>
+     *      -- status of the screen of every slot, in order of completion
+     */
+    public Flux<SlotScreenStatus> getScreenStatuses(List<Integer> slots) {
+        SlotRoutingTable routingTable = videoDeviceFactory.getRoutingTable();
+        List<Integer> selectedSlots = slots != null ? slots : routingTable.slots();
+        Map<Integer, List<Integer>> slotsByDevice = new LinkedHashMap<>();
+        for (Integer slot : selectedSlots) {
+            SlotRoute route = routingTable.route(slot);
+            Integer deviceId = route != null && route.device() != null ? route.device().getId() : null;
+            slotsByDevice.computeIfAbsent(deviceId, id -> new ArrayList<>()).add(slot);
+        }
+        return Flux.fromIterable(slotsByDevice.entrySet())
+                .flatMap(deviceSlots -> Flux.fromIterable(deviceSlots.getValue())
+                        .flatMap(slot -> screenCheck(deviceSlots.getKey(), timed(screenStatus(slot)
+                                .onErrorResume(error -> Mono.just(errorStatus(slot, error))))), screenSweepConcurrencyPerDevice),
+                        Math.max(1, slotsByDevice.size()));
+    }
+
+    private <T> Mono<T> screenCheck(Integer deviceId, Mono<T> check) {
+        Mono<T> limited = screenCheckLimit.run(check);
+        if (deviceId == null) {
+            return limited;
+        }
+        return screenCheckDeviceLimits.computeIfAbsent(deviceId, id -> new ConcurrencyLimit(screenSweepConcurrencyPerDevice))
+                .run(limited);
+    }
+
+    /**
+     * Method to get the status of the screen of a slot, with the coverage of the colors of the screen profiles and the
+     * confidence of the classification.
+     *
+     * @param slot
      *      -- Slot number of the device
-     * @return Mono<BufferedImage>
+     * @return Mono<SlotScreenStatus>
      */
-    public Mono<BufferedImage> getImage(long slotNo) {
-        WebClient webClient = WebClient.create();
-        return webClient.get()
-                .uri(rackUrl + "minion/rest/rack/" + slotNo + "/screenshot?resolution=4CIF&squarepixel=0")
-                .retrieve()
-                .bodyToMono(byte[].class)
-                .map(bytes -> {
-                    try {
-                        return ImageIO.read(new ByteArrayInputStream(bytes));
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+    public Mono<SlotScreenStatus> getSlotScreenStatus(int slot) {
+        return timed(screenStatus(slot));
+    }
+
+    private Mono<SlotScreenStatus> screenStatus(int slot) {
+        return getImage(slot)
+                .flatMap(frame -> classifyScreen(frame, slot))
+                .map(classification -> {
+                    SlotScreenStatus screenStatus = new SlotScreenStatus();
+                    screenStatus.setSlot(slot);
+                    screenStatus.setScreen(classification.label());
+                    screenStatus.setConfidence(classification.confidence());
+                    screenStatus.setCoverage(classification.coverage());
+                    return screenStatus;
                 });
     }
 
+    private static SlotScreenStatus errorStatus(int slot, Throwable error) {
+        SlotScreenStatus screenStatus = new SlotScreenStatus();
+        screenStatus.setSlot(slot);
+        if (error instanceof ResponseStatusException statusException) {
+            screenStatus.setStatus(statusException.getStatusCode().value());
+            screenStatus.setError(statusException.getReason());
+        } else {
+            screenStatus.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            screenStatus.setError(error.getMessage());
+        }
+        return screenStatus;
+    }
+
+    private static Mono<SlotScreenStatus> timed(Mono<SlotScreenStatus> screenStatus) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return screenStatus.doOnNext(completed -> completed.setDurationMillis(Duration.ofNanos(System.nanoTime() - start).toMillis()));
+        });
+    }
+
     /**
-     * Method to get the video health status of a device in the slot mapping.
+     * Method to get the frame shown on the screen of a slot. Baseline JPEG snapshots are decoded to a thumbnail of
+     * the DC coefficients of their blocks, other snapshots are decoded in full.
      *
-     * @param image
-     *      -- BufferedImage
      * @param slotNo
      *      -- Slot number of the device
-     * @return Mono<String>
+     * @return Mono<ScreenFrame>
      */
-    public Mono<String> screenInfo(BufferedImage image, long slotNo) {
-        int black = 0;
-        int blue = 0;
-        int green = 0;
-        int other = 0;
-        int count = 0;
-        int width = image.getWidth();
-        int height = image.getHeight();
-        int startWidth = width/3;
-        int endWidth = width - startWidth;
-        int startHeight = height/3;
-        int endHeight = height - startHeight;
-        if (image != null) {
-            for (int x = startWidth; x < endWidth; x++) {
-                for (int y = startHeight; y < endHeight; y++) {
-                    Color color = new Color(image.getRGB(x, y));
-                    if (color.getRed() <= 35 && color.getGreen() <= 35) {
-                        if (color.getBlue() > 200) {
-                            blue++;
-                        } else if (color.getBlue() <= 35) {
-                            black++;
-                        } else {
-                            other++;
-                        }
-                    }
-                    else if (color.getBlue() < 10 && color.getRed() < 10 && color.getGreen() > 40 ) {
-                        green++;
-                    }
-                    else {
-                        other++;
-                    }
-                    count++;
-                }
-            }
-        }
-        int bluePercent = blue * 100 / count;
-        int blackPercent = black * 100 / count;
-        int greenPercent = green * 100 / count;
-        if (blackPercent > 95) {
-            return checkImageDifference(image, slotNo);
-        } else if (bluePercent > 95) {
-            return Mono.just("Blue");
-        } else if (greenPercent > 50 ) {
-            if(greenPercent < 85 ) {
-                return Mono.just(checkGreenScreen(image));
-            }
-            return Mono.just("Green");
-        }
-        else {
-            return Mono.just("Normal");
-        }
+    public Mono<ScreenFrame> getImage(long slotNo) {
+        return getImage(slotNo, Long.MAX_VALUE);
+    }
+
+    /**
+     * Method to get the frame shown on the screen of a slot, from a snapshot not older than the given age. The frame
+     * is recorded in the frame history of the slot.
+     *
+     * @param slotNo
+     *      -- Slot number of the device
+     * @param maxAge
+     *      -- maximum age in milliseconds of a cached snapshot, 0 for a fresh snapshot
+     * @return Mono<ScreenFrame>
+     */
+    public Mono<ScreenFrame> getImage(long slotNo, long maxAge) {
+        return getScreenshot(slotNo, maxAge)
+                .flatMap(snapshot -> {
+                    String capturedAt = snapshot.getHeaders().getFirst(SnapshotService.CAPTURED_AT_HEADER);
+                    Instant at = capturedAt != null ? Instant.parse(capturedAt) : Instant.now();
+                    return DataBufferUtils.join(snapshot.getBody())
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(buffer -> {
+                                byte[] jpeg = new byte[buffer.readableByteCount()];
+                                buffer.read(jpeg);
+                                DataBufferUtils.release(buffer);
+                                try {
+                                    ScreenFrame frame = ScreenFrame.decode(jpeg, dcDecode);
+                                    if (frame == null) {
+                                        throw new VideoGatewayException(HttpStatus.BAD_GATEWAY, "Snapshot of slot " + slotNo + " is not an image");
+                                    }
+                                    frameHistory.record(Math.toIntExact(slotNo), frame, at);
+                                    return frame;
+                                } catch (IOException e) {
+                                    throw new RuntimeException(e);
+                                }
+                            });
+                })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
     }
 
     /**
      * Method to get the video health status of a device in the slot mapping.
      *
-     * @param initialFrame
-     *      -- BufferedImage
+     * @param frame
+     *      -- ScreenFrame
      * @param slotNo
      *      -- Slot number of the device
      * @return Mono<String>
      */
-    public Mono<String> checkImageDifference(BufferedImage initialFrame, long slotNo) {
-        try {
-            Thread.sleep(5000);
-        } catch (InterruptedException e) {
-            return Mono.just(e.getMessage());
-        }
-
-        return getImage(slotNo).flatMap(nextFrame -> {
-            int initialWidth = initialFrame.getWidth();
-            int initialHeight = initialFrame.getHeight();
-            int finalHeight = nextFrame.getHeight();
-            int finalWidth = nextFrame.getWidth();
+    public Mono<String> screenInfo(ScreenFrame frame, long slotNo) {
+        return classifyScreen(frame, slotNo).map(ScreenClassification::label);
+    }
 
-            if(initialHeight != finalHeight || initialWidth != finalWidth) {
-                return Mono.just("Normal");
-            }
+    /**
+     * Method to classify the screen of a slot by the screen profiles. Screens of still frame profiles are checked
+     * against later frames.
+     *
+     * @param frame
+     *      -- ScreenFrame
+     * @param slotNo
+     *      -- Slot number of the device
+     * @return Mono<ScreenClassification>
+     */
+    public Mono<ScreenClassification> classifyScreen(ScreenFrame frame, long slotNo) {
+        ScreenClassification classification = screenClassifier.classify(frame);
+        if (classification.stillFrame()) {
+            return checkImageDifference(frame, classification, slotNo);
+        }
+        return Mono.just(classification);
+    }
 
-            for (int x = initialWidth/3 ; x < initialWidth - initialWidth/3 ; x++) {
-                for( int y = initialHeight/3; y < initialHeight - initialHeight/3; y++ ) {
-                    if(initialFrame.getRGB(x,y) != nextFrame.getRGB(x,y)) {
-                        Color newColor = new Color(nextFrame.getRGB(x,y));
-                        Color oldColor = new Color(initialFrame.getRGB(x,y));
-                        int diff = Math.abs(newColor.getBlue() - oldColor.getBlue()) + Math.abs(newColor.getRed() - oldColor.getRed()) + Math.abs(newColor.getGreen() - oldColor.getGreen());
-                        if(diff > 6 ) {
-                            return Mono.just("Normal");
-                        }
-                    }
-                }
-            }
-            return Mono.just("Black");
-        });
+    /**
+     * Method to check whether a screen classified by a still frame profile, such as a black screen, is a still frame.
+     * Up to the configured number of further frames are captured, each after the configured delay and bypassing the
+     * snapshot cache, and compared with the initial frame. The delays are timer scheduled and do not hold a thread,
+     * the check stops at the first frame that differs.
+     *
+     * @param initialFrame
+     *      -- ScreenFrame
+     * @param classification
+     *      -- classification of the initial frame
+     * @param slotNo
+     *      -- Slot number of the device
+     * @return Mono<ScreenClassification>
+     *      -- Normal if a frame differs from the initial frame, the classification of the initial frame otherwise
+     */
+    public Mono<ScreenClassification> checkImageDifference(ScreenFrame initialFrame, ScreenClassification classification, long slotNo) {
+        return Flux.range(0, Math.max(1, blackCheckFrames))
+                .concatMap(frame -> Mono.delay(Duration.ofMillis(blackCheckDelay)).then(getImage(slotNo, 0)))
+                .any(nextFrame -> screenClassifier.differs(initialFrame, nextFrame))
+                .map(changed -> changed ? classification.moving() : classification);
     }
 
     /**
-     * Method to get the video health status of a device in the slot mapping.
+     * Method to get the screenshot of a device in the slot mapping, streamed from the video device.
      *
-     * @param image
-     *      -- BufferedImage
-     * @return String
+     * @param slotNo
+     *      -- Slot number of the device
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
      */
-    private String checkGreenScreen(BufferedImage image) {
-        int green = 0;
-        int count = 0;
-        for (int x=0; x < image.getWidth(); x++) {
-            for (int y=0; y < image.getHeight(); y++) {
-                Color color = new Color(image.getRGB(x,y));
-                if (color.getBlue() < 10 && color.getRed() < 10 && color.getGreen() > 40  || (color.getBlue() < 60 && color.getBlue() < 60 && color.getGreen() > 150)
-                        || (color.getBlue() < 40 && color.getRed() < 40 && color.getGreen() > 100)) {
-                    green++;
-                }
-                count ++;
-            }
-        }
-        int greenPercent = green * 100 / count;
-        if(greenPercent > 70) {
-            return "Green";
-        }
-        return "Normal";
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getScreenshot(long slotNo) {
+        return getScreenshot(slotNo, Long.MAX_VALUE);
     }
 
     /**
-     * Method to get the video health status of a device in the slot mapping.
+     * Method to get the screenshot of a device in the slot mapping, not older than the given age.
      *
      * @param slotNo
      *      -- Slot number of the device
-     * @return Mono<byte[]>
+     * @param maxAge
+     *      -- maximum age in milliseconds of a cached screenshot, 0 for a fresh screenshot
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
      */
-    public Mono<byte[]> getImageByteArray(long slotNo) {
-        WebClient webClient = WebClient.create();
-        return webClient.get()
-                .uri(rackUrl + "minion/rest/rack/" + slotNo + "/screenshot?resolution=4CIF&squarepixel=0")
-                .retrieve()
-                .bodyToMono(byte[].class);
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getScreenshot(long slotNo, long maxAge) {
+        return snapshotService.getSnapshot(Math.toIntExact(slotNo), SCREENSHOT_RESOLUTION, "", "0", maxAge);
     }
 }
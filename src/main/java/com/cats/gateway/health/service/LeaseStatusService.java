@@ -0,0 +1,193 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.LeaseStatusSnapshot;
+import com.cats.gateway.health.model.RouterLeaseStatus;
+import com.cats.gateway.video.VideoDeviceClients;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cached lease status of the video devices. The router capability API is shared by every service of the rack, so the
+ * lease status is kept for a configurable time and concurrent callers share a single request to the router. When the
+ * router can not be reached the last lease status is served stale, along with the error, for up to a configurable age.
+ * A failed refresh is kept for the same time as a lease status, so the router is not called again until it expires.
+ */
+@Slf4j
+@Service
+public class LeaseStatusService {
+
+    private static final List<String> LEASE_KEYS = List.of("VID", "MTR");
+
+    @Autowired
+    private VideoDeviceClients videoDeviceClients;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cats.rack.capability.details}")
+    private String catsRackCapability;
+
+    @Value("${video.lease.cache.ttl:10000}")
+    private long ttl;
+
+    @Value("${video.lease.cache.max-stale:300000}")
+    private long maxStale;
+
+    private volatile LeaseStatusSnapshot cached;
+
+    private volatile Failure failure;
+
+    private final AtomicReference<Mono<LeaseStatusSnapshot>> inFlight = new AtomicReference<>();
+
+    /**
+     * Failed refresh of the lease status.
+     */
+    private record Failure(Throwable error, Instant failedAt) {
+    }
+
+    /**
+     * Method to get the lease status of the video devices. The cached lease status is returned while it is younger than
+     * the configured ttl, otherwise it is refreshed from the router unless the last refresh failed within the ttl.
+     *
+     * @return Mono<LeaseStatusSnapshot>
+     *      -- lease status, stale with the error of the refresh if the router failed and a cached value is available
+     */
+    public Mono<LeaseStatusSnapshot> getLeaseStatus() {
+        LeaseStatusSnapshot current = cached;
+        if (current != null && ageOf(current) < ttl) {
+            return Mono.just(current);
+        }
+        Failure failed = failure;
+        Mono<LeaseStatusSnapshot> source = failed != null && ageOf(failed.failedAt()) < ttl ? Mono.error(failed.error()) : refresh();
+        return source.onErrorResume(error -> {
+            LeaseStatusSnapshot stale = cached;
+            if (stale == null || ageOf(stale) > maxStale) {
+                return Mono.error(error);
+            }
+            log.debug("Serving lease status fetched {} ms ago, router capability failed: {}", ageOf(stale), error.getMessage());
+            return Mono.just(new LeaseStatusSnapshot(stale.statuses(), stale.fetchedAt(), error.getMessage()));
+        });
+    }
+
+    /**
+     * Method to fetch the lease status from the router. Joins the request in progress if there is one.
+     *
+     * @return Mono<LeaseStatusSnapshot>
+     *      -- fetched lease status
+     */
+    public Mono<LeaseStatusSnapshot> refresh() {
+        while (true) {
+            Mono<LeaseStatusSnapshot> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            AtomicReference<Mono<LeaseStatusSnapshot>> self = new AtomicReference<>();
+            Mono<LeaseStatusSnapshot> request = Mono.defer(() -> {
+                        log.debug("Capability url: {}", catsRackCapability);
+                        return videoDeviceClients.forRack().get()
+                                .uri(catsRackCapability)
+                                .retrieve()
+                                .bodyToMono(DataBuffer.class);
+                    })
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty router capability response")))
+                    .map(buffer -> {
+                        try (InputStream body = buffer.asInputStream(true)) {
+                            return new LeaseStatusSnapshot(parseLeaseStatus(body), Instant.now(), null);
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Invalid router capability response: " + e.getMessage(), e);
+                        }
+                    })
+                    .doOnNext(fetched -> {
+                        cached = fetched;
+                        failure = null;
+                    })
+                    .doOnError(error -> {
+                        log.warn("Router capability failed, retrying in {} ms: {}", ttl, error.getMessage());
+                        failure = new Failure(error, Instant.now());
+                    })
+                    .doFinally(signal -> inFlight.compareAndSet(self.get(), null))
+                    .cache();
+            self.set(request);
+            if (inFlight.compareAndSet(null, request)) {
+                return request;
+            }
+        }
+    }
+
+    /**
+     * Method to read the VID and MTR lease status from a router capability response, the other entries are skipped
+     * without being bound.
+     *
+     * @param body
+     *      -- router capability response
+     * @return List<RouterLeaseStatus>
+     *      -- lease status of the VID and MTR entries that are present, in that order
+     * @throws IOException
+     *      -- IOException
+     */
+    List<RouterLeaseStatus> parseLeaseStatus(InputStream body) throws IOException {
+        RouterLeaseStatus[] found = new RouterLeaseStatus[LEASE_KEYS.size()];
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                int index = LEASE_KEYS.indexOf(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (index >= 0 && value == JsonToken.START_OBJECT) {
+                    found[index] = objectMapper.readValue(parser, RouterLeaseStatus.class);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        List<RouterLeaseStatus> statuses = new ArrayList<>();
+        for (RouterLeaseStatus status : found) {
+            if (status != null) {
+                statuses.add(status);
+            }
+        }
+        return statuses;
+    }
+
+    private static long ageOf(LeaseStatusSnapshot snapshot) {
+        return ageOf(snapshot.fetchedAt());
+    }
+
+    private static long ageOf(Instant instant) {
+        return Math.max(0, Duration.between(instant, Instant.now()).toMillis());
+    }
+}
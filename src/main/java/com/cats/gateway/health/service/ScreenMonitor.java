@@ -0,0 +1,222 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.ScreenTransition;
+import com.cats.gateway.health.screen.ScreenClassification;
+import com.cats.gateway.health.screen.ScreenClassifier;
+import com.cats.gateway.health.screen.ScreenFrame;
+import com.cats.gateway.video.service.AbstractGatewayService;
+import com.cats.gateway.video.service.MjpegRelayService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Service class to monitor the screens of slots continuously. Every watched slot is subscribed to the relayed MJPEG
+ * stream of the slot, shared by all its watchers and with the viewers of the same stream. Every Nth frame of the
+ * stream is classified and recorded in the frame history of the slot, and changes of the screen are published as
+ * they are observed. Frames which can not be decoded are skipped and counted. The stream is reopened with a backoff if
+ * it fails.
+ *
+ * */
+@Service
+@Slf4j
+public class ScreenMonitor extends AbstractGatewayService {
+
+    static final String UNAVAILABLE = "Unavailable";
+
+    @Autowired
+    private MjpegRelayService mjpegRelayService;
+
+    @Autowired
+    private ScreenClassifier screenClassifier;
+
+    @Autowired
+    private FrameHistory frameHistory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${video.health.monitor.resolution:704x480}")
+    private String resolution;
+
+    @Value("${video.health.monitor.fps:10}")
+    private String fps;
+
+    private int frameInterval;
+
+    @Value("${video.health.monitor.frame-interval:3}")
+    void setFrameInterval(int frameInterval) {
+        this.frameInterval = Math.max(1, frameInterval);
+    }
+
+    @Value("${video.health.monitor.reconnect-delay:1000}")
+    private long reconnectDelay;
+
+    @Value("${video.health.monitor.max-reconnect-delay:30000}")
+    private long maxReconnectDelay;
+
+    @Value("${video.health.monitor.linger:5000}")
+    private long linger;
+
+    @Value("${video.health.screen.black-check.delay:5000}")
+    private long blackCheckDelay;
+
+    @Value("${video.health.screen.dc-decode:true}")
+    private boolean dcDecode;
+
+    private final Map<Integer, SlotMonitor> monitors = new ConcurrentHashMap<>();
+
+    private final LongAdder undecodableFrames = new LongAdder();
+
+    private record Observation(String screen, Instant at, String error) {
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("video.health.monitor.undecodable-frames", undecodableFrames, LongAdder::sum)
+                .description("Frames of monitored streams skipped as they could not be decoded").register(meterRegistry);
+    }
+
+    /**
+     * Method to watch the screen of a slot. The current screen is emitted first, once it is known, followed by every
+     * change of the screen. The slot is subscribed to its stream by its first watcher and unsubscribed shortly after
+     * its last watcher has cancelled.
+     *
+     * @param slot
+     *      -- Slot number
+     * @return Flux<ScreenTransition>
+     *      -- current screen of the slot and its changes, Unavailable while the stream can not be read
+     */
+    public Flux<ScreenTransition> watch(int slot) {
+        getRoute(slot);
+        return monitors.computeIfAbsent(slot, SlotMonitor::new).transitions;
+    }
+
+    private final class SlotMonitor {
+
+        private final int slot;
+
+        private final Flux<ScreenTransition> transitions;
+
+        private SlotMonitor(int slot) {
+            this.slot = slot;
+            this.transitions = Flux.defer(() -> {
+                        String[] previous = new String[1];
+                        return observations()
+                                .distinctUntilChanged(Observation::screen)
+                                .map(observation -> {
+                                    ScreenTransition transition = new ScreenTransition();
+                                    transition.setSlot(slot);
+                                    transition.setScreen(observation.screen());
+                                    transition.setPreviousScreen(previous[0]);
+                                    transition.setAt(observation.at().toString());
+                                    transition.setError(observation.error());
+                                    previous[0] = observation.screen();
+                                    return transition;
+                                });
+                    })
+                    .replay(1)
+                    .refCount(1, Duration.ofMillis(linger));
+        }
+
+        private Flux<Observation> observations() {
+            return Flux.defer(this::screens)
+                    .onErrorResume(error -> Flux.just(new Observation(UNAVAILABLE, Instant.now(), reason(error)))
+                            .concatWith(Mono.error(error)))
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(reconnectDelay))
+                            .maxBackoff(Duration.ofMillis(maxReconnectDelay))
+                            .transientErrors(true)
+                            .doBeforeRetry(signal -> log.debug("Reopening video stream of slot {} after {}", slot, reason(signal.failure()))));
+        }
+
+        private Flux<Observation> screens() {
+            long[] frames = new long[1];
+            ScreenFrame[] stillFrame = new ScreenFrame[1];
+            Instant[] stillSince = new Instant[1];
+            return mjpegRelayService.frames(slot, resolution, fps)
+                    .<byte[]>handle((frame, sink) -> {
+                        try {
+                            if (frames[0]++ % frameInterval == 0) {
+                                byte[] jpeg = new byte[frame.readableByteCount()];
+                                frame.read(jpeg);
+                                sink.next(jpeg);
+                            }
+                        } finally {
+                            DataBufferUtils.release(frame);
+                        }
+                    })
+                    .onBackpressureLatest()
+                    .publishOn(Schedulers.boundedElastic(), 1)
+                    .handle((jpeg, sink) -> {
+                        Instant at = Instant.now();
+                        ScreenFrame frame;
+                        try {
+                            frame = ScreenFrame.decode(jpeg, dcDecode);
+                        } catch (IOException e) {
+                            frame = null;
+                        }
+                        if (frame == null) {
+                            undecodableFrames.increment();
+                            log.debug("Skipping frame of slot {} which is not an image", slot);
+                            return;
+                        }
+                        frameHistory.record(slot, frame, at);
+                        ScreenClassification classification = screenClassifier.classify(frame);
+                        if (!classification.stillFrame()) {
+                            stillFrame[0] = null;
+                            sink.next(new Observation(classification.label(), at, null));
+                        } else if (stillFrame[0] == null) {
+                            // a still frame screen, such as a black screen, is only reported once it has been still
+                            // for the black check delay
+                            stillFrame[0] = frame;
+                            stillSince[0] = at;
+                        } else if (screenClassifier.differs(stillFrame[0], frame)) {
+                            stillFrame[0] = frame;
+                            stillSince[0] = at;
+                            sink.next(new Observation(ScreenClassification.NORMAL, at, null));
+                        } else if (Duration.between(stillSince[0], at).toMillis() >= blackCheckDelay) {
+                            sink.next(new Observation(classification.label(), stillSince[0], null));
+                        }
+                    });
+        }
+    }
+
+    private static String reason(Throwable error) {
+        return error instanceof ResponseStatusException statusException ? statusException.getReason() : error.getMessage();
+    }
+}
@@ -0,0 +1,31 @@
+package com.cats.gateway.slotmapping.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+/**
+ * Immutable, versioned view of the slot mappings. A new snapshot is published as an application event every time
+ * the mappings change; the wrapped mappings must never be modified once the snapshot has been published.
+ *
+ * @param version
+ *      -- monotonically increasing mapping version
+ * @param mappings
+ *      -- slot mappings captured by this snapshot
+ */
+public record SlotMappingSnapshot(long version, SlotToPortMappings mappings) {
+}
@@ -0,0 +1,40 @@
+package com.cats.gateway.slotmapping.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Pojo class to hold the result of a bulk slot mapping update.
+ * */
+@Schema(description = "Represents the result of a bulk slot mapping update.")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SlotMappingUpdateResult {
+    @Schema(description = "Mapping version created by the update.")
+    private Long version;
+    @Schema(description = "Slot mappings applied by the update.")
+    private Map<String, String> slots;
+}
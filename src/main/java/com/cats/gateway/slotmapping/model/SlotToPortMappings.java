@@ -82,6 +82,23 @@ public class SlotToPortMappings {
         }
     }
 
+    /**
+     * Method to create a copy of the mappings which can be modified without affecting this instance. The device
+     * list is shared as devices are never modified through the slot mapping APIs.
+     *
+     * @return SlotToPortMappings
+     */
+    public SlotToPortMappings copy() {
+        SlotToPortMappings copy = new SlotToPortMappings();
+        copy.slots = new HashMap<>(slots);
+        copy.devices = devices;
+        copy.rackHost = rackHost;
+        copy.rackIp = rackIp;
+        copy.useProxy = useProxy;
+        copy.proxyBaseUrl = proxyBaseUrl;
+        return copy;
+    }
+
     public String getMapping(String slot) throws SlotMappingException{
         if(slots.containsKey(slot) && !slots.get(slot).equals("N/A")){
             return slots.get(slot);
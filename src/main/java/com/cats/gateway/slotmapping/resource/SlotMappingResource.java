@@ -18,6 +18,7 @@ package com.cats.gateway.slotmapping.resource;
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import com.cats.gateway.slotmapping.model.SlotMappingUpdateResult;
 import com.cats.gateway.slotmapping.model.SlotToPortMappings;
 import com.cats.gateway.exceptions.SlotMappingException;
 import com.cats.gateway.slotmapping.service.SlotMappingService;
@@ -34,6 +35,7 @@ import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 
 import java.io.IOException;
@@ -71,6 +73,8 @@ public class SlotMappingResource {
      *
      * @param slotToPortMappings
      *  -- SlotToPortMappings
+     * @return Mono<Void>
+     *  -- completes once the mappings are persisted
      * @throws IOException
      *  -- IOException
      * @throws SlotMappingException
@@ -83,23 +87,23 @@ public class SlotMappingResource {
             @ApiResponse(responseCode = "400", description = "Request Body is invalid. Please update and retry request.", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     })
     @PostMapping(produces="application/json")
-    public void setMappings(@Parameter(description = "Request body to ingest slot mappings") @RequestBody SlotToPortMappings slotToPortMappings) throws IOException, SlotMappingException {
+    public Mono<Void> setMappings(@Parameter(description = "Request body to ingest slot mappings") @RequestBody SlotToPortMappings slotToPortMappings) throws IOException, SlotMappingException {
         log.info("slot mapping POST invoked "+ slotToPortMappings.getMappings().keySet().toString());
-        slotMappingService.setMappings(slotToPortMappings.getMappings());
+        return slotMappingService.setMappings(slotToPortMappings.getMappings());
     }
 
     /**
      * Method to delete slot mappings for video devices
      *
-     * @throws IOException
-     *  -- IOException
+     * @return Mono<Void>
+     *  -- completes once the mappings are persisted
      */
     @Operation(summary = "Delete slot mappings", description = "Deletes all slot mappings of configured video devices")
     @ApiResponse(responseCode = "200", description = "Slot mappings deleted successfully")
     @ApiResponse(responseCode = "404", description = "Slot mappings not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     @DeleteMapping()
-    public void deleteMappings()throws IOException{
-         slotMappingService.removeMappings();
+    public Mono<Void> deleteMappings() {
+        return slotMappingService.removeMappings();
     }
 
     /**
@@ -107,8 +111,8 @@ public class SlotMappingResource {
      *
      * @param slot
      *  -- String
-     * @throws IOException
-     *  -- IOException
+     * @return Mono<Void>
+     *  -- completes once the mappings are persisted
      * @throws SlotMappingException
      *  -- SlotMappingException
      */
@@ -116,8 +120,8 @@ public class SlotMappingResource {
     @ApiResponse(responseCode = "200", description = "Slot mapping deleted successfully")
     @ApiResponse(responseCode = "404", description = "Slot mapping not found",content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     @DeleteMapping(value="/{slot}",produces="application/json")
-    public void removeMapping(@Parameter(description = "slot number to delete mappings") @PathVariable("slot") String slot) throws IOException, SlotMappingException{
-         slotMappingService.removeMapping(slot);
+    public Mono<Void> removeMapping(@Parameter(description = "slot number to delete mappings") @PathVariable("slot") String slot) throws SlotMappingException{
+        return slotMappingService.removeMapping(slot);
     }
 
     /**
@@ -146,6 +150,8 @@ public class SlotMappingResource {
      *
      * @param mapping
      *  -- Map<String, String>
+     * @return Mono<Void>
+     *  -- completes once the mappings are persisted
      * @throws IOException
      *  -- IOException
      */
@@ -153,8 +159,8 @@ public class SlotMappingResource {
     @ApiResponse(responseCode = "200", description = "Slot mappings updated successfully")
     @ApiResponse(responseCode = "404", description = "Slot mappings not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     @PutMapping(produces = "application/json")
-    public void updateMapping(@Parameter(description = "Mappings info to update existing mapping") @RequestParam Map<String, String> mapping) throws IOException {
-        slotMappingService.updateMapping(mapping);
+    public Mono<Void> updateMapping(@Parameter(description = "Mappings info to update existing mapping") @RequestParam Map<String, String> mapping) throws IOException {
+        return slotMappingService.updateMapping(mapping).then();
     }
 
     /**
@@ -164,16 +170,35 @@ public class SlotMappingResource {
      *  -- String
      * @param mapping
      *  -- String
-     * @throws IOException
-     *  -- IOException
+     * @return Mono<Void>
+     *  -- completes once the mappings are persisted
      */
     @Operation(summary = "Update slot mapping for a slot", description = "Updates given slot mappings of video devices")
     @ApiResponse(responseCode = "200", description = "Slot mapping updated successfully")
     @ApiResponse(responseCode = "404", description = "Slot mapping not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     @PutMapping(value="/{slot}",produces = "application/json")
-    public void updateMapping(@Parameter(description = "slot number to update mappings") @PathVariable("slot") @Valid @NotNull(message = "Slot cannot be null.") String slot,
-                              @Parameter(description = "Request body to update mappings for a slot") @RequestBody @Valid @NotNull(message = "Mapping cannot be null.") String mapping) throws IOException {
-        slotMappingService.updateMapping(slot, mapping);
+    public Mono<Void> updateMapping(@Parameter(description = "slot number to update mappings") @PathVariable("slot") @Valid @NotNull(message = "Slot cannot be null.") String slot,
+                              @Parameter(description = "Request body to update mappings for a slot") @RequestBody @Valid @NotNull(message = "Mapping cannot be null.") String mapping) {
+        return slotMappingService.updateMapping(slot, mapping);
+    }
+
+    /**
+     * Method to apply several slot mapping changes in a single request
+     *
+     * @param mappings
+     *  -- Map<String, String> of slot to device:outlet
+     * @return Mono<SlotMappingUpdateResult>
+     *  -- mapping version created by the update
+     */
+    @Operation(summary = "Update slot mappings in bulk", description = "Validates and applies all given slot mappings atomically, either all mappings are updated or none")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Slot mappings updated successfully",
+                    content = { @Content(mediaType = "application/json", schema = @Schema(implementation = SlotMappingUpdateResult.class)) }),
+            @ApiResponse(responseCode = "400", description = "One or more mappings are invalid, no mapping has been updated", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @PatchMapping(produces = "application/json")
+    public Mono<SlotMappingUpdateResult> applyMappings(@Parameter(description = "Map of slot number to device:outlet mapping, N/A removes the mapping of a slot") @RequestBody Map<String, String> mappings) {
+        return slotMappingService.applyMappings(mappings);
     }
 
 }
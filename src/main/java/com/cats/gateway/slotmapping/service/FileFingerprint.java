@@ -0,0 +1,53 @@
+package com.cats.gateway.slotmapping.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modification time and size of the mapping file, used to detect changes without reading the file.
+ *
+ * @param lastModified
+ *      -- last modification time in nanoseconds
+ * @param size
+ *      -- file size in bytes
+ */
+record FileFingerprint(long lastModified, long size) {
+
+    /**
+     * Method to get the fingerprint of a file.
+     *
+     * @param path
+     *      -- path of the file
+     * @return FileFingerprint
+     *      -- fingerprint of the file, null if the file cannot be read
+     */
+    static FileFingerprint of(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return new FileFingerprint(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), attributes.size());
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.cats.gateway.slotmapping.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.Configuration;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence of the slot mappings. Writes requested within the coalescing delay are merged into a
+ * single write of the latest mappings, which is performed on a dedicated writer thread. The file is replaced
+ * atomically: the mappings are written and fsynced to a temporary file which is then renamed over the mapping file,
+ * so a crash can never leave a partially written file behind.
+ */
+@Slf4j
+@Component
+public class SlotMappingPersister {
+
+    @Autowired
+    private Configuration config;
+
+    @Value("${slot.mapping.persist.delay:200}")
+    private long persistDelay;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slot-mapping-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SlotToPortMappings pendingMappings;
+
+    private List<CompletableFuture<SlotToPortMappings>> pendingWrites = new ArrayList<>();
+
+    private boolean flushScheduled;
+
+    private boolean closed;
+
+    private volatile FileFingerprint lastWrittenFingerprint;
+
+    /**
+     * Method to schedule a write of the given mappings.
+     *
+     * @param slotToPortMappings
+     *      -- mappings to write, must not be modified after this call
+     * @return CompletableFuture
+     *      -- completed with the mappings written once the mappings, or a later version of them, are durably written,
+     *      failed if they could not be written or the persister has been shut down
+     */
+    public CompletableFuture<SlotToPortMappings> write(SlotToPortMappings slotToPortMappings) {
+        CompletableFuture<SlotToPortMappings> written = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                written.completeExceptionally(new IllegalStateException("Slot mapping writer is shut down"));
+                return written;
+            }
+            pendingMappings = slotToPortMappings;
+            pendingWrites.add(written);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                scheduleFlush();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Method to schedule a flush after the coalescing delay. Once the writer has been shut down, pending mappings
+     * are written by the final flush on shutdown instead.
+     */
+    private void scheduleFlush() {
+        try {
+            writer.schedule(this::flush, persistDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Slot mapping writer is shut down, mappings will be written on shutdown");
+        }
+    }
+
+    /**
+     * Method to check if there are mappings which have not been written yet.
+     *
+     * @return boolean
+     */
+    public synchronized boolean isPending() {
+        return flushScheduled;
+    }
+
+    /**
+     * Method to get the fingerprint of the mapping file as last written by the persister.
+     *
+     * @return FileFingerprint
+     */
+    FileFingerprint getLastWrittenFingerprint() {
+        return lastWrittenFingerprint;
+    }
+
+    /**
+     * Method to write the latest pending mappings and complete all writes waiting for them.
+     */
+    private void flush() {
+        SlotToPortMappings slotToPortMappings;
+        List<CompletableFuture<SlotToPortMappings>> writes;
+        synchronized (this) {
+            slotToPortMappings = pendingMappings;
+            writes = pendingWrites;
+            pendingMappings = null;
+            pendingWrites = new ArrayList<>();
+        }
+        if (slotToPortMappings == null) {
+            synchronized (this) {
+                flushScheduled = false;
+            }
+            return;
+        }
+
+        IOException failure = null;
+        try {
+            Path path = Paths.get(config.getSlotMappingFilePath());
+            writeAtomically(path, mapper.writeValueAsBytes(slotToPortMappings));
+            lastWrittenFingerprint = FileFingerprint.of(path);
+            log.info("Slot to port mappings file updated, {} update(s) coalesced", writes.size());
+        } catch (IOException ex) {
+            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
+            failure = ex;
+        }
+
+        synchronized (this) {
+            flushScheduled = pendingMappings != null;
+            if (flushScheduled) {
+                scheduleFlush();
+            }
+        }
+
+        for (CompletableFuture<SlotToPortMappings> write : writes) {
+            if (failure == null) {
+                write.complete(slotToPortMappings);
+            } else {
+                write.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Method to replace the content of a file atomically.
+     *
+     * @param path
+     *      -- file to replace
+     * @param content
+     *      -- new content of the file
+     * */
+    private void writeAtomically(Path path, byte[] content) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + path.getFileName(), ".tmp");
+        try {
+            copyPermissions(path, temp);
+            writeAndSync(temp, content, StandardOpenOption.WRITE);
+            try {
+                replace(temp, path);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            } catch (FileSystemException ex) {
+                // the mapping file itself may be a bind mount which cannot be replaced, fall back to an in place write
+                log.warn("Could not replace slot mappings file, writing in place: " + ex.getLocalizedMessage());
+                writeAndSync(path, content, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE);
+                return;
+            }
+            syncDirectory(directory);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Method to atomically rename a file over another.
+     *
+     * @param source
+     *      -- file to rename
+     * @param target
+     *      -- file to replace
+     * */
+    void replace(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeAndSync(Path path, byte[] content, StandardOpenOption... options) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static void copyPermissions(Path source, Path target) {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (IOException | UnsupportedOperationException ex) {
+            log.debug("Could not copy permissions of {}: {}", source, ex.getLocalizedMessage());
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // not supported on every platform, the rename itself is still atomic
+            log.debug("Could not sync directory {}: {}", directory, ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Method to write any pending mappings before the application shuts down. Writes requested after the shutdown
+     * has begun fail.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        writer.shutdown();
+        if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Slot mapping writer did not terminate in time");
+        }
+        flush();
+    }
+}
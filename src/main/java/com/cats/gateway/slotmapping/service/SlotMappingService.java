@@ -20,80 +20,173 @@ package com.cats.gateway.slotmapping.service;
 
 import com.cats.gateway.config.Configuration;
 import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotMappingUpdateResult;
 import com.cats.gateway.slotmapping.model.SlotToPortMappings;
 import com.cats.gateway.exceptions.SlotMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import jakarta.annotation.PostConstruct;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Service owning the slot mappings. Mappings are published as immutable {@link SlotMappingSnapshot}s: readers only
+ * ever dereference the current snapshot, while writers serialise on a lock, modify a copy and swap it in. The mapping
+ * file is parsed once at start up and again only when it is changed on disk; changes are written back to it by the
+ * {@link SlotMappingPersister}. If slot.mapping.persist.await is enabled, changes are only published once they are
+ * written, a change which could not be written is never published.
+ */
 @Service
 @Slf4j
 public class SlotMappingService {
 
-    private SlotToPortMappings slotToPortMappings;
+    private volatile SlotMappingSnapshot snapshot = new SlotMappingSnapshot(0, new SlotToPortMappings());
+
+    /**
+     * Latest mappings accepted by a writer, ahead of the published snapshot while they are waiting to be written.
+     */
+    private SlotToPortMappings acceptedMappings = snapshot.mappings();
+
+    private FileFingerprint loadedFingerprint;
+
+    private final AtomicLong mappingVersion = new AtomicLong();
+
+    private final Object writeLock = new Object();
 
     @Autowired
     private Configuration config;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private SlotMappingPersister persister;
+
+    @Value("${slot.mapping.persist.await:true}")
+    private boolean awaitPersistence;
+
     private final ObjectMapper mapper = new ObjectMapper();
-    private String MAPPING_FILEPATH;
 
     @PostConstruct
     private void initializePortMapping() {
-        try {
-            FileInputStream in = new FileInputStream(new File(config.getSlotMappingFilePath()));
-            slotToPortMappings = mapper.readValue(in, SlotToPortMappings.class);
-            if (slotToPortMappings.getMappings().isEmpty()) {
+        synchronized (writeLock) {
+            SlotToPortMappings slotToPortMappings;
+            Path path = Paths.get(config.getSlotMappingFilePath());
+            loadedFingerprint = FileFingerprint.of(path);
+            try {
+                slotToPortMappings = readMappings(path);
+            } catch (IOException ex) {
+                log.error("Could not process slot mappings file, using default values: " + ex.getLocalizedMessage());
+                slotToPortMappings = new SlotToPortMappings();
+            }
+            publish(slotToPortMappings);
+        }
+    }
+
+    /**
+     * Method to reload the slot mappings when the mapping file has been changed on disk. The file is only parsed
+     * when its modification time or size differ from the version last loaded or written by this service. A file
+     * which cannot be parsed is ignored and the current mappings are kept, as are mappings waiting to be written.
+     */
+    @Scheduled(initialDelayString = "${slot.mapping.reload.interval:5000}", fixedDelayString = "${slot.mapping.reload.interval:5000}")
+    public void reloadIfChanged() {
+        synchronized (writeLock) {
+            Path path = Paths.get(config.getSlotMappingFilePath());
+            FileFingerprint current = FileFingerprint.of(path);
+            if (persister.isPending() || current == null || current.equals(loadedFingerprint)) {
                 return;
             }
-        } catch (IOException ex) {
-            log.error("Could not process slot mappings file, using default values: " + ex.getLocalizedMessage());
-            slotToPortMappings = new SlotToPortMappings();
+            loadedFingerprint = current;
+            if (current.equals(persister.getLastWrittenFingerprint())) {
+                return;
+            }
+            try {
+                publish(readMappings(path));
+                log.info("Slot mappings reloaded from {}, mapping version {}", path, snapshot.version());
+            } catch (IOException ex) {
+                log.error("Could not reload slot mappings file, keeping mapping version {}: {}", snapshot.version(), ex.getLocalizedMessage());
+            }
+        }
+    }
+
+    private SlotToPortMappings readMappings(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return mapper.readValue(in, SlotToPortMappings.class);
         }
     }
 
+    /**
+     * Method to publish a new version of the mappings. Must be called while holding the write lock so that
+     * snapshots are published in version order.
+     *
+     * @param slotToPortMappings
+     *      -- mappings which must not be modified after this call
+     */
+    private SlotMappingSnapshot publish(SlotToPortMappings slotToPortMappings) {
+        SlotMappingSnapshot next = new SlotMappingSnapshot(mappingVersion.incrementAndGet(), slotToPortMappings);
+        this.snapshot = next;
+        this.acceptedMappings = slotToPortMappings;
+        eventPublisher.publishEvent(next);
+        return next;
+    }
+
+    /**
+     * Method to get the current mapping snapshot.
+     *
+     * @return SlotMappingSnapshot
+     */
+    public SlotMappingSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     public SlotToPortMappings getMappings() {
-        initializePortMapping();
-        return slotToPortMappings;
+        return snapshot.mappings();
     }
 
-    public void setMappings(Map<String, String> mappings) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(config.getSlotMappingFilePath(),false))) {
+    public Mono<Void> setMappings(Map<String, String> mappings) throws IOException {
+        synchronized (writeLock) {
             log.info("Setting new mapping: " + mapper.writeValueAsString(mappings));
-            this.slotToPortMappings.setMappings(mappings);
-            writer.write(mapper.writeValueAsString(this.slotToPortMappings));
-            writer.close();
-            log.info("Slot to port mappings file updated");
-
-        } catch (IOException ex) {
-            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
-            throw ex;
+            SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+            slotToPortMappings.setMappings(mappings);
+            return persist(slotToPortMappings).then();
         }
     }
 
-    public void removeMappings() throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(config.getSlotMappingFilePath()))) {
+    public Mono<Void> removeMappings() {
+        synchronized (writeLock) {
             log.info("Removing slot to port mappings");
-            this.slotToPortMappings.removeMappings();
+            SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+            slotToPortMappings.removeMappings();
             log.info("Slot to port mappings have been removed");
-            writer.write(mapper.writeValueAsString(this.slotToPortMappings));
-        } catch (IOException ex) {
-            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
-            throw ex;
+            return persist(slotToPortMappings).then();
         }
     }
 
     public String getMapping(String slot) {
+        SlotToPortMappings slotToPortMappings = snapshot.mappings();
         try {
-            log.info("slots {}",slotToPortMappings.getMappings());
+            log.debug("slots {}", slotToPortMappings.getMappings());
             return slotToPortMappings.getMapping(slot);
         } catch (SlotMappingException ex) {
             log.error("Could not locate mapping for slot: " + slot);
@@ -101,30 +194,82 @@ public class SlotMappingService {
         }
     }
 
-    public SlotToPortMappings updateMapping(Map<String, String> mapping) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(config.getSlotMappingFilePath(),false))) {
+    public Mono<SlotToPortMappings> updateMapping(Map<String, String> mapping) throws IOException {
+        synchronized (writeLock) {
             log.info("Setting new mapping: " + mapper.writeValueAsString(mapping));
-            mapping.forEach((key, value) -> this.slotToPortMappings.addMapping(key,value));
-            writer.write(mapper.writeValueAsString(this.slotToPortMappings));
-            writer.close();
-            log.info("Slot to port mappings file updated");
-        } catch (IOException ex) {
-            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
-            throw ex;
+            SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+            mapping.forEach(slotToPortMappings::addMapping);
+            return persist(slotToPortMappings).thenReturn(slotToPortMappings);
         }
-        return this.slotToPortMappings;
     }
 
-    public void removeMapping(String slot) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(config.getSlotMappingFilePath(),false))) {
+    public Mono<Void> removeMapping(String slot) {
+        synchronized (writeLock) {
             log.info("Removing mapping on slot " + slot);
-            this.slotToPortMappings.removeMapping(slot);
-            writer.write(mapper.writeValueAsString(this.slotToPortMappings));
-            log.info("Slot " + slot + " mapping removed");
+            try {
+                SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+                slotToPortMappings.removeMapping(slot);
+                log.info("Slot " + slot + " mapping removed");
+                return persist(slotToPortMappings).then();
+            } catch (SlotMappingException ex) {
+                log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
+                throw ex;
+            }
+        }
+    }
 
-        } catch (IOException | SlotMappingException ex) {
-            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
-            throw ex;
+    /**
+     * Method to persist and publish the given mappings. Must be called while holding the write lock. The mappings are
+     * written in the background; if slot.mapping.persist.await is enabled they are published once they are durably
+     * written and the returned Mono fails if they could not be written, otherwise they are published immediately.
+     *
+     * @param slotToPortMappings
+     *      -- mappings to persist
+     * @return Mono<SlotMappingSnapshot>
+     *      -- published snapshot holding the mappings
+     * */
+    private Mono<SlotMappingSnapshot> persist(SlotToPortMappings slotToPortMappings) {
+        if (!awaitPersistence) {
+            SlotMappingSnapshot published = publish(slotToPortMappings);
+            persister.write(slotToPortMappings);
+            return Mono.just(published);
+        }
+        acceptedMappings = slotToPortMappings;
+        CompletableFuture<SlotMappingSnapshot> published = persister.write(slotToPortMappings)
+                .handle((written, failure) -> onWritten(slotToPortMappings, written, failure));
+        return Mono.fromFuture(published);
+    }
+
+    /**
+     * Method to publish mappings once they have been written. Coalesced writes complete with the latest mappings
+     * written, which are published once. If the write failed, mappings no other change has been built on are
+     * withdrawn, so the next change is built on the published mappings again.
+     *
+     * @param slotToPortMappings
+     *      -- mappings requested to be written
+     * @param written
+     *      -- mappings written, which include the requested mappings
+     * @param failure
+     *      -- failure of the write, null if the mappings were written
+     * @return SlotMappingSnapshot
+     *      -- published snapshot holding the mappings
+     * */
+    private SlotMappingSnapshot onWritten(SlotToPortMappings slotToPortMappings, SlotToPortMappings written, Throwable failure) {
+        synchronized (writeLock) {
+            if (failure != null) {
+                if (acceptedMappings == slotToPortMappings) {
+                    acceptedMappings = snapshot.mappings();
+                }
+                log.error("Slot mappings not published, they could not be written: " + failure.getLocalizedMessage());
+                throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+            }
+            if (snapshot.mappings() == written) {
+                return snapshot;
+            }
+            SlotToPortMappings accepted = acceptedMappings;
+            SlotMappingSnapshot published = publish(written);
+            acceptedMappings = accepted;
+            return published;
         }
     }
 
@@ -133,15 +278,17 @@ public class SlotMappingService {
      *
      * @param mappings
      *      The mapping to validate.
+     * @param devices
+     *      The devices the mapping may refer to.
      * */
-    private boolean isValidMapping(@Valid @NotNull(message = "Mappings cannot be null.") String mappings) {
+    private boolean isValidMapping(@Valid @NotNull(message = "Mappings cannot be null.") String mappings, List<Device> devices) {
         boolean valid = false;
         if (mappings.equals("N/A")) {
             return true;
         }
         try {
             String[] deviceAndOutlet = mappings.split(":");
-            for (Device device : this.slotToPortMappings.getDevices()) {
+            for (Device device : devices) {
                 if (device.getId().equals(Integer.valueOf(deviceAndOutlet[0]))) {
                     if (device.getMaxPort() >= Integer.parseInt(deviceAndOutlet[1])) {
                         valid = true;
@@ -163,31 +310,140 @@ public class SlotMappingService {
      * @param mapping
      *      The new mapping to set for the slot.
      * */
-    public void updateMapping(@Valid @NotNull(message = "Slot cannot be null.") String slot, @Valid @NotNull(message = "Mapping cannot be null") String mapping) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(config.getSlotMappingFilePath()))) {
+    public Mono<Void> updateMapping(@Valid @NotNull(message = "Slot cannot be null.") String slot, @Valid @NotNull(message = "Mapping cannot be null") String mapping) {
+        synchronized (writeLock) {
             // added mapping.replaceAll("^\"|\"$", "") to remove quotes from the mapping. This is integrated to make
             // the service backward compatible as the legacy video ms is accepting the mapping with quotes.
             String newMappings = mapping.replaceAll("^\"|\"$", "");
-            if (!isValidMapping(newMappings)) {
+            SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+            if (!isValidMapping(newMappings, slotToPortMappings.getDevices())) {
                 log.error("Invalid mapping for slot " + slot + ": " + newMappings);
-                writer.write(mapper.writeValueAsString(this.slotToPortMappings));
                 throw new IllegalArgumentException("Invalid mapping for slot " + slot + ": " + newMappings);
             }
-            if (this.slotToPortMappings.getMappings().containsKey(slot)) {
-                this.slotToPortMappings.removeMapping(slot);
-            }
-            log.info("Setting mapping on slot " + slot + " to " + newMappings);
             log.info("Updating mapping for slot " + slot + " with " + newMappings);
-            this.slotToPortMappings.addMapping(slot, newMappings);
-            writer.write(mapper.writeValueAsString(this.slotToPortMappings));
+            slotToPortMappings.addMapping(slot, newMappings);
             log.info("Slot " + slot + " mapping updated");
-        } catch (IOException | SlotMappingException ex) {
-            log.error("Could not update slot mappings: " + ex.getLocalizedMessage());
-            throw ex;
+            return persist(slotToPortMappings).then();
+        }
+    }
+
+    /**
+     * Method to apply a set of slot mapping changes as a single transaction. All changes are validated in one pass
+     * against an index of the configured devices: the device must exist, the outlet must not exceed its maxPort and
+     * no two slots may end up on the same outlet. Either all changes are applied and persisted with a single write,
+     * or none are.
+     *
+     * @param changes
+     *      Map of slot to "device:outlet" mapping, "N/A" removes the mapping of a slot.
+     * @return Mono<SlotMappingUpdateResult>
+     *      The mapping version created by the update, emitted once the mappings are persisted.
+     * */
+    public Mono<SlotMappingUpdateResult> applyMappings(Map<String, String> changes) {
+        if (changes == null || changes.isEmpty()) {
+            throw new IllegalArgumentException("No slot mappings to update");
+        }
+        synchronized (writeLock) {
+            SlotToPortMappings slotToPortMappings = acceptedMappings.copy();
+
+            Map<Integer, Device> devices = new HashMap<>();
+            if (slotToPortMappings.getDevices() != null) {
+                slotToPortMappings.getDevices().forEach(device -> devices.put(device.getId(), device));
+            }
+
+            List<String> errors = new ArrayList<>();
+            Map<String, String> normalized = new LinkedHashMap<>();
+            changes.forEach((slot, mapping) -> {
+                String newMapping = mapping == null ? null : mapping.trim().replaceAll("^\"|\"$", "");
+                String error = validateMapping(slot, newMapping, devices);
+                if (error != null) {
+                    errors.add("slot " + slot + ": " + error);
+                } else {
+                    normalized.put(slot.trim(), newMapping);
+                }
+            });
+
+            if (errors.isEmpty()) {
+                normalized.forEach(slotToPortMappings::addMapping);
+
+                Map<String, String> outlets = new HashMap<>();
+                slotToPortMappings.getMappings().forEach((slot, mapping) -> {
+                    if (mapping == null || mapping.equals("N/A")) {
+                        return;
+                    }
+                    String outlet = normalizeOutlet(mapping);
+                    String other = outlets.putIfAbsent(outlet, slot);
+                    if (other != null && (normalized.containsKey(slot) || normalized.containsKey(other))) {
+                        errors.add("slot " + slot + ": outlet " + outlet + " is already mapped to slot " + other);
+                    }
+                });
+            }
+
+            if (!errors.isEmpty()) {
+                log.error("Rejected slot mapping update: " + errors);
+                throw new IllegalArgumentException("Invalid slot mappings, no changes applied: " + String.join("; ", errors));
+            }
+
+            return persist(slotToPortMappings)
+                    .map(published -> {
+                        log.info("Applied {} slot mapping change(s), mapping version {}", normalized.size(), published.version());
+                        return new SlotMappingUpdateResult(published.version(), normalized);
+                    });
+        }
+    }
+
+    /**
+     * Method to validate a single slot mapping against the device index.
+     *
+     * @return String
+     *      The validation error, null if the mapping is valid.
+     * */
+    private static String validateMapping(String slot, String mapping, Map<Integer, Device> devices) {
+        try {
+            Integer.parseInt(slot.trim());
+        } catch (NumberFormatException ex) {
+            return "slot must be a number";
+        }
+        if (mapping == null || mapping.isEmpty()) {
+            return "mapping cannot be empty";
+        }
+        if (mapping.equals("N/A")) {
+            return null;
+        }
+        int separator = mapping.indexOf(':');
+        if (separator < 0) {
+            return "mapping " + mapping + " is not in the format device:outlet";
+        }
+        int deviceId;
+        int outlet;
+        try {
+            deviceId = Integer.parseInt(mapping.substring(0, separator));
+            outlet = Integer.parseInt(mapping.substring(separator + 1));
+        } catch (NumberFormatException ex) {
+            return "mapping " + mapping + " is not in the format device:outlet";
+        }
+        Device device = devices.get(deviceId);
+        if (device == null) {
+            return "device " + deviceId + " is not configured";
+        }
+        if (outlet < 1 || (device.getMaxPort() != null && outlet > device.getMaxPort())) {
+            return "outlet " + outlet + " is not available on device " + deviceId;
+        }
+        return null;
+    }
+
+    private static String normalizeOutlet(String mapping) {
+        int separator = mapping.indexOf(':');
+        if (separator < 0) {
+            return mapping;
+        }
+        try {
+            return Integer.parseInt(mapping.substring(0, separator).trim()) + ":" + Integer.parseInt(mapping.substring(separator + 1).trim());
+        } catch (NumberFormatException ex) {
+            return mapping;
         }
     }
 
     public List<Device> getVideoDevices() {
-        return this.slotToPortMappings.getDevices();
+        return snapshot.mappings().getDevices();
     }
 }
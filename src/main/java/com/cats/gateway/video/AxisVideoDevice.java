@@ -18,14 +18,10 @@ package com.cats.gateway.video;
  * SPDX-License-Identifier: Apache-2.0
  */
 
-import com.cats.gateway.health.model.HealthReport;
-import com.cats.gateway.health.model.HealthStatusBean;
-import com.cats.gateway.slotmapping.model.Device;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -42,6 +38,24 @@ public record AxisVideoDevice(String internalIp, String internalPort, String nat
 
     private static final List<String> SUPPORTED_RESOLUTIONS = List.of("704x480","720x480", "1024x768", "1920x1080");
 
+
+    static final VideoUrlTemplate.Dialect URL_DIALECT = new VideoUrlTemplate.Dialect(
+            "/axis-cgi/jpg/image.cgi?camera=",
+            "/mjpg/video.mjpg?camera=",
+            "/axis-media/media.amp?camera=",
+            0,
+            true,
+            "&fps=",
+            "&squarepixel=",
+            "&resolution=",
+            Map.of("704x480", "&resolution=4CIF", "704x576", "&resolution=4CIF",
+                    "720x480", "&resolution=D1", "720x576", "&resolution=D1",
+                    "704x240", "&resolution=2CIF", "704x288", "&resolution=2CIF",
+                    "352x240", "&resolution=CIF", "352x288", "&resolution=CIF",
+                    "176x120", "&resolution=QCIF", "176x144", "&resolution=QCIF"),
+            "&videocodec=",
+            null);
+
     public AxisVideoDevice(String internalIp, String internalPort, String natPort, String natSSLPort, String natRTSPPort, String rackHost, String rackIp, Boolean useProxy, String proxyBaseUrl) {
         this.natPort = natPort;
         this.natSSLPort = natSSLPort;
@@ -54,6 +68,11 @@ public record AxisVideoDevice(String internalIp, String internalPort, String nat
         this.internalPort = internalPort == null || internalPort.trim().isEmpty() ? "80" : internalPort;
     }
 
+    private static VideoUrlTemplate compileUrlTemplate(AxisVideoDevice device) {
+        return new VideoUrlTemplate(URL_DIALECT, device.internalIp, device.internalPort, device.natPort, device.natSSLPort,
+                device.natRTSPPort, device.rackHost, device.useProxy, device.proxyBaseUrl);
+    }
+
     /**
      * Method to get snapshot url based on a given slot.
      *
@@ -75,64 +94,7 @@ public record AxisVideoDevice(String internalIp, String internalPort, String nat
 
     @Override
     public String getSnapShotUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, Boolean useSSL, Boolean isLocal) {
-        StringBuilder stringBuilder = new StringBuilder();
-        if (isLocal) {
-            stringBuilder.append("http://");
-            stringBuilder.append(internalIp());
-            stringBuilder.append(":");
-            stringBuilder.append(internalPort());
-        } else if (useSSL && useProxy) {
-            stringBuilder.append("https://");
-            stringBuilder.append(proxyBaseUrl());
-            stringBuilder.append(rackHost());
-            stringBuilder.append("/video/");
-            stringBuilder.append(natSSLPort());
-        } else if (useSSL) {
-            stringBuilder.append("https://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natSSLPort());
-        } else if (useProxy) {
-            stringBuilder.append("http://");
-            stringBuilder.append(proxyBaseUrl());
-            stringBuilder.append(rackHost());
-            stringBuilder.append("/video/");
-            stringBuilder.append(natPort());
-        } else {
-            stringBuilder.append("http://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natPort());
-        }
-
-        stringBuilder.append("/axis-cgi/jpg/image.cgi?camera=");
-        stringBuilder.append(outlet);
-
-        if (squarePixel != null && !squarePixel.trim().isEmpty()) {
-            stringBuilder.append("&squarepixel=");
-            stringBuilder.append(squarePixel);
-        }
-
-        if (resolution != null && !resolution.trim().isEmpty()) {
-            switch (resolution) {
-                case "704x480", "704x576" -> stringBuilder.append("&resolution=4CIF");
-                case "720x480", "720x576" -> stringBuilder.append("&resolution=D1");
-                case "704x240", "704x288" -> stringBuilder.append("&resolution=2CIF");
-                case "352x240", "352x288" -> stringBuilder.append("&resolution=CIF");
-                case "176x120", "176x144" -> stringBuilder.append("&resolution=QCIF");
-                default -> {
-                    stringBuilder.append("&resolution=");
-                    stringBuilder.append(resolution);
-                }
-            }
-        }
-
-        if (videoCodec != null && !videoCodec.trim().isEmpty()) {
-            stringBuilder.append("&videocodec=");
-            stringBuilder.append(videoCodec);
-        }
-
-        return stringBuilder.toString();
+        return VideoUrlTemplate.of(this, AxisVideoDevice::compileUrlTemplate).snapshotUrl(outlet, resolution, videoCodec, squarePixel, useSSL, isLocal);
     }
 
     /**
@@ -157,79 +119,7 @@ public record AxisVideoDevice(String internalIp, String internalPort, String nat
      * */
     @Override
     public String getVideoUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        if (isRtsp) {
-            stringBuilder.append("rtsp://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natRTSPPort());
-            stringBuilder.append("/axis-media/media.amp?camera=");
-        } else {
-            if (isLocal) {
-                stringBuilder.append("http://");
-                stringBuilder.append(internalIp());
-                stringBuilder.append(":");
-                stringBuilder.append(internalPort());
-            } else if (useSSL && useProxy) {
-                stringBuilder.append("https://");
-                stringBuilder.append(proxyBaseUrl());
-                stringBuilder.append(rackHost());
-                stringBuilder.append("/video/");
-                stringBuilder.append(natSSLPort());
-            } else if (useSSL) {
-                stringBuilder.append("https://");
-                stringBuilder.append(rackHost());
-                stringBuilder.append(":");
-                stringBuilder.append(natSSLPort());
-            } else if (useProxy) {
-                stringBuilder.append("http://");
-                stringBuilder.append(proxyBaseUrl());
-                stringBuilder.append(rackHost());
-                stringBuilder.append("/video/");
-                stringBuilder.append(natPort());
-            } else {
-                stringBuilder.append("http://");
-                stringBuilder.append(rackHost());
-                stringBuilder.append(":");
-                stringBuilder.append(natPort());
-            }
-            stringBuilder.append("/mjpg/video.mjpg?camera=");
-        }
-
-        stringBuilder.append(outlet);
-
-        if (fps != null && !fps.trim().isEmpty()) {
-            stringBuilder.append("&fps=");
-            stringBuilder.append(fps);
-        }
-
-        if (squarePixel != null && !squarePixel.trim().isEmpty()) {
-            stringBuilder.append("&squarepixel=");
-            stringBuilder.append(squarePixel);
-        }
-
-        if (resolution != null && !resolution.trim().isEmpty()) {
-            switch (resolution) {
-                case "704x480", "704x576" -> stringBuilder.append("&resolution=4CIF");
-                case "720x480", "720x576" -> stringBuilder.append("&resolution=D1");
-                case "704x240", "704x288" -> stringBuilder.append("&resolution=2CIF");
-                case "352x240", "352x288" -> stringBuilder.append("&resolution=CIF");
-                case "176x120", "176x144" -> stringBuilder.append("&resolution=QCIF");
-                default -> {
-                    stringBuilder.append("&resolution=");
-                    stringBuilder.append(resolution);
-                }
-            }
-        }
-
-        if (videoCodec != null && !videoCodec.trim().isEmpty()) {
-            stringBuilder.append("&videocodec=");
-            stringBuilder.append(videoCodec);
-        }
-
-        return stringBuilder.toString();
-
+        return VideoUrlTemplate.of(this, AxisVideoDevice::compileUrlTemplate).videoUrl(outlet, resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
     }
 
     /**
@@ -244,59 +134,4 @@ public record AxisVideoDevice(String internalIp, String internalPort, String nat
     public List<String> getSupportedResolutions(Integer slot) {
         return SUPPORTED_RESOLUTIONS;
     }
-
-    public Mono<HealthStatusBean> getHealthStatus(HealthStatusBean healthStatusBean, Device device, List<HealthReport> healthReports) {
-        Mono<HealthReport> axisVideoHealthReports = getAxisSnapshotHealthReports(device);
-        return axisVideoHealthReports.flatMap(axisHealthReports -> {
-            healthReports.add(axisHealthReports);
-            healthStatusBean.setHwDevicesHealthStatus(healthReports);
-            return Mono.just(healthStatusBean);
-        }).onErrorResume(e -> {
-            healthStatusBean.setIsHealthy(false);
-            healthStatusBean.setRemarks(e.getMessage());
-            return Mono.just(healthStatusBean);
-        });
-    }
-
-    /**
-     * Method to get video encoder health give a device.
-     *
-     * @param device
-     *      -- video device
-     * @return Mono<HealthReport>
-     *     -- health report of the video device
-     * */
-    private Mono<HealthReport> getAxisSnapshotHealthReports(Device device) {
-        if(device == null) {
-            return Mono.just(new HealthReport());
-        }
-
-        WebClient webClient = WebClient.create();
-        String cameraOne = "/axis-cgi/jpg/image.cgi?camera=1";
-
-        //setting the health report for axis video device
-
-        String videoId = device.getInternalIp().substring(device.getInternalIp().length() - 2);
-        HealthReport healthReport = new HealthReport();
-        healthReport.setHost(device.getInternalIp());
-        healthReport.setEntity("VID"+videoId);
-
-        String deviceId = device.getInternalIp();
-        String url = "http://" + deviceId + cameraOne;
-        log.info("The Axis video url is {}", url);
-
-        return webClient.get()
-                .uri(url)
-                .retrieve()
-                .bodyToMono(byte[].class)
-                .map(body -> {
-                    healthReport.setIsHealthy(true);
-                    return healthReport;
-                })
-                .onErrorResume(e -> {
-                    healthReport.setIsHealthy(false);
-                    healthReport.setRemarks(e.getMessage());
-                    return Mono.just(healthReport);
-                });
-    }
 }
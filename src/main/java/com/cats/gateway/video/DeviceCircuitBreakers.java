@@ -0,0 +1,223 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Circuit breakers of the video devices, keyed by device id. A breaker opens after a number of consecutive failed
+ * calls to its device, e.g. connection failures and timeouts, and rejects further calls immediately with 503 instead
+ * of waiting for the connect timeout. Once the open duration has passed a limited number of trial calls is let
+ * through (half open): a successful trial closes the breaker, a failed one opens it again. The breaker of a device
+ * is reset when its mapping changes.
+ */
+@Slf4j
+@Component
+public class DeviceCircuitBreakers {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    @Value("${video.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${video.circuit-breaker.open-duration:30000}")
+    private long openDuration;
+
+    @Value("${video.circuit-breaker.half-open-calls:1}")
+    private int halfOpenCalls;
+
+    private final Map<Integer, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Method to run a call to a video device through the circuit breaker of the device. Errors answered by the device,
+     * such as http error statuses, do not count as failures; cancelled calls are neither successes nor failures.
+     *
+     * @param device
+     *      -- device called
+     * @param call
+     *      -- call to the device
+     * @return Mono<T>
+     *      -- result of the call, a VideoGatewayException with status 503 if the breaker is open
+     */
+    public <T> Mono<T> protect(Device device, Mono<T> call) {
+        if (device == null || device.getId() == null) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            CircuitBreaker breaker = breakers.computeIfAbsent(device.getId(), id -> new CircuitBreaker(device));
+            if (!breaker.tryAcquire()) {
+                return Mono.error(new VideoGatewayException(HttpStatus.SERVICE_UNAVAILABLE, breaker.rejection()));
+            }
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call
+                    .doOnSuccess(result -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            if (isFailure(error)) {
+                                breaker.onFailure(error);
+                            } else {
+                                breaker.onSuccess();
+                            }
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL && recorded.compareAndSet(false, true)) {
+                            breaker.onCancel();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Method to get the state of the circuit breaker of a device.
+     *
+     * @param deviceId
+     *      -- id of the device
+     * @return State
+     *      -- state of the breaker, closed if the device has not been called yet
+     */
+    public State getState(Integer deviceId) {
+        CircuitBreaker breaker = deviceId != null ? breakers.get(deviceId) : null;
+        return breaker != null ? breaker.state() : State.CLOSED;
+    }
+
+    /**
+     * Method to reset the breakers of the devices that were removed or changed by a mapping update.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        List<Device> devices = snapshot.mappings().getDevices();
+        Map<Integer, Device> configured = new HashMap<>();
+        if (devices != null) {
+            devices.stream().filter(device -> device.getId() != null).forEach(device -> configured.put(device.getId(), device));
+        }
+        breakers.entrySet().removeIf(entry -> !entry.getValue().device.equals(configured.get(entry.getKey())));
+    }
+
+    private static boolean isFailure(Throwable error) {
+        return !(error instanceof WebClientResponseException || error instanceof ResponseStatusException
+                || error instanceof IllegalArgumentException);
+    }
+
+    private final class CircuitBreaker {
+
+        private final Device device;
+
+        private final Integer deviceId;
+
+        private State state = State.CLOSED;
+
+        private int failures;
+
+        private int trials;
+
+        private long openedAt;
+
+        private String lastFailure;
+
+        private CircuitBreaker(Device device) {
+            this.device = device;
+            this.deviceId = device.getId();
+        }
+
+        synchronized State state() {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration) {
+                return State.HALF_OPEN;
+            }
+            return state;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDuration) {
+                state = State.HALF_OPEN;
+                trials = 0;
+            }
+            if (state == State.OPEN) {
+                return false;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trials >= halfOpenCalls) {
+                    return false;
+                }
+                trials++;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            if (state != State.CLOSED) {
+                log.info("Circuit breaker of video device {} closed", deviceId);
+            }
+            state = State.CLOSED;
+            failures = 0;
+        }
+
+        synchronized void onFailure(Throwable error) {
+            lastFailure = error.getMessage();
+            failures++;
+            if (state == State.HALF_OPEN || failures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    log.warn("Circuit breaker of video device {} opened after {} failures: {}", deviceId, failures, lastFailure);
+                }
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+            }
+        }
+
+        synchronized void onCancel() {
+            if (state == State.HALF_OPEN && trials > 0) {
+                trials--;
+            }
+        }
+
+        synchronized String rejection() {
+            long retryIn = Math.max(0, openDuration - (System.currentTimeMillis() - openedAt));
+            return "Video device " + deviceId + " is unavailable, circuit breaker is open after " + failures
+                    + " failures (" + lastFailure + "), retry in " + (retryIn / 1000 + 1) + " s";
+        }
+    }
+}
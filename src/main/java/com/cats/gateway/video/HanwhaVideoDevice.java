@@ -18,13 +18,10 @@ package com.cats.gateway.video;
  * SPDX-License-Identifier: Apache-2.0
  */
 
-import com.cats.gateway.health.model.HealthReport;
-import com.cats.gateway.health.model.HealthStatusBean;
-import com.cats.gateway.slotmapping.model.Device;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class to load hanwha video instance.
@@ -37,6 +34,19 @@ public record HanwhaVideoDevice(String internalIp, String internalPort, String n
 
     private static final List<String> SUPPORTED_RESOLUTIONS = List.of("704x480","720x480","1024x768", "1920x1080");
 
+    static final VideoUrlTemplate.Dialect URL_DIALECT = new VideoUrlTemplate.Dialect(
+            "/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=",
+            "/stw-cgi/video.cgi?msubmenu=stream&action=view&Profile=1&Channel=",
+            "/axis-media/media.amp?camera=",
+            -1,
+            false,
+            "&FrameRate=",
+            null,
+            "&Resolution=",
+            Map.of("4CIF", "&Resolution=704x480"),
+            "&CodecType=",
+            "&CodecType=MJPEG");
+
     public HanwhaVideoDevice(String internalIp, String internalPort, String natPort, String natSSLPort, String natRTSPPort, String rackHost, String rackIp, Boolean useProxy, String proxyBaseUrl) {
         this.natPort = natPort;
         this.natSSLPort = natSSLPort;
@@ -49,6 +59,11 @@ public record HanwhaVideoDevice(String internalIp, String internalPort, String n
         this.internalPort = internalPort == null || internalPort.trim().isEmpty() ? "80" : internalPort;
     }
 
+    private static VideoUrlTemplate compileUrlTemplate(HanwhaVideoDevice device) {
+        return new VideoUrlTemplate(URL_DIALECT, device.internalIp, device.internalPort, device.natPort, device.natSSLPort,
+                device.natRTSPPort, device.rackHost, device.useProxy, device.proxyBaseUrl);
+    }
+
     /**
      * Method to get snapshot url based on a given slot.
      *
@@ -69,40 +84,7 @@ public record HanwhaVideoDevice(String internalIp, String internalPort, String n
      * */
     @Override
     public String getSnapShotUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, Boolean useSSL, Boolean isLocal) {
-        StringBuilder stringBuilder = new StringBuilder();
-        if (isLocal) {
-            stringBuilder.append("http://");
-            stringBuilder.append(internalIp());
-            stringBuilder.append(":");
-            stringBuilder.append(internalPort());
-        } else if (useSSL && useProxy) {
-            stringBuilder.append("https://");
-            stringBuilder.append(proxyBaseUrl());
-            stringBuilder.append(rackHost());
-            stringBuilder.append("/video/");
-            stringBuilder.append(natSSLPort());
-        } else if (useSSL) {
-            stringBuilder.append("https://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natSSLPort());
-        } else if (useProxy) {
-            stringBuilder.append("http://");
-            stringBuilder.append(proxyBaseUrl());
-            stringBuilder.append(rackHost());
-            stringBuilder.append("/video/");
-            stringBuilder.append(natPort());
-        } else {
-            stringBuilder.append("http://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natPort());
-        }
-
-        stringBuilder.append("/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=");
-        stringBuilder.append(outlet - 1);
-
-        return stringBuilder.toString();
+        return VideoUrlTemplate.of(this, HanwhaVideoDevice::compileUrlTemplate).snapshotUrl(outlet, resolution, videoCodec, squarePixel, useSSL, isLocal);
     }
 
     /**
@@ -127,69 +109,7 @@ public record HanwhaVideoDevice(String internalIp, String internalPort, String n
      * */
     @Override
     public String getVideoUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
-        StringBuilder stringBuilder = new StringBuilder();
-        if (isRtsp) {
-            stringBuilder.append("rtsp://");
-            stringBuilder.append(rackHost());
-            stringBuilder.append(":");
-            stringBuilder.append(natRTSPPort());
-            stringBuilder.append("/axis-media/media.amp?camera=");
-        } else {
-            if (isLocal) {
-                stringBuilder.append("http://");
-                stringBuilder.append(internalIp());
-                stringBuilder.append(":");
-                stringBuilder.append(internalPort());
-            } else if (useSSL && useProxy) {
-                stringBuilder.append("https://");
-                stringBuilder.append(proxyBaseUrl());
-                stringBuilder.append(rackHost());
-                stringBuilder.append("/video/");
-                stringBuilder.append(natSSLPort());
-            } else if (useSSL) {
-                stringBuilder.append("https://");
-                stringBuilder.append(rackHost());
-                stringBuilder.append(":");
-                stringBuilder.append(natSSLPort());
-            } else if (useProxy) {
-                stringBuilder.append("http://");
-                stringBuilder.append(proxyBaseUrl());
-                stringBuilder.append(rackHost());
-                stringBuilder.append("/video/");
-                stringBuilder.append(natPort());
-            } else {
-                stringBuilder.append("http://");
-                stringBuilder.append(rackHost());
-                stringBuilder.append(":");
-                stringBuilder.append(natPort());
-            }
-            stringBuilder.append("/stw-cgi/video.cgi?msubmenu=stream&action=view&Profile=1&Channel=");
-        }
-
-        stringBuilder.append(outlet - 1);
-
-        if (fps != null && !fps.trim().isEmpty()) {
-            stringBuilder.append("&FrameRate=");
-            stringBuilder.append(fps);
-        }
-
-        if (resolution != null && !resolution.trim().isEmpty()) {
-            if (resolution.equals("4CIF")) {
-                stringBuilder.append("&Resolution=704x480");
-            } else {
-                stringBuilder.append("&Resolution=");
-                stringBuilder.append(resolution);
-            }
-        }
-
-        if (videoCodec != null && !videoCodec.trim().isEmpty()) {
-            stringBuilder.append("&CodecType=");
-            stringBuilder.append(videoCodec);
-        } else {
-            stringBuilder.append("&CodecType=MJPEG");
-        }
-
-        return stringBuilder.toString();
+        return VideoUrlTemplate.of(this, HanwhaVideoDevice::compileUrlTemplate).videoUrl(outlet, resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
     }
 
     /**
@@ -204,17 +124,4 @@ public record HanwhaVideoDevice(String internalIp, String internalPort, String n
     public List<String> getSupportedResolutions(Integer slot) {
         return SUPPORTED_RESOLUTIONS;
     }
-
-    /**
-     * Method to get video encoder health give a device.
-     *
-     * @param device
-     *      -- video device
-     * @return Mono<HealthReport>
-     *     -- health report of the video device
-     * */
-    public Mono<HealthStatusBean> getHealthStatus(HealthStatusBean healthStatusBean, Device device, List<HealthReport> healthReports) {
-        throw new UnsupportedOperationException("Operation not supported for hanwha video device");
-
-    }
 }
@@ -0,0 +1,38 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+
+/**
+ * Precompiled route of a slot to the video device outlet it is wired to.
+ *
+ * @param slot
+ *      -- slot number
+ * @param mapping
+ *      -- raw "device:outlet" mapping the route was compiled from
+ * @param device
+ *      -- device the slot is mapped to, null if the device is not configured
+ * @param outlet
+ *      -- outlet of the device the slot is connected to
+ * @param videoDevice
+ *      -- video device used to generate urls, null if the device type is not supported
+ */
+public record SlotRoute(int slot, String mapping, Device device, int outlet, VideoDevice videoDevice) {
+}
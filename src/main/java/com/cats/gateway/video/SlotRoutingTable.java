@@ -0,0 +1,171 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable routing table compiled from a {@link SlotMappingSnapshot}. Slots are resolved with a single array lookup,
+ * so the table can be read concurrently without locking and is replaced as a whole whenever the mappings change.
+ */
+@Slf4j
+public final class SlotRoutingTable {
+
+    /**
+     * Upper bound for slot numbers, protects the route array from absurd slot keys.
+     */
+    static final int MAX_SLOT = 65535;
+
+    static final SlotRoutingTable EMPTY = new SlotRoutingTable(0, new SlotRoute[0], Collections.emptyMap());
+
+    private final long version;
+
+    private final SlotRoute[] routes;
+
+    private final Map<Integer, VideoDevice> videoDevices;
+
+    private SlotRoutingTable(long version, SlotRoute[] routes, Map<Integer, VideoDevice> videoDevices) {
+        this.version = version;
+        this.routes = routes;
+        this.videoDevices = videoDevices;
+    }
+
+    /**
+     * Method to compile a routing table from a mapping snapshot.
+     *
+     * @param snapshot
+     *      -- mapping snapshot
+     * @param videoDeviceCreator
+     *      -- function creating the video device of a configured device, may return null
+     * @return SlotRoutingTable
+     */
+    static SlotRoutingTable compile(SlotMappingSnapshot snapshot, Function<Device, VideoDevice> videoDeviceCreator) {
+        SlotToPortMappings mappings = snapshot.mappings();
+
+        Map<Integer, Device> devices = new HashMap<>();
+        Map<Integer, VideoDevice> videoDevices = new HashMap<>();
+        List<Device> deviceList = mappings.getDevices();
+        if (deviceList != null) {
+            for (Device device : deviceList) {
+                if (device.getId() == null) {
+                    continue;
+                }
+                devices.put(device.getId(), device);
+                VideoDevice videoDevice = videoDeviceCreator.apply(device);
+                if (videoDevice != null) {
+                    videoDevices.put(device.getId(), videoDevice);
+                }
+            }
+        }
+
+        Map<Integer, String> slots = new HashMap<>();
+        int maxSlot = -1;
+        for (Map.Entry<String, String> entry : mappings.getMappings().entrySet()) {
+            Integer slot = parseInt(entry.getKey());
+            if (slot == null || slot < 0 || slot > MAX_SLOT) {
+                log.warn("Ignoring mapping of invalid slot {}", entry.getKey());
+                continue;
+            }
+            if (entry.getValue() == null || entry.getValue().equals("N/A")) {
+                continue;
+            }
+            slots.put(slot, entry.getValue());
+            maxSlot = Math.max(maxSlot, slot);
+        }
+
+        SlotRoute[] routes = new SlotRoute[maxSlot + 1];
+        slots.forEach((slot, mapping) -> {
+            int separator = mapping.indexOf(':');
+            Integer deviceId = separator < 0 ? null : parseInt(mapping.substring(0, separator));
+            Integer outlet = separator < 0 ? null : parseInt(mapping.substring(separator + 1));
+            Device device = deviceId == null || outlet == null ? null : devices.get(deviceId);
+            VideoDevice videoDevice = device == null ? null : videoDevices.get(deviceId);
+            routes[slot] = new SlotRoute(slot, mapping, device, outlet == null ? 0 : outlet, videoDevice);
+        });
+
+        return new SlotRoutingTable(snapshot.version(), routes, Collections.unmodifiableMap(videoDevices));
+    }
+
+    private static Integer parseInt(String value) {
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Method to get the mapping version the table was compiled from.
+     *
+     * @return long
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Method to get the route of a slot.
+     *
+     * @param slot
+     *      -- slot number
+     * @return SlotRoute
+     *      -- route of the slot, null if the slot is not mapped
+     */
+    public SlotRoute route(int slot) {
+        return slot >= 0 && slot < routes.length ? routes[slot] : null;
+    }
+
+    /**
+     * Method to get the mapped slots.
+     *
+     * @return List<Integer>
+     *      -- mapped slots in ascending order
+     */
+    public List<Integer> slots() {
+        List<Integer> slots = new ArrayList<>();
+        for (SlotRoute route : routes) {
+            if (route != null) {
+                slots.add(route.slot());
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Method to get the video device of a configured device.
+     *
+     * @param deviceId
+     *      -- device id
+     * @return VideoDevice
+     *      -- video device, null if the device is not configured or supported
+     */
+    public VideoDevice videoDevice(Integer deviceId) {
+        return videoDevices.get(deviceId);
+    }
+}
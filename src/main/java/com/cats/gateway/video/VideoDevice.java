@@ -18,11 +18,6 @@ package com.cats.gateway.video;
  * SPDX-License-Identifier: Apache-2.0
  */
 
-import com.cats.gateway.health.model.HealthReport;
-import com.cats.gateway.health.model.HealthStatusBean;
-import com.cats.gateway.slotmapping.model.Device;
-import reactor.core.publisher.Mono;
-
 import java.util.List;
 
 /**
@@ -37,6 +32,8 @@ public interface VideoDevice {
 
     List<String> getSupportedResolutions(Integer slot);
 
-    Mono<HealthStatusBean> getHealthStatus(HealthStatusBean healthStatusBean, Device device, List<HealthReport> healthReports);
+    String internalIp();
+
+    String internalPort();
 
 }
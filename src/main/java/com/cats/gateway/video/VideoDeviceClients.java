@@ -0,0 +1,190 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.service.SlotMappingService;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Managed http clients for the outbound calls of the gateway. Every configured video device gets its own connection
+ * pool sized to its outlets, so keep-alive connections to an encoder are reused across snapshots and health checks
+ * and a slow encoder cannot exhaust the connections of the others. Calls beyond the size of a pool wait up to the
+ * response timeout for a free connection. Calls to the rack services share one pool.
+ * The device pools are rebuilt whenever a new mapping snapshot is published.
+ */
+@Slf4j
+@Component
+public class VideoDeviceClients {
+
+    private static final int DEFAULT_OUTLETS = 16;
+
+    @Autowired
+    SlotMappingService slotMappingService;
+
+    @Value("${video.client.connect-timeout:2000}")
+    private long connectTimeout;
+
+    @Value("${video.client.response-timeout:10000}")
+    private long responseTimeout;
+
+    @Value("${video.client.max-idle-time:30000}")
+    private long maxIdleTime;
+
+    @Value("${video.client.connections-per-outlet:2}")
+    private int connectionsPerOutlet;
+
+    @Value("${video.client.rack.max-connections:16}")
+    private int rackMaxConnections;
+
+    private final Map<Integer, DeviceClient> deviceClients = new ConcurrentHashMap<>();
+
+    private ConnectionProvider rackConnectionProvider;
+
+    private WebClient rackClient;
+
+    private record DeviceClient(Device device, ConnectionProvider connectionProvider, WebClient webClient) {
+    }
+
+    /**
+     * Method to create the rack client and the clients of the configured video devices.
+     */
+    @PostConstruct
+    public void init() {
+        rackConnectionProvider = ConnectionProvider.builder("rack")
+                .maxConnections(rackMaxConnections)
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .evictInBackground(Duration.ofMillis(maxIdleTime))
+                .build();
+        rackClient = createClient(rackConnectionProvider);
+        onMappingsChanged(slotMappingService.getSnapshot());
+    }
+
+    /**
+     * Method to rebuild the clients of the video devices whenever a new mapping snapshot is published. Clients of
+     * unchanged devices are kept, the pools of removed or changed devices are closed once their connections are idle.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public synchronized void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        List<Device> devices = snapshot.mappings().getDevices();
+        Map<Integer, Device> configured = new HashMap<>();
+        if (devices != null) {
+            devices.stream().filter(device -> device.getId() != null).forEach(device -> configured.put(device.getId(), device));
+        }
+        deviceClients.entrySet().removeIf(entry -> {
+            boolean stale = !entry.getValue().device().equals(configured.get(entry.getKey()));
+            if (stale) {
+                entry.getValue().connectionProvider().disposeLater().subscribe();
+            }
+            return stale;
+        });
+        configured.values().forEach(this::forDevice);
+    }
+
+    /**
+     * Method to get the client of a video device.
+     *
+     * @param device
+     *      -- Device
+     * @return WebClient
+     *      -- client using the connection pool of the device
+     */
+    public WebClient forDevice(Device device) {
+        if (device == null || device.getId() == null) {
+            return rackClient;
+        }
+        DeviceClient deviceClient = deviceClients.get(device.getId());
+        if (deviceClient != null && deviceClient.device().equals(device)) {
+            return deviceClient.webClient();
+        }
+        return deviceClients.compute(device.getId(), (id, current) -> {
+            if (current != null) {
+                if (current.device().equals(device)) {
+                    return current;
+                }
+                current.connectionProvider().disposeLater().subscribe();
+            }
+            return createDeviceClient(device);
+        }).webClient();
+    }
+
+    /**
+     * Method to get the client for the rack services.
+     *
+     * @return WebClient
+     */
+    public WebClient forRack() {
+        return rackClient;
+    }
+
+    private DeviceClient createDeviceClient(Device device) {
+        int outlets = device.getMaxPort() != null && device.getMaxPort() > 0 ? device.getMaxPort() : DEFAULT_OUTLETS;
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("video-device-" + device.getId())
+                .maxConnections(outlets * connectionsPerOutlet)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMillis(responseTimeout))
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .evictInBackground(Duration.ofMillis(maxIdleTime))
+                .build();
+        log.debug("Created connection pool of {} connections for video device {}", outlets * connectionsPerOutlet, device.getId());
+        return new DeviceClient(device, connectionProvider, createClient(connectionProvider));
+    }
+
+    private WebClient createClient(ConnectionProvider connectionProvider) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout)
+                .responseTimeout(Duration.ofMillis(responseTimeout));
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    /**
+     * Method to close all connection pools on shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        deviceClients.values().forEach(deviceClient -> deviceClient.connectionProvider().dispose());
+        deviceClients.clear();
+        if (rackConnectionProvider != null) {
+            rackConnectionProvider.dispose();
+        }
+    }
+}
@@ -19,16 +19,16 @@ package com.cats.gateway.video;
  */
 
 import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
 import com.cats.gateway.slotmapping.model.SlotToPortMappings;
 import com.cats.gateway.slotmapping.model.VideoType;
 import com.cats.gateway.slotmapping.service.SlotMappingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.util.List;
-import java.util.TreeMap;
 
 /**
  * Factory class to load the corresponding video devices.
@@ -41,32 +41,66 @@ public class VideoDeviceFactory {
     @Autowired
     SlotMappingService slotMappingService;
 
-    private final TreeMap<Integer, VideoDevice> videoDeviceMap = new TreeMap<>();
+    private volatile SlotRoutingTable routingTable = SlotRoutingTable.EMPTY;
 
 
     /**
-     * Method to load the video devices during application start up time and store it in a tree map.
+     * Method to load the video devices during application start up time and compile the slot routing table.
      */
     @PostConstruct()
     public void init() {
         log.info("Initialising video devices");
-        SlotToPortMappings slotToPortMappings = slotMappingService.getMappings();
-        List<Device> devices = slotToPortMappings.getDevices();
-        if (devices != null && !devices.isEmpty()) {
-            devices.forEach(device -> {
-                VideoType videoType = VideoType.findType(device.getType());
+        onMappingsChanged(slotMappingService.getSnapshot());
+    }
+
+    /**
+     * Method to rebuild the video devices and the slot routing table whenever a new mapping snapshot is published.
+     * The new table is swapped in atomically, so readers either see the old or the new mappings.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public synchronized void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        if (snapshot.version() <= routingTable.version()) {
+            return;
+        }
+        SlotToPortMappings slotToPortMappings = snapshot.mappings();
+        routingTable = SlotRoutingTable.compile(snapshot, device -> createVideoDevice(device, slotToPortMappings));
+        log.info("Slot routing table compiled for mapping version {}", snapshot.version());
+    }
+
+    /**
+     * Method to create the video device for a configured device.
+     *
+     * @param device
+     *      -- Device
+     * @param slotToPortMappings
+     *      -- mappings holding the rack details
+     * @return VideoDevice
+     *      -- video device, null if the device type is not supported
+     */
+    private VideoDevice createVideoDevice(Device device, SlotToPortMappings slotToPortMappings) {
+        VideoType videoType = VideoType.findType(device.getType());
 
-                if (videoType != null) {
-                    if (videoType.equals(VideoType.AXIS_P7216) || videoType.equals(VideoType.AXIS_FA54)) {
-                        videoDeviceMap.put(device.getId(), new AxisVideoDevice(device.getInternalIp(), device.getInternalPort(), device.getNatPort(), device.getNatSSLPort(), device.getNatRTSPPort(), slotToPortMappings.getRackHost(), slotToPortMappings.getRackIp(), slotToPortMappings.getUseProxy(), slotToPortMappings.getProxyBaseUrl()));
-                    } else if (videoType.equals(VideoType.HANWHA_SPE_1620)) {
-                        videoDeviceMap.put(device.getId(), new HanwhaVideoDevice(device.getInternalIp(), device.getInternalPort(), device.getNatPort(), device.getNatSSLPort(), device.getNatRTSPPort(), slotToPortMappings.getRackHost(), slotToPortMappings.getRackIp(), slotToPortMappings.getUseProxy(), slotToPortMappings.getProxyBaseUrl()));
-                    } else {
-                        log.info("No video devices configured for the device id {}", device.getId());
-                    }
-                }
-            });
+        if (videoType != null) {
+            if (videoType.equals(VideoType.AXIS_P7216) || videoType.equals(VideoType.AXIS_FA54)) {
+                return new AxisVideoDevice(device.getInternalIp(), device.getInternalPort(), device.getNatPort(), device.getNatSSLPort(), device.getNatRTSPPort(), slotToPortMappings.getRackHost(), slotToPortMappings.getRackIp(), slotToPortMappings.getUseProxy(), slotToPortMappings.getProxyBaseUrl());
+            } else if (videoType.equals(VideoType.HANWHA_SPE_1620)) {
+                return new HanwhaVideoDevice(device.getInternalIp(), device.getInternalPort(), device.getNatPort(), device.getNatSSLPort(), device.getNatRTSPPort(), slotToPortMappings.getRackHost(), slotToPortMappings.getRackIp(), slotToPortMappings.getUseProxy(), slotToPortMappings.getProxyBaseUrl());
+            }
         }
+        log.info("No video devices configured for the device id {}", device.getId());
+        return null;
+    }
+
+    /**
+     * Method to get the current slot routing table.
+     *
+     * @return SlotRoutingTable
+     */
+    public SlotRoutingTable getRoutingTable() {
+        return routingTable;
     }
 
     /**
@@ -78,7 +112,6 @@ public class VideoDeviceFactory {
         if (device == null) {
             throw new IllegalArgumentException("Device cannot be empty");
         }
-        log.info("retrieving video device from the cache");
-        return videoDeviceMap.get(device.getId());
+        return routingTable.videoDevice(device.getId());
     }
 }
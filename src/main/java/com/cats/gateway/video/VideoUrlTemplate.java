@@ -0,0 +1,241 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Precompiled url templates of a video device. The scheme, host and port prefixes of every url variant (local, ssl,
+ * ssl through proxy, proxy, plain and rtsp) are built once per device, so generating a url only appends the outlet
+ * and the optional query parameters to a buffer sized for the result. Templates are cached by the device record they
+ * were compiled from, which keeps them out of the record components and so out of equals, hashCode and toString.
+ */
+public final class VideoUrlTemplate {
+
+    private static final int LOCAL = 0;
+    private static final int SSL_PROXY = 1;
+    private static final int SSL = 2;
+    private static final int PROXY = 3;
+    private static final int PLAIN = 4;
+
+    /**
+     * Vendor specific url layout shared by all devices of a vendor.
+     *
+     * @param snapshotPath
+     *      -- path and query prefix of the snapshot url, followed by the channel
+     * @param videoPath
+     *      -- path and query prefix of the video url, followed by the channel
+     * @param rtspPath
+     *      -- path and query prefix of the rtsp url, followed by the channel
+     * @param channelOffset
+     *      -- offset added to the outlet to get the channel
+     * @param snapshotParameters
+     *      -- whether the optional parameters are appended to the snapshot url
+     * @param fpsParameter
+     *      -- query fragment of the frame rate
+     * @param squarePixelParameter
+     *      -- query fragment of the square pixel setting, null if not supported
+     * @param resolutionParameter
+     *      -- query fragment of a resolution without a token
+     * @param resolutionTokens
+     *      -- complete query fragments of resolutions the vendor names differently
+     * @param videoCodecParameter
+     *      -- query fragment of the video codec
+     * @param defaultVideoCodec
+     *      -- complete query fragment appended to the video url when no codec is requested, null if none
+     */
+    public record Dialect(String snapshotPath, String videoPath, String rtspPath, int channelOffset,
+                          boolean snapshotParameters, String fpsParameter, String squarePixelParameter,
+                          String resolutionParameter, Map<String, String> resolutionTokens,
+                          String videoCodecParameter, String defaultVideoCodec) {
+    }
+
+    /**
+     * Upper bound of cached templates. Devices are rebuilt whenever the slot mappings change, so the cache is dropped
+     * once it reaches the bound rather than tracking which devices are still in use.
+     */
+    static final int MAX_CACHED_TEMPLATES = 1024;
+
+    private static final Map<VideoDevice, VideoUrlTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final Dialect dialect;
+
+    private final String[] snapshotPrefixes;
+
+    private final String[] videoPrefixes;
+
+    private final String rtspPrefix;
+
+    /**
+     * Constructor to compile the url templates of a device.
+     *
+     * @param dialect
+     *      -- vendor url layout
+     * @param internalIp
+     *      -- internal ip of the device
+     * @param internalPort
+     *      -- internal port of the device
+     * @param natPort
+     *      -- nat port of the device
+     * @param natSSLPort
+     *      -- nat ssl port of the device
+     * @param natRTSPPort
+     *      -- nat rtsp port of the device
+     * @param rackHost
+     *      -- host name of the rack
+     * @param useProxy
+     *      -- whether the device is reached through the proxy
+     * @param proxyBaseUrl
+     *      -- base url of the proxy
+     */
+    public VideoUrlTemplate(Dialect dialect, String internalIp, String internalPort, String natPort, String natSSLPort,
+                            String natRTSPPort, String rackHost, Boolean useProxy, String proxyBaseUrl) {
+        this.dialect = dialect;
+
+        String[] prefixes = new String[5];
+        prefixes[LOCAL] = "http://" + internalIp + ":" + internalPort;
+        prefixes[SSL_PROXY] = "https://" + proxyBaseUrl + rackHost + "/video/" + natSSLPort;
+        prefixes[SSL] = "https://" + rackHost + ":" + natSSLPort;
+        prefixes[PROXY] = "http://" + proxyBaseUrl + rackHost + "/video/" + natPort;
+        prefixes[PLAIN] = "http://" + rackHost + ":" + natPort;
+        if (!Boolean.TRUE.equals(useProxy)) {
+            prefixes[SSL_PROXY] = prefixes[SSL];
+            prefixes[PROXY] = prefixes[PLAIN];
+        }
+
+        this.snapshotPrefixes = new String[prefixes.length];
+        this.videoPrefixes = new String[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            snapshotPrefixes[i] = prefixes[i] + dialect.snapshotPath();
+            videoPrefixes[i] = prefixes[i] + dialect.videoPath();
+        }
+        this.rtspPrefix = "rtsp://" + rackHost + ":" + natRTSPPort + dialect.rtspPath();
+    }
+
+    /**
+     * Method to get the cached template of a device, compiling it on first use.
+     *
+     * @param device
+     *      -- device record the template is compiled from
+     * @param compiler
+     *      -- compiles the template of the device
+     * @return VideoUrlTemplate
+     *     -- template of the device
+     */
+    public static <D extends VideoDevice> VideoUrlTemplate of(D device, Function<? super D, VideoUrlTemplate> compiler) {
+        VideoUrlTemplate template = TEMPLATES.get(device);
+        if (template == null) {
+            if (TEMPLATES.size() >= MAX_CACHED_TEMPLATES) {
+                TEMPLATES.clear();
+            }
+            template = compiler.apply(device);
+            VideoUrlTemplate cached = TEMPLATES.putIfAbsent(device, template);
+            if (cached != null) {
+                template = cached;
+            }
+        }
+        return template;
+    }
+
+    private static int variant(Boolean useSSL, Boolean isLocal) {
+        if (Boolean.TRUE.equals(isLocal)) {
+            return LOCAL;
+        }
+        return Boolean.TRUE.equals(useSSL) ? SSL_PROXY : PROXY;
+    }
+
+    /**
+     * Method to generate a snapshot url.
+     *
+     * @return String
+     *     -- snapshot url
+     * */
+    public String snapshotUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, Boolean useSSL, Boolean isLocal) {
+        String prefix = snapshotPrefixes[variant(useSSL, isLocal)];
+        if (!dialect.snapshotParameters()) {
+            return prefix + (outlet + dialect.channelOffset());
+        }
+        return appendParameters(prefix, outlet, resolution, videoCodec, squarePixel, null, null);
+    }
+
+    /**
+     * Method to generate a video url.
+     *
+     * @return String
+     *     -- video url
+     * */
+    public String videoUrl(Integer outlet, String resolution, String videoCodec, String squarePixel, String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
+        String prefix = Boolean.TRUE.equals(isRtsp) ? rtspPrefix : videoPrefixes[variant(useSSL, isLocal)];
+        return appendParameters(prefix, outlet, resolution, videoCodec, squarePixel, fps, dialect.defaultVideoCodec());
+    }
+
+    private String appendParameters(String prefix, Integer outlet, String resolution, String videoCodec, String squarePixel, String fps, String defaultVideoCodec) {
+        boolean hasFps = isPresent(fps);
+        boolean hasSquarePixel = dialect.squarePixelParameter() != null && isPresent(squarePixel);
+        String resolutionToken = null;
+        boolean hasResolution = isPresent(resolution);
+        if (hasResolution) {
+            resolutionToken = dialect.resolutionTokens().get(resolution);
+        }
+        boolean hasVideoCodec = isPresent(videoCodec);
+
+        int capacity = prefix.length() + 11;
+        if (hasFps) {
+            capacity += dialect.fpsParameter().length() + fps.length();
+        }
+        if (hasSquarePixel) {
+            capacity += dialect.squarePixelParameter().length() + squarePixel.length();
+        }
+        if (resolutionToken != null) {
+            capacity += resolutionToken.length();
+        } else if (hasResolution) {
+            capacity += dialect.resolutionParameter().length() + resolution.length();
+        }
+        if (hasVideoCodec) {
+            capacity += dialect.videoCodecParameter().length() + videoCodec.length();
+        } else if (defaultVideoCodec != null) {
+            capacity += defaultVideoCodec.length();
+        }
+
+        StringBuilder url = new StringBuilder(capacity).append(prefix).append(outlet + dialect.channelOffset());
+        if (hasFps) {
+            url.append(dialect.fpsParameter()).append(fps);
+        }
+        if (hasSquarePixel) {
+            url.append(dialect.squarePixelParameter()).append(squarePixel);
+        }
+        if (resolutionToken != null) {
+            url.append(resolutionToken);
+        } else if (hasResolution) {
+            url.append(dialect.resolutionParameter()).append(resolution);
+        }
+        if (hasVideoCodec) {
+            url.append(dialect.videoCodecParameter()).append(videoCodec);
+        } else if (defaultVideoCodec != null) {
+            url.append(defaultVideoCodec);
+        }
+        return url.toString();
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.isBlank();
+    }
+}
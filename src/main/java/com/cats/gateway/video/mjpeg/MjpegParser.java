@@ -0,0 +1,306 @@
+package com.cats.gateway.video.mjpeg;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser of the multipart/x-mixed-replace streams of MJPEG video. Frames are cut out of the received
+ * buffers without copying: a frame is a view of the buffers it spans, joined into a composite buffer if it spans more
+ * than one. The length of a frame is taken from the Content-Length header of its part, parts without the header end at
+ * the next boundary.
+ */
+public final class MjpegParser {
+
+    private static final int MAX_HEADER_SIZE = 8192;
+
+    private enum State {
+        HEADERS,
+        BODY_LENGTH,
+        BODY_DELIMITED
+    }
+
+    private final int maxFrameSize;
+
+    private String boundary;
+
+    private byte[] delimiter;
+
+    private int[] delimiterFailure;
+
+    private State state = State.HEADERS;
+
+    private final byte[] headers = new byte[MAX_HEADER_SIZE];
+
+    private int headerLength;
+
+    private boolean afterDelimiter;
+
+    private final List<DataBuffer> bodyParts = new ArrayList<>();
+
+    private int bodySize;
+
+    private int remaining;
+
+    private int matched;
+
+    /**
+     * Constructor of a parser of a single stream.
+     *
+     * @param boundary
+     *      -- boundary of the parts, taken from the first part if null
+     * @param maxFrameSize
+     *      -- maximum size in bytes of a frame
+     */
+    public MjpegParser(String boundary, int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+        if (boundary != null && !boundary.isBlank()) {
+            setBoundary(boundary);
+        }
+    }
+
+    /**
+     * Method to split the body of an MJPEG response into frames.
+     *
+     * @param body
+     *      -- body of the response
+     * @param contentType
+     *      -- content type of the response, may be null
+     * @param maxFrameSize
+     *      -- maximum size in bytes of a frame
+     * @return Flux<DataBuffer>
+     *      -- JPEG frames of the stream, to be released by the subscriber
+     */
+    public static Flux<DataBuffer> frames(Flux<DataBuffer> body, MediaType contentType, int maxFrameSize) {
+        return Flux.defer(() -> {
+            MjpegParser parser = new MjpegParser(boundaryOf(contentType), maxFrameSize);
+            return body.concatMapIterable(parser::feed)
+                    .doFinally(signal -> parser.release())
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        });
+    }
+
+    /**
+     * Method to get the boundary of a multipart content type.
+     *
+     * @param contentType
+     *      -- content type, may be null
+     * @return String
+     *      -- boundary without the leading dashes, null if the content type has none
+     */
+    public static String boundaryOf(MediaType contentType) {
+        String boundary = contentType != null ? contentType.getParameter("boundary") : null;
+        if (boundary == null) {
+            return null;
+        }
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary.startsWith("--") ? boundary.substring(2) : boundary;
+    }
+
+    /**
+     * Method to parse the next buffer of the stream. The buffer is released, frames completed by it are returned.
+     *
+     * @param chunk
+     *      -- next buffer of the stream
+     * @return List<DataBuffer>
+     *      -- completed frames, to be released by the caller
+     */
+    public List<DataBuffer> feed(DataBuffer chunk) {
+        List<DataBuffer> frames = new ArrayList<>(1);
+        try {
+            while (chunk.readableByteCount() > 0) {
+                switch (state) {
+                    case HEADERS -> readHeaders(chunk);
+                    case BODY_LENGTH -> {
+                        int length = Math.min(remaining, chunk.readableByteCount());
+                        addBodyPart(chunk.split(chunk.readPosition() + length));
+                        remaining -= length;
+                        if (remaining == 0) {
+                            frames.add(completeFrame(bodySize));
+                        }
+                    }
+                    case BODY_DELIMITED -> {
+                        int start = chunk.readPosition();
+                        int end = start + chunk.readableByteCount();
+                        int position = start;
+                        boolean found = false;
+                        while (position < end && !found) {
+                            found = matchDelimiter(chunk.getByte(position++));
+                        }
+                        addBodyPart(chunk.split(position));
+                        if (found) {
+                            frames.add(completeFrame(bodySize - delimiter.length));
+                            afterDelimiter = true;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            frames.forEach(DataBufferUtils::release);
+            throw e;
+        } finally {
+            DataBufferUtils.release(chunk);
+        }
+        return frames;
+    }
+
+    /**
+     * Method to release the part of a frame received so far.
+     */
+    public void release() {
+        bodyParts.forEach(DataBufferUtils::release);
+        bodyParts.clear();
+        bodySize = 0;
+    }
+
+    private void readHeaders(DataBuffer chunk) {
+        while (chunk.readableByteCount() > 0) {
+            if (headerLength == headers.length) {
+                throw new IllegalStateException("MJPEG part headers exceed " + MAX_HEADER_SIZE + " bytes");
+            }
+            headers[headerLength++] = chunk.read();
+            if (endOfHeaders()) {
+                if (parseHeaders()) {
+                    return;
+                }
+                headerLength = 0;
+            }
+        }
+    }
+
+    private boolean endOfHeaders() {
+        int n = headerLength;
+        return n >= 2 && headers[n - 1] == '\n'
+                && (headers[n - 2] == '\n' || (n >= 4 && headers[n - 2] == '\r' && headers[n - 3] == '\n' && headers[n - 4] == '\r'));
+    }
+
+    /**
+     * Parses the headers of a part and prepares the reading of its body.
+     *
+     * @return boolean
+     *      -- false if the header block was empty and the headers of the part are still to come
+     */
+    private boolean parseHeaders() {
+        String block = new String(headers, 0, headerLength, StandardCharsets.ISO_8859_1);
+        headerLength = 0;
+        boolean content = afterDelimiter;
+        int contentLength = -1;
+        for (String line : block.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            content = true;
+            if (line.startsWith("--")) {
+                if (boundary == null) {
+                    setBoundary(line.substring(2));
+                }
+            } else {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+                    try {
+                        contentLength = Integer.parseInt(line.substring(colon + 1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalStateException("Invalid MJPEG part length " + line);
+                    }
+                }
+            }
+        }
+        if (!content) {
+            return false;
+        }
+        afterDelimiter = false;
+        if (contentLength > maxFrameSize) {
+            throw new IllegalStateException("MJPEG frame of " + contentLength + " bytes exceeds " + maxFrameSize + " bytes");
+        }
+        if (contentLength >= 0) {
+            remaining = contentLength;
+            state = contentLength > 0 ? State.BODY_LENGTH : State.HEADERS;
+        } else if (delimiter != null) {
+            matched = 0;
+            state = State.BODY_DELIMITED;
+        } else {
+            throw new IllegalStateException("MJPEG part without length or boundary");
+        }
+        return true;
+    }
+
+    private void setBoundary(String boundary) {
+        this.boundary = boundary.trim();
+        delimiter = ("\r\n--" + this.boundary).getBytes(StandardCharsets.ISO_8859_1);
+        delimiterFailure = new int[delimiter.length];
+        for (int i = 1, k = 0; i < delimiter.length; i++) {
+            while (k > 0 && delimiter[i] != delimiter[k]) {
+                k = delimiterFailure[k - 1];
+            }
+            if (delimiter[i] == delimiter[k]) {
+                k++;
+            }
+            delimiterFailure[i] = k;
+        }
+    }
+
+    private boolean matchDelimiter(byte b) {
+        while (matched > 0 && b != delimiter[matched]) {
+            matched = delimiterFailure[matched - 1];
+        }
+        if (b == delimiter[matched]) {
+            matched++;
+        }
+        if (matched == delimiter.length) {
+            matched = 0;
+            return true;
+        }
+        return false;
+    }
+
+    private void addBodyPart(DataBuffer part) {
+        bodySize += part.readableByteCount();
+        if (part.readableByteCount() == 0) {
+            DataBufferUtils.release(part);
+            return;
+        }
+        bodyParts.add(part);
+        if (state == State.BODY_DELIMITED && bodySize > maxFrameSize + delimiter.length) {
+            throw new IllegalStateException("MJPEG frame exceeds " + maxFrameSize + " bytes");
+        }
+    }
+
+    private DataBuffer completeFrame(int frameSize) {
+        state = State.HEADERS;
+        DataBuffer frame = bodyParts.size() == 1 ? bodyParts.get(0) : bodyParts.get(0).factory().join(bodyParts);
+        bodyParts.clear();
+        bodySize = 0;
+        if (frame.readableByteCount() > frameSize) {
+            DataBuffer trimmed = frame.split(frame.readPosition() + frameSize);
+            DataBufferUtils.release(frame);
+            return trimmed;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,38 @@
+package com.cats.gateway.video.model;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+/**
+ * Pojo class to hold the urls of a slot, or the error which prevented generating them.
+ * */
+@Schema(description = "Represents the video, snapshot and rtsp urls of a slot.")
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SlotUrls {
+    private Integer slot;
+    private String videoUrl;
+    private String snapshotUrl;
+    private String rtspUrl;
+    private Integer status;
+    private String error;
+}
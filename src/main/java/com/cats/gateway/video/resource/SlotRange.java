@@ -0,0 +1,77 @@
+package com.cats.gateway.video.resource;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Parser for slot selections given as a comma separated list of slots and slot ranges, e.g. "1-16,20,22".
+ */
+public final class SlotRange {
+
+    /**
+     * Maximum number of slots a single selection may contain.
+     */
+    public static final int MAX_SLOTS = 4096;
+
+    private SlotRange() {
+    }
+
+    /**
+     * Method to parse a slot selection.
+     *
+     * @param slots
+     *      -- comma separated list of slots and slot ranges
+     * @return List<Integer>
+     *      -- selected slots in ascending order without duplicates
+     */
+    public static List<Integer> parse(String slots) {
+        TreeSet<Integer> selected = new TreeSet<>();
+        for (String part : slots.split(",")) {
+            String token = part.trim();
+            if (token.isEmpty()) {
+                continue;
+            }
+            int separator = token.indexOf('-', 1);
+            int from;
+            int to;
+            try {
+                from = Integer.parseInt(separator < 0 ? token : token.substring(0, separator).trim());
+                to = separator < 0 ? from : Integer.parseInt(token.substring(separator + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid slot selection: " + token);
+            }
+            if (from < 0 || to < from) {
+                throw new IllegalArgumentException("Invalid slot range: " + token);
+            }
+            if ((long) to - from + selected.size() >= MAX_SLOTS) {
+                throw new IllegalArgumentException("Slot selection exceeds " + MAX_SLOTS + " slots");
+            }
+            for (int slot = from; slot <= to; slot++) {
+                selected.add(slot);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("No slots selected");
+        }
+        return new ArrayList<>(selected);
+    }
+}
@@ -0,0 +1,85 @@
+package com.cats.gateway.video.resource;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.video.model.SlotUrls;
+import com.cats.gateway.video.service.VideoService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.apache.commons.text.StringEscapeUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@Tag(name = "Slot Urls Resource", description = "APIs to generate video urls for several slots")
+@RestController
+@RequestMapping("/v1/slots")
+public class SlotUrlsResource {
+
+    @Autowired
+    VideoService videoService;
+
+    /**
+     * Method to get the video, snapshot and rtsp urls of several slots, streamed as one json line per slot.
+     *
+     * @param slots
+     *      -- slots and slot ranges, e.g. 1-16,20. All mapped slots if empty
+     * @param resolution
+     *      -- resolution of the video
+     * @param videoCodec
+     *       -- video codec of the video
+     * @param squarePixel
+     *      -- square pixel of the video
+     * @param fps
+     *      -- frames per second of the video
+     * @param useSSL
+     *     -- use SSL or not
+     * @param isLocal
+     *    -- url requested is with internal ip or not
+     * @return Flux<SlotUrls>
+     *     -- urls of every slot
+     * */
+    @Operation(summary = "Get urls of several slots", description = "Get video, snapshot and rtsp urls for a list or range of slots, streamed as newline delimited json. Errors of a slot are reported in its line.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = SlotUrls.class)) }),
+            @ApiResponse(responseCode = "400", description = "Invalid slot selection", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping(value = "/urls", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<SlotUrls> generateSlotUrls(@Parameter(description = "slots and slot ranges, e.g. 1-16,20. All mapped slots if empty") @RequestParam(required = false, defaultValue = "") String slots,
+                                           @Parameter(description = "resolution of the video required") @RequestParam(required = false, defaultValue = "") String resolution,
+                                           @Parameter(description = "video codec of the video required") @RequestParam(required = false, defaultValue = "") String videoCodec,
+                                           @Parameter(description = "squarePixel of the video") @RequestParam(required = false, defaultValue = "") String squarePixel,
+                                           @Parameter(description = "frames per second of the video") @RequestParam(required = false, defaultValue = "15") String fps,
+                                           @Parameter(description = "To identify if https url is required") @RequestParam(required = false, defaultValue = "true") Boolean useSSL,
+                                           @Parameter(description = "To identify if internal server url is required") @RequestParam(required = false, defaultValue = "false") Boolean isLocal) {
+        return videoService.generateSlotUrls(slots.isBlank() ? null : SlotRange.parse(slots),
+                StringEscapeUtils.escapeHtml4(resolution), StringEscapeUtils.escapeHtml4(videoCodec),
+                StringEscapeUtils.escapeHtml4(squarePixel), StringEscapeUtils.escapeHtml4(fps), useSSL, isLocal);
+    }
+}
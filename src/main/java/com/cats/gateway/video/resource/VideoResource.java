@@ -18,6 +18,9 @@ package com.cats.gateway.video.resource;
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import com.cats.gateway.video.service.MjpegRelayService;
+import com.cats.gateway.video.service.SnapshotService;
+import com.cats.gateway.video.service.UrlResponseCache;
 import com.cats.gateway.video.service.VideoService;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -29,11 +32,18 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
-import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.text.StringEscapeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @Tag(name = "Video Resource", description = "APIs to generate video urls")
@@ -41,9 +51,24 @@ import java.util.List;
 @RequestMapping("/v1/slot/{slot}")
 public class VideoResource {
 
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
     @Autowired
     VideoService videoService;
 
+    @Autowired
+    UrlResponseCache urlResponseCache;
+
+    @Autowired
+    SnapshotService snapshotService;
+
+    @Autowired
+    MjpegRelayService mjpegRelayService;
+
+    private static ResponseEntity<byte[]> textResponse(byte[] body) {
+        return ResponseEntity.ok().contentType(TEXT_PLAIN_UTF8).body(body);
+    }
+
     /**
      * Method to get video url based on a given slot.
      *
@@ -61,7 +86,7 @@ public class VideoResource {
      *    -- url requested is with internal ip or not
      * @param isRtsp
      *   -- url requested is with rtsp or not
-     * @return String
+     * @return ResponseEntity<byte[]>
      *     -- video url
      * */
     @Operation(summary = "Get Video url ", description = "Get video url for video devices for a rack given slot number.")
@@ -72,7 +97,7 @@ public class VideoResource {
             @ApiResponse(responseCode = "400", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     })
     @GetMapping("/url")
-    protected String generateVideoUrl(@PathVariable @Valid @NotNull(message = "Slot cannot be empty") Integer slot,
+    protected ResponseEntity<byte[]> generateVideoUrl(@PathVariable @Valid @NotNull(message = "Slot cannot be empty") Integer slot,
                                       @Parameter(description = "resolution of the video required") @RequestParam(required = false, defaultValue = "") String resolution,
                                       @Parameter(description = "video codec of the video required") @RequestParam(required = false, defaultValue = "") String videoCodec,
                                       @Parameter(description = "squarePixel of the video") @RequestParam(required = false, defaultValue = "") String squarePixel,
@@ -80,13 +105,16 @@ public class VideoResource {
                                       @Parameter(description = "To identify if https url is required") @RequestParam(required = false, defaultValue = "true") Boolean useSSL,
                                       @Parameter(description = "To identify if internal server url is required")@RequestParam(required = false, defaultValue = "false") Boolean isLocal,
                                       @Parameter(description = "RTSP protocol url required") @RequestParam(required = false, defaultValue = "false") Boolean isRtsp) {
-        String safeResolution = StringEscapeUtils.escapeHtml4(resolution);
-        String safeVideoCodec = StringEscapeUtils.escapeHtml4(videoCodec);
-        String safeSquarePixel = StringEscapeUtils.escapeHtml4(squarePixel);
-        String safeFps = StringEscapeUtils.escapeHtml4(fps);
+        UrlResponseCache.Key key = UrlResponseCache.Key.video(slot, resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
+        return textResponse(urlResponseCache.getOrGenerate(key, () -> {
+            String safeResolution = StringEscapeUtils.escapeHtml4(resolution);
+            String safeVideoCodec = StringEscapeUtils.escapeHtml4(videoCodec);
+            String safeSquarePixel = StringEscapeUtils.escapeHtml4(squarePixel);
+            String safeFps = StringEscapeUtils.escapeHtml4(fps);
 
-        // Use sanitized inputs in video URL generation
-        return videoService.generateVideoUrl(slot, safeResolution, safeVideoCodec, safeSquarePixel, safeFps, useSSL, isLocal, isRtsp);
+            // Use sanitized inputs in video URL generation
+            return videoService.generateVideoUrl(slot, safeResolution, safeVideoCodec, safeSquarePixel, safeFps, useSSL, isLocal, isRtsp);
+        }));
     }
 
     /**
@@ -102,7 +130,7 @@ public class VideoResource {
      *     -- use SSL or not
      * @param isLocal
      *    -- url requested is with internal ip or not
-     * @return String
+     * @return ResponseEntity<byte[]>
      *     -- snapshot url
      * */
     @Operation(summary = "Get snapshot url", description = "Get snapshot url for all video devices for a rack given slot number.")
@@ -113,19 +141,85 @@ public class VideoResource {
             @ApiResponse(responseCode = "400", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
     })
     @GetMapping("/url/snapshot")
-    protected String generateSnapshotUrl(@PathVariable Integer slot,
+    protected ResponseEntity<byte[]> generateSnapshotUrl(@PathVariable Integer slot,
                                       @Parameter(description = "resolution of the video required") @RequestParam(required = false, defaultValue = "704x480") String resolution,
                                       @Parameter(description = "video codec of the video required") @RequestParam(required = false, defaultValue = "") String videoCodec,
                                       @Parameter(description = "squarePixel of the video") @RequestParam(required = false, defaultValue = "") String squarePixel,
                                       @Parameter(description = "To identify if https url is required") @RequestParam(required = false, defaultValue = "true") Boolean useSSL,
                                       @Parameter(description = "To identify if internal server url is required") @RequestParam(required = false, defaultValue = "false") Boolean isLocal) {
 
-        String safeResolution = StringEscapeUtils.escapeHtml4(resolution);
-        String safeVideoCodec = StringEscapeUtils.escapeHtml4(videoCodec);
-        String safeSquarePixel = StringEscapeUtils.escapeHtml4(squarePixel);
+        UrlResponseCache.Key key = UrlResponseCache.Key.snapshot(slot, resolution, videoCodec, squarePixel, useSSL, isLocal);
+        return textResponse(urlResponseCache.getOrGenerate(key, () -> {
+            String safeResolution = StringEscapeUtils.escapeHtml4(resolution);
+            String safeVideoCodec = StringEscapeUtils.escapeHtml4(videoCodec);
+            String safeSquarePixel = StringEscapeUtils.escapeHtml4(squarePixel);
 
-        // Use sanitized parameters to generate the URL
-        return videoService.generateSnapShotUrl(slot, safeResolution, safeVideoCodec, safeSquarePixel, useSSL, isLocal);
+            // Use sanitized parameters to generate the URL
+            return videoService.generateSnapShotUrl(slot, safeResolution, safeVideoCodec, safeSquarePixel, useSSL, isLocal);
+        }));
+    }
+
+    /**
+     * Method to get the snapshot of a given slot. The snapshot is served from the gateway without redirecting the
+     * client to the snapshot url, from the snapshot cache if it is recent enough.
+     *
+     * @param resolution
+     *      -- resolution of the snapshot
+     * @param videoCodec
+     *       -- video codec of the snapshot
+     * @param squarePixel
+     *      -- square pixel of the snapshot
+     * @param maxAge
+     *      -- maximum age in milliseconds of a cached snapshot, 0 for a fresh snapshot
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
+     *     -- snapshot image
+     * */
+    @Operation(summary = "Get snapshot", description = "Get the snapshot image of the video device for a rack given slot number. Snapshots are cached for a short time, the X-Captured-At and X-Snapshot-Age headers tell when the snapshot was captured.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = "image/jpeg" , array = @ArraySchema(schema = @Schema(implementation = Byte.class))) }),
+            @ApiResponse(responseCode = "404", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "400", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "502", description = "Video device did not return a snapshot", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping("/snapshot")
+    protected Mono<ResponseEntity<Flux<DataBuffer>>> getSnapshot(@PathVariable Integer slot,
+                                      @Parameter(description = "resolution of the snapshot required") @RequestParam(required = false, defaultValue = "704x480") String resolution,
+                                      @Parameter(description = "video codec of the snapshot required") @RequestParam(required = false, defaultValue = "") String videoCodec,
+                                      @Parameter(description = "squarePixel of the snapshot") @RequestParam(required = false, defaultValue = "") String squarePixel,
+                                      @Parameter(description = "maximum age in milliseconds of a cached snapshot, 0 for a fresh snapshot") @RequestParam(required = false) Long maxAge) {
+        return snapshotService.getSnapshot(slot, StringEscapeUtils.escapeHtml4(resolution),
+                StringEscapeUtils.escapeHtml4(videoCodec), StringEscapeUtils.escapeHtml4(squarePixel), maxAge != null ? maxAge : Long.MAX_VALUE);
+    }
+
+    /**
+     * Method to get the MJPEG video of a given slot. The video is relayed from a single stream of the video device
+     * shared by all viewers of the slot at the same resolution and frame rate.
+     *
+     * @param resolution
+     *      -- resolution of the video
+     * @param fps
+     *      -- frames per second of the video
+     * @return ResponseEntity<Flux<DataBuffer>>
+     *     -- multipart/x-mixed-replace stream of JPEG frames
+     * */
+    @Operation(summary = "Get MJPEG video", description = "Get the MJPEG video of the video device for a rack given slot number. Viewers of a slot at the same resolution and frame rate share a single stream of the video device, a viewer which can not keep up skips frames.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "operation successful",
+                    content = { @Content(mediaType = "multipart/x-mixed-replace" , array = @ArraySchema(schema = @Schema(implementation = Byte.class))) }),
+            @ApiResponse(responseCode = "404", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "400", description = "Video devices not found", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))}),
+            @ApiResponse(responseCode = "502", description = "Video device did not return an MJPEG stream", content = { @Content(mediaType = "text/plain", schema = @Schema(implementation = String.class))})
+    })
+    @GetMapping("/mjpg/video.mjpg")
+    protected ResponseEntity<Flux<DataBuffer>> getVideo(@PathVariable Integer slot,
+                                      @Parameter(description = "resolution of the video required") @RequestParam(required = false, defaultValue = "") String resolution,
+                                      @Parameter(description = "frames per second of the video") @RequestParam(required = false, defaultValue = "15") String fps) {
+        Flux<DataBuffer> video = mjpegRelayService.stream(slot, StringEscapeUtils.escapeHtml4(resolution), StringEscapeUtils.escapeHtml4(fps));
+        return ResponseEntity.ok()
+                .contentType(MjpegRelayService.CONTENT_TYPE)
+                .cacheControl(CacheControl.noStore())
+                .body(video);
     }
 
     /**
@@ -21,6 +21,7 @@ package com.cats.gateway.video.service;
 import com.cats.gateway.slotmapping.model.Device;
 import com.cats.gateway.slotmapping.model.SlotToPortMappings;
 import com.cats.gateway.slotmapping.service.SlotMappingService;
+import com.cats.gateway.video.SlotRoute;
 import com.cats.gateway.video.VideoDevice;
 import com.cats.gateway.video.VideoDeviceFactory;
 import com.cats.gateway.exceptions.SlotMappingException;
@@ -32,7 +33,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -63,20 +63,30 @@ public class AbstractGatewayService {
     protected static final String API_REGEX = "/video/rest/(.*)/slot/([0-9]+)/(.*)";
 
     /**
-     * Method to get the mappings corresponding to a slot.
+     * Method to resolve the precompiled route of a slot.
      *
      * @param slot
      *      -- Slot number
-     * @return mappings
-     *      -- An array of mappings.
+     * @return SlotRoute
+     *      -- route of the slot with a configured video device
      * */
-    protected String[] getMappings(Integer slot) {
-        String mappings = slotMappingService.getMapping(slot.toString());
-        if (mappings == null) {
-            throw new SlotMappingException(HttpStatus.NOT_FOUND, "Mappings not found for the slot " + slot);
+    protected SlotRoute getRoute(Integer slot) {
+        SlotRoute route = videoDeviceFactory.getRoutingTable().route(slot);
+        if (route == null) {
+            throw new SlotMappingException(HttpStatus.NOT_FOUND, "Slot " + slot + " is not mapped");
         }
+        log.debug("Device information for the slot {}: {}", slot, route.device());
 
-        return mappings.split(":");
+        if (route.device() == null) {
+            log.info("video device is not configured for the slot {}", slot);
+            throw new VideoGatewayException(HttpStatus.BAD_REQUEST, "Video device not configured");
+        }
+
+        if (route.videoDevice() == null) {
+            throw new VideoGatewayException(HttpStatus.BAD_REQUEST, "Video device factory could not be initialised");
+        }
+
+        return route;
     }
 
     /**
@@ -86,15 +96,11 @@ public class AbstractGatewayService {
      *      -- Slot number
      * */
     protected Device getDeviceBySlot(Integer slot) {
-
-        String[] deviceAndPort = getMappings(slot);
-
-        List<Device> deviceList = slotMappingService.getVideoDevices();
-
-        return deviceList.stream().filter(
-                device -> device.getId().equals(Integer.parseInt(deviceAndPort[0]))
-        ).findFirst().orElse(null);
-
+        SlotRoute route = videoDeviceFactory.getRoutingTable().route(slot);
+        if (route == null) {
+            throw new SlotMappingException(HttpStatus.NOT_FOUND, "Slot " + slot + " is not mapped");
+        }
+        return route.device();
     }
 
     /**
@@ -114,21 +120,7 @@ public class AbstractGatewayService {
      *      -- Slot number.
      * */
     protected VideoDevice getVideoDevice(Integer slot) {
-        Device device = getDeviceBySlot(slot);
-        log.info("Device information for the slot {}: {}", slot, device);
-
-        if (device == null) {
-            log.info("video device is not configured for the slot {}", slot);
-            throw new VideoGatewayException(HttpStatus.BAD_REQUEST, "Video device not configured");
-        }
-
-        VideoDevice videoDevice = getVideoDevice(device);
-
-        if (null == videoDevice) {
-            throw new VideoGatewayException(HttpStatus.BAD_REQUEST, "Video device factory could not be initialised");
-        }
-
-        return videoDevice;
+        return getRoute(slot).videoDevice();
     }
 
     /***
@@ -0,0 +1,286 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.SlotRoute;
+import com.cats.gateway.video.SlotRoutingTable;
+import com.cats.gateway.video.VideoDeviceClients;
+import com.cats.gateway.video.mjpeg.MjpegParser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/***
+ * Service class to relay the MJPEG streams of the video devices. A single stream is opened per slot, resolution and
+ * frame rate, whatever the number of its viewers, and its frames are broadcast to all of them without being copied.
+ * Every viewer buffers a few frames and drops the oldest ones when it falls behind, so that a slow viewer does not
+ * hold back the others. The stream is closed once its last viewer has left. Relays are created, joined and closed
+ * within an atomic update of their slot, so that a viewer never joins a relay which is being closed.
+ *
+ * */
+@Service
+@Slf4j
+public class MjpegRelayService extends AbstractGatewayService {
+
+    private static final String BOUNDARY = "cats-mjpeg-frame";
+
+    public static final MediaType CONTENT_TYPE = MediaType.parseMediaType("multipart/x-mixed-replace;boundary=" + BOUNDARY);
+
+    private static final byte[] PART_END = "\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Autowired
+    private VideoDeviceClients videoDeviceClients;
+
+    @Autowired
+    private DeviceCircuitBreakers deviceCircuitBreakers;
+
+    @Value("${video.mjpeg.max-frame-size:4194304}")
+    private int maxFrameSize;
+
+    @Value("${video.mjpeg.relay.buffered-frames:2}")
+    private int bufferedFrames;
+
+    @Value("${video.mjpeg.relay.linger:0}")
+    private long linger;
+
+    private final Map<RelayKey, Relay> relays = new ConcurrentHashMap<>();
+
+    private record RelayKey(int slot, String resolution, String fps) {
+    }
+
+    private record Connection(SlotRoute route, Sinks.One<Boolean> restart) {
+    }
+
+    /**
+     * Method to get the frames of the MJPEG stream of a slot. The stream is shared with all other subscribers to the
+     * same slot, resolution and frame rate.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param resolution
+     *      -- resolution of the stream, default resolution of the video device if empty
+     * @param fps
+     *      -- frames per second of the stream
+     * @return Flux<DataBuffer>
+     *      -- JPEG frames of the stream, to be released by the subscriber. Fails if the stream fails or ends
+     */
+    public Flux<DataBuffer> frames(int slot, String resolution, String fps) {
+        getRoute(slot);
+        RelayKey key = new RelayKey(slot, resolution, fps);
+        return Flux.defer(() -> {
+            Relay relay = join(key);
+            return relay.subscribe().doFinally(signal -> leave(relay));
+        });
+    }
+
+    /**
+     * Joins the open relay of a stream as a viewer, replacing a closed relay by a new one.
+     */
+    private Relay join(RelayKey key) {
+        return relays.compute(key, (k, relay) -> {
+            if (relay == null || relay.closed) {
+                relay = new Relay(k);
+            }
+            relay.viewers++;
+            return relay;
+        });
+    }
+
+    /**
+     * Leaves a relay as a viewer. The relay is closed once its last viewer has left, or once it has been left for the
+     * linger time, its stream is then closed by the last unsubscription from the stream.
+     */
+    private void leave(Relay relay) {
+        relays.computeIfPresent(relay.key, (key, current) -> --relay.viewers == 0 && linger <= 0 ? close(current, relay) : current);
+        if (linger > 0) {
+            Mono.delay(Duration.ofMillis(linger))
+                    .subscribe(tick -> relays.computeIfPresent(relay.key, (key, current) -> relay.viewers == 0 ? close(current, relay) : current));
+        }
+    }
+
+    private static Relay close(Relay current, Relay relay) {
+        if (current != relay) {
+            return current;
+        }
+        relay.closed = true;
+        return null;
+    }
+
+    /**
+     * Method to get the MJPEG stream of a slot, as a multipart/x-mixed-replace body of content type
+     * {@link #CONTENT_TYPE}.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param resolution
+     *      -- resolution of the stream, default resolution of the video device if empty
+     * @param fps
+     *      -- frames per second of the stream
+     * @return Flux<DataBuffer>
+     *      -- parts of the multipart body, one per frame
+     */
+    public Flux<DataBuffer> stream(int slot, String resolution, String fps) {
+        return frames(slot, resolution, fps)
+                .map(frame -> {
+                    DataBufferFactory bufferFactory = frame.factory();
+                    byte[] headers = ("--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: "
+                            + frame.readableByteCount() + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                    return bufferFactory.join(List.of(bufferFactory.wrap(headers), frame, bufferFactory.wrap(PART_END)));
+                });
+    }
+
+    /**
+     * Method to reopen the streams of the slots whose mapping was changed by a mapping update. Viewers of the slots
+     * keep their subscription and receive the frames of the new stream.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        // the routing table is rebuilt by its own listener, which may not have been invoked yet
+        videoDeviceFactory.onMappingsChanged(snapshot);
+        SlotRoutingTable routingTable = videoDeviceFactory.getRoutingTable();
+        relays.values().forEach(relay -> {
+            Connection connection = relay.connection;
+            SlotRoute route = routingTable.route(relay.key.slot());
+            if (connection != null && (route == null || !Objects.equals(route.mapping(), connection.route().mapping())
+                    || !Objects.equals(route.device(), connection.route().device()))) {
+                log.info("Mapping of relayed slot {} changed, reopening its stream", relay.key.slot());
+                connection.restart().tryEmitValue(true);
+            }
+        });
+    }
+
+    private final class Relay {
+
+        private final RelayKey key;
+
+        private final Sinks.Many<DataBuffer> broadcast = Sinks.many().multicast().directBestEffort();
+
+        private final Flux<DataBuffer> upstream;
+
+        private volatile Connection connection;
+
+        /**
+         * Number of viewers, and whether the relay can no longer be joined, both only updated within an atomic update
+         * of the relay in the relays.
+         */
+        private int viewers;
+
+        private boolean closed;
+
+        private Relay(RelayKey key) {
+            this.key = key;
+            // frames are broadcast through the sink, so that every frame has been handed to all viewers when it is
+            // released; the shared upstream only carries the termination of the stream, and does not take over the
+            // context, and so the discard hooks, of the viewer that opened it
+            this.upstream = Flux.defer(this::connect)
+                    .repeat()
+                    .doFinally(signal -> connection = null)
+                    .cast(DataBuffer.class)
+                    .contextWrite(context -> Context.empty())
+                    .publish()
+                    .refCount(1, Duration.ofMillis(linger));
+        }
+
+        private Flux<DataBuffer> subscribe() {
+            Flux<DataBuffer> frames = broadcast.asFlux()
+                    .map(MjpegRelayService::share)
+                    .onBackpressureBuffer(Math.max(1, bufferedFrames), BufferOverflowStrategy.DROP_OLDEST);
+            return Flux.merge(1, frames, upstream)
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        }
+
+        private Mono<Void> connect() {
+            SlotRoute route = getRoute(key.slot());
+            Sinks.One<Boolean> restart = Sinks.one();
+            connection = new Connection(route, restart);
+            URI uri = URI.create(route.videoDevice().getVideoUrl(route.outlet(), key.resolution(), "", "", key.fps(), false, true, false));
+            log.debug("Relaying the stream of slot {} from {}", key.slot(), uri);
+            return deviceCircuitBreakers.protect(route.device(), videoDeviceClients.forDevice(route.device()).get()
+                            .uri(uri)
+                            .accept(MediaType.ALL)
+                            .retrieve()
+                            .toEntityFlux(DataBuffer.class))
+                    .onErrorMap(WebClientResponseException.class, ex -> new VideoGatewayException(HttpStatus.BAD_GATEWAY,
+                            "Video device of slot " + key.slot() + " responded with " + ex.getStatusCode().value(), ex))
+                    .onErrorMap(WebClientRequestException.class, ex -> new VideoGatewayException(HttpStatus.BAD_GATEWAY,
+                            "Video device of slot " + key.slot() + " is not reachable", ex))
+                    .flatMapMany(response -> {
+                        MediaType contentType = response.getHeaders().getContentType();
+                        if (contentType == null || !"multipart".equalsIgnoreCase(contentType.getType())) {
+                            return response.getBody().doOnNext(DataBufferUtils::release).thenMany(Mono.error(
+                                    new VideoGatewayException(HttpStatus.BAD_GATEWAY, "Video stream of slot " + key.slot() + " is not MJPEG but " + contentType)));
+                        }
+                        return MjpegParser.frames(response.getBody(), contentType, maxFrameSize);
+                    })
+                    .doOnNext(frame -> {
+                        try {
+                            broadcast.tryEmitNext(frame);
+                        } finally {
+                            DataBufferUtils.release(frame);
+                        }
+                    })
+                    .concatWith(Mono.error(() -> new VideoGatewayException(HttpStatus.BAD_GATEWAY, "Video stream of slot " + key.slot() + " ended")))
+                    .takeUntilOther(restart.asMono())
+                    .then();
+        }
+    }
+
+    /**
+     * Creates a view of a frame for a viewer, sharing the memory of the frame and with its own read position.
+     */
+    private static DataBuffer share(DataBuffer frame) {
+        if (frame instanceof NettyDataBuffer nettyFrame) {
+            return nettyFrame.factory().wrap(nettyFrame.getNativeBuffer().retainedDuplicate());
+        }
+        // buffers of other factories are not reference counted, they are copied
+        ByteBuffer copy = ByteBuffer.allocate(frame.readableByteCount());
+        frame.toByteBuffer(frame.readPosition(), copy, 0, copy.capacity());
+        return frame.factory().wrap(copy);
+    }
+}
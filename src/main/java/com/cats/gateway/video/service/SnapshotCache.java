@@ -0,0 +1,350 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.video.VideoDeviceFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Byte budgeted cache of snapshots. Snapshots are held in the pooled buffers they were received in for a short time to
+ * live and served as views of the cached buffer, the least recently used snapshots are evicted once the byte budget is
+ * exceeded. Unlike a snapshot passed through from the video device, a cached snapshot is received in full before it is
+ * served, and a snapshot larger than the byte budget fails.
+ * Concurrent misses of a snapshot share a single fetch from the video device. Entries are tagged with the version of
+ * the slot routing table they were fetched with, and the cache is cleared whenever a new mapping version is published.
+ */
+@Slf4j
+@Component
+public class SnapshotCache {
+
+    /**
+     * Key of a cached snapshot, built from the request parameters of the snapshot.
+     */
+    public record Key(int slot, String resolution, String videoCodec, String squarePixel) {
+    }
+
+    /**
+     * Snapshot served by the cache.
+     *
+     * @param body
+     *      -- view of the snapshot, to be released by the consumer
+     * @param contentType
+     *      -- content type of the snapshot
+     * @param capturedAt
+     *      -- time at which the snapshot was received from the video device
+     * @param ageMillis
+     *      -- time in milliseconds since the snapshot was received from the video device
+     */
+    public record Snapshot(DataBuffer body, MediaType contentType, Instant capturedAt, long ageMillis) {
+    }
+
+    /**
+     * Snapshot fetched into an off-heap buffer. The fetch which created the entry and the cache each hold the entry,
+     * and the buffer is released with the last holder. Views are only opened while holding the entry, so the buffer is
+     * never touched once it has been released.
+     */
+    private static final class Entry {
+
+        private final long version;
+
+        private final ByteBuf content;
+
+        private final int size;
+
+        private final MediaType contentType;
+
+        private final Instant capturedAt;
+
+        private final long capturedNanos;
+
+        private final AtomicInteger holders = new AtomicInteger(1);
+
+        private Entry(long version, ByteBuf content, MediaType contentType, Instant capturedAt, long capturedNanos) {
+            this.version = version;
+            this.content = content;
+            this.size = content.readableBytes();
+            this.contentType = contentType;
+            this.capturedAt = capturedAt;
+            this.capturedNanos = capturedNanos;
+        }
+
+        /**
+         * Holds the entry, false if its buffer has already been released.
+         */
+        private boolean acquire() {
+            int count = holders.get();
+            while (count > 0) {
+                if (holders.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+                count = holders.get();
+            }
+            return false;
+        }
+
+        private void release() {
+            if (holders.decrementAndGet() == 0) {
+                content.release();
+            }
+        }
+    }
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    @Autowired
+    private VideoDeviceFactory videoDeviceFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${video.snapshot.cache.ttl:500}")
+    private long ttl;
+
+    @Value("${video.snapshot.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+
+    private final Map<Key, Mono<Entry>> fetches = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder joins = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("video.snapshot.cache.hits", hits, LongAdder::sum)
+                .description("Snapshots served from the cache").register(meterRegistry);
+        FunctionCounter.builder("video.snapshot.cache.misses", misses, LongAdder::sum)
+                .description("Snapshots which had to be fetched from the video device").register(meterRegistry);
+        FunctionCounter.builder("video.snapshot.cache.joins", joins, LongAdder::sum)
+                .description("Snapshots served by joining a fetch in flight").register(meterRegistry);
+        FunctionCounter.builder("video.snapshot.cache.evictions", evictions, LongAdder::sum)
+                .description("Snapshots evicted to stay within the byte budget").register(meterRegistry);
+        Gauge.builder("video.snapshot.cache.bytes", this, SnapshotCache::getBytes)
+                .description("Bytes of cached snapshots").baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Method to check whether snapshots are cached.
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return ttl > 0 && maxBytes > 0;
+    }
+
+    /**
+     * Method to get a snapshot from the cache, fetching it on a miss. A miss joins the fetch of the same snapshot in
+     * flight unless a fresh snapshot is requested.
+     *
+     * @param key
+     *      -- cache key
+     * @param maxAge
+     *      -- maximum age in milliseconds of a cached snapshot, limited to the time to live. 0 requests a fresh snapshot
+     * @param fetcher
+     *      -- fetches the snapshot from the video device on a miss
+     * @return Mono<Snapshot>
+     *      -- cached or fetched snapshot
+     */
+    public Mono<Snapshot> get(Key key, long maxAge, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher) {
+        return Mono.defer(() -> {
+            long version = videoDeviceFactory.getRoutingTable().version();
+            Snapshot cached = maxAge > 0 ? lookup(key, version, Math.min(maxAge, ttl)) : null;
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+            if (maxAge <= 0) {
+                misses.increment();
+                return fetch(key, version, fetcher).mapNotNull(SnapshotCache::open);
+            }
+            AtomicReference<Mono<Entry>> created = new AtomicReference<>();
+            created.set(fetch(key, version, fetcher)
+                    .doFinally(signal -> fetches.remove(key, created.get()))
+                    .cache());
+            Mono<Entry> fetch = fetches.putIfAbsent(key, created.get());
+            if (fetch == null) {
+                misses.increment();
+                fetch = created.get();
+            } else {
+                joins.increment();
+            }
+            // a fetch which completed before it could be joined has released its snapshot unless it was cached
+            return fetch.mapNotNull(SnapshotCache::open)
+                    .switchIfEmpty(Mono.defer(() -> fetch(key, version, fetcher).mapNotNull(SnapshotCache::open)));
+        });
+    }
+
+    /**
+     * Method to get the number of bytes of the cached snapshots.
+     *
+     * @return long
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Method to drop all cached snapshots once a new mapping version is published.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        clear();
+        log.debug("Snapshot cache cleared for mapping version {}", snapshot.version());
+    }
+
+    /**
+     * Method to release all cached snapshots on shutdown.
+     */
+    @PreDestroy
+    public synchronized void clear() {
+        entries.values().forEach(Entry::release);
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Fetches a snapshot, joining the buffers received from the video device without copying them. A snapshot larger
+     * than the byte budget fails as soon as the budget is exceeded. The fetch holds the emitted entry until the entry
+     * has been emitted, the cache holds the entry on its own.
+     */
+    private Mono<Entry> fetch(Key key, long version, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher) {
+        int maxByteCount = (int) Math.min(maxBytes, Integer.MAX_VALUE);
+        return Mono.defer(fetcher)
+                .flatMap(response -> {
+                    MediaType contentType = response.getHeaders().getContentType() != null ? response.getHeaders().getContentType() : MediaType.IMAGE_JPEG;
+                    return DataBufferUtils.join(response.getBody(), maxByteCount)
+                            .onErrorMap(DataBufferLimitException.class, e -> new VideoGatewayException(HttpStatus.BAD_GATEWAY,
+                                    "Snapshot of slot " + key.slot() + " exceeds the snapshot cache budget of " + maxByteCount + " bytes"))
+                            .map(joined -> {
+                                Entry entry = new Entry(version, NettyDataBufferFactory.toByteBuf(joined), contentType, Instant.now(), System.nanoTime());
+                                store(key, entry);
+                                return entry;
+                            });
+                })
+                .doOnDiscard(Entry.class, Entry::release)
+                .flatMap(entry -> Mono.just(entry).doFinally(signal -> entry.release()));
+    }
+
+    private synchronized Snapshot lookup(Key key, long version, long maxAge) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.version != version || age(entry) > ttl) {
+            remove(key);
+            return null;
+        }
+        return age(entry) <= maxAge ? open(entry) : null;
+    }
+
+    private synchronized void store(Key key, Entry entry) {
+        if (entry.version != videoDeviceFactory.getRoutingTable().version() || entry.size > maxBytes || !entry.acquire()) {
+            return;
+        }
+        remove(key);
+        entries.put(key, entry);
+        bytes += entry.size;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> cached = iterator.next();
+            boolean expired = age(cached.getValue()) > ttl;
+            if (!expired && bytes <= maxBytes) {
+                continue;
+            }
+            if (!expired) {
+                evictions.increment();
+            }
+            bytes -= cached.getValue().size;
+            cached.getValue().release();
+            iterator.remove();
+        }
+    }
+
+    private void remove(Key key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+            removed.release();
+        }
+    }
+
+    private static long age(Entry entry) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - entry.capturedNanos);
+    }
+
+    /**
+     * Opens a view of the snapshot of an entry, null if the snapshot has already been released. The view holds its own
+     * reference to the buffer, taken while holding the entry.
+     */
+    private static Snapshot open(Entry entry) {
+        if (!entry.acquire()) {
+            return null;
+        }
+        try {
+            DataBuffer body = BUFFER_FACTORY.wrap(entry.content.retainedDuplicate());
+            return new Snapshot(body, entry.contentType, entry.capturedAt, age(entry));
+        } finally {
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.VideoDeviceClients;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/***
+ * Service class to fetch snapshots from the video devices. Snapshots are served from the snapshot cache if it is
+ * enabled, otherwise the snapshot is streamed from the video device to the client as it arrives, without aggregating
+ * the image in memory.
+ *
+ * */
+@Service
+@Slf4j
+public class SnapshotService extends AbstractGatewayService {
+
+    @Autowired
+    private VideoDeviceClients videoDeviceClients;
+
+    @Autowired
+    private DeviceCircuitBreakers deviceCircuitBreakers;
+
+    @Autowired
+    private SnapshotCache snapshotCache;
+
+    /**
+     * Header with the time at which the snapshot was received from the video device.
+     */
+    public static final String CAPTURED_AT_HEADER = "X-Captured-At";
+
+    /**
+     * Header with the time in milliseconds since the snapshot was received from the video device.
+     */
+    public static final String SNAPSHOT_AGE_HEADER = "X-Snapshot-Age";
+
+    /**
+     * Method to get the snapshot of a slot, served from the snapshot cache if it is not older than its time to live.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param resolution
+     *      -- resolution of the snapshot
+     * @param videoCodec
+     *      -- video codec of the snapshot
+     * @param squarePixel
+     *      -- square pixel of the snapshot
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
+     *      -- snapshot with its content type, length, capture time and age
+     * */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getSnapshot(Integer slot, String resolution, String videoCodec, String squarePixel) {
+        return getSnapshot(slot, resolution, videoCodec, squarePixel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Method to get the snapshot of a slot. A cached snapshot is served if it is not older than the given maximum age
+     * and the time to live of the cache, concurrent requests of a snapshot which is not cached share a single request
+     * to the video device.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param resolution
+     *      -- resolution of the snapshot
+     * @param videoCodec
+     *      -- video codec of the snapshot
+     * @param squarePixel
+     *      -- square pixel of the snapshot
+     * @param maxAge
+     *      -- maximum age in milliseconds of the snapshot, 0 for a snapshot fetched for this request
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
+     *      -- snapshot with its content type, length, capture time and age
+     * */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getSnapshot(Integer slot, String resolution, String videoCodec, String squarePixel, long maxAge) {
+        if (!snapshotCache.isEnabled()) {
+            return fetchSnapshot(slot, resolution, videoCodec, squarePixel)
+                    .map(upstream -> {
+                        HttpHeaders headers = new HttpHeaders();
+                        headers.setContentType(upstream.getHeaders().getContentType() != null ? upstream.getHeaders().getContentType() : MediaType.IMAGE_JPEG);
+                        if (upstream.getHeaders().getContentLength() >= 0) {
+                            headers.setContentLength(upstream.getHeaders().getContentLength());
+                        }
+                        headers.setCacheControl("no-store");
+                        headers.set(CAPTURED_AT_HEADER, Instant.now().toString());
+                        headers.set(SNAPSHOT_AGE_HEADER, "0");
+                        return ResponseEntity.ok().headers(headers).body(upstream.getBody());
+                    });
+        }
+        SnapshotCache.Key key = new SnapshotCache.Key(slot, resolution, videoCodec, squarePixel);
+        return snapshotCache.get(key, Math.max(0, maxAge), () -> fetchSnapshot(slot, resolution, videoCodec, squarePixel))
+                .map(snapshot -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(snapshot.contentType());
+                    headers.setContentLength(snapshot.body().readableByteCount());
+                    headers.setCacheControl("no-store");
+                    headers.set(HttpHeaders.AGE, String.valueOf(TimeUnit.MILLISECONDS.toSeconds(snapshot.ageMillis())));
+                    headers.set(CAPTURED_AT_HEADER, snapshot.capturedAt().toString());
+                    headers.set(SNAPSHOT_AGE_HEADER, String.valueOf(snapshot.ageMillis()));
+                    return ResponseEntity.ok().headers(headers).body(body(snapshot.body()));
+                })
+                .doOnDiscard(SnapshotCache.Snapshot.class, snapshot -> DataBufferUtils.release(snapshot.body()));
+    }
+
+    /**
+     * Method to wrap the view of a cached snapshot into a response body. The view is emitted once and released if the
+     * body is cancelled before the view has been written.
+     *
+     * @param view
+     *      -- view of a cached snapshot
+     * @return Flux<DataBuffer>
+     */
+    private static Flux<DataBuffer> body(DataBuffer view) {
+        AtomicReference<DataBuffer> pending = new AtomicReference<>(view);
+        return Mono.fromSupplier(() -> pending.getAndSet(null))
+                .flux()
+                .doOnCancel(() -> DataBufferUtils.release(pending.getAndSet(null)))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Method to fetch the snapshot of a slot from its video device. The slot is resolved in-process and the local
+     * snapshot url of the video device is requested directly. The body is passed through as it is received, cancelling
+     * the returned body cancels the request to the video device.
+     *
+     * @param slot
+     *      -- Slot number
+     * @param resolution
+     *      -- resolution of the snapshot
+     * @param videoCodec
+     *      -- video codec of the snapshot
+     * @param squarePixel
+     *      -- square pixel of the snapshot
+     * @return Mono<ResponseEntity<Flux<DataBuffer>>>
+     *      -- response of the video device
+     * */
+    private Mono<ResponseEntity<Flux<DataBuffer>>> fetchSnapshot(Integer slot, String resolution, String videoCodec, String squarePixel) {
+        return Mono.fromCallable(() -> getRoute(slot))
+                .flatMap(route -> {
+                    URI uri = URI.create(route.videoDevice().getSnapShotUrl(route.outlet(), resolution, videoCodec, squarePixel, false, true));
+                    log.debug("Fetching snapshot of slot {} from {}", slot, uri);
+                    return deviceCircuitBreakers.protect(route.device(), videoDeviceClients.forDevice(route.device()).get()
+                            .uri(uri)
+                            .accept(MediaType.IMAGE_JPEG, MediaType.ALL)
+                            .retrieve()
+                            .toEntityFlux(DataBuffer.class));
+                })
+                .onErrorMap(WebClientResponseException.class, ex -> new VideoGatewayException(HttpStatus.BAD_GATEWAY,
+                        "Video device of slot " + slot + " responded with " + ex.getStatusCode().value(), ex))
+                .onErrorMap(WebClientRequestException.class, ex -> new VideoGatewayException(HttpStatus.BAD_GATEWAY,
+                        "Video device of slot " + slot + " is not reachable", ex));
+    }
+}
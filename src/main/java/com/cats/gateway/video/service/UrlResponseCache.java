@@ -0,0 +1,207 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.video.VideoDeviceFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of generated url responses. Lookups do not take a lock, every entry records when it was last used and
+ * once the bound is exceeded a single thread evicts a batch of the least recently used responses, so the bound is
+ * approximate while an eviction runs. Entries are tagged with the version of the slot routing table they were generated from, so an entry is never served
+ * once the mappings have changed; the cache is also cleared whenever a new mapping version is published.
+ */
+@Slf4j
+@Component
+public class UrlResponseCache {
+
+    /**
+     * Key of a cached url response, built from the raw request parameters.
+     */
+    public record Key(boolean snapshot, Integer slot, String resolution, String videoCodec, String squarePixel,
+                      String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
+
+        public static Key video(Integer slot, String resolution, String videoCodec, String squarePixel, String fps,
+                                Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
+            return new Key(false, slot, resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
+        }
+
+        public static Key snapshot(Integer slot, String resolution, String videoCodec, String squarePixel,
+                                   Boolean useSSL, Boolean isLocal) {
+            return new Key(true, slot, resolution, videoCodec, squarePixel, null, useSSL, isLocal, null);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long version;
+
+        private final byte[] body;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    private record Candidate(Key key, Entry entry, long lastUsed) {
+    }
+
+    @Autowired
+    private VideoDeviceFactory videoDeviceFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${video.url.cache.size:4096}")
+    private int maxEntries;
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("video.url.cache.hits", hits, LongAdder::sum)
+                .description("Url responses served from the cache").register(meterRegistry);
+        FunctionCounter.builder("video.url.cache.misses", misses, LongAdder::sum)
+                .description("Url responses which had to be generated").register(meterRegistry);
+        Gauge.builder("video.url.cache.size", this, UrlResponseCache::size)
+                .description("Number of cached url responses").register(meterRegistry);
+    }
+
+    /**
+     * Method to get a cached url response, generating and caching it on a miss. The routing table version is read
+     * before the url is generated, so an url generated while the mappings change is never cached as current.
+     *
+     * @param key
+     *      -- cache key
+     * @param generator
+     *      -- generates the url on a cache miss
+     * @return byte[]
+     *      -- response body of the url
+     */
+    public byte[] getOrGenerate(Key key, Supplier<String> generator) {
+        long version = videoDeviceFactory.getRoutingTable().version();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            entry.lastUsed = System.nanoTime();
+            hits.increment();
+            return entry.body;
+        }
+        misses.increment();
+
+        byte[] body = generator.get().getBytes(StandardCharsets.UTF_8);
+        entries.put(key, new Entry(version, body));
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+        return body;
+    }
+
+    /**
+     * Evicts the least recently used responses beyond the bound, and a sixteenth of the bound more so that the next
+     * misses do not evict again. Threads finding an eviction in progress leave it to the evicting thread.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int count = entries.size() - maxEntries;
+            if (count <= 0) {
+                return;
+            }
+            count += maxEntries / 16;
+            // the use times are read once, as they keep changing while the candidates are sorted
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry, entry.lastUsed)));
+            candidates.sort(Comparator.comparingLong(Candidate::lastUsed));
+            for (int i = 0; i < count && i < candidates.size(); i++) {
+                entries.remove(candidates.get(i).key(), candidates.get(i).entry());
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Method to get the number of cached url responses.
+     *
+     * @return int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Method to get the number of cache hits.
+     *
+     * @return long
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Method to get the number of cache misses.
+     *
+     * @return long
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Method to drop all cached urls once a new mapping version is published.
+     *
+     * @param snapshot
+     *      -- published mapping snapshot
+     */
+    @EventListener
+    public void onMappingsChanged(SlotMappingSnapshot snapshot) {
+        entries.clear();
+        log.debug("Url response cache cleared for mapping version {}", snapshot.version());
+    }
+}
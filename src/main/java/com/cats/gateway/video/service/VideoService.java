@@ -18,10 +18,14 @@ package com.cats.gateway.video.service;
  * SPDX-License-Identifier: Apache-2.0
  */
 
+import com.cats.gateway.video.SlotRoute;
 import com.cats.gateway.video.VideoDevice;
+import com.cats.gateway.video.model.SlotUrls;
 import com.cats.gateway.video.service.AbstractGatewayService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -58,11 +62,9 @@ public class VideoService extends AbstractGatewayService {
      * */
     public String generateSnapShotUrl(Integer slot, String resolution, String videoCodec, String squarePixel,  Boolean useSSL, Boolean isLocal) {
 
-        VideoDevice videoDevice = getVideoDevice(slot);
+        SlotRoute route = getRoute(slot);
 
-        String[] deviceAndPort = getMappings(slot);
-
-        return videoDevice.getSnapShotUrl(Integer.parseInt(deviceAndPort[1]), resolution, videoCodec, squarePixel, useSSL, isLocal);
+        return route.videoDevice().getSnapShotUrl(route.outlet(), resolution, videoCodec, squarePixel, useSSL, isLocal);
     }
 
     /**
@@ -85,11 +87,9 @@ public class VideoService extends AbstractGatewayService {
      * */
     public String generateVideoUrl(Integer slot, String resolution, String videoCodec, String squarePixel, String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp) {
 
-        VideoDevice videoDevice = getVideoDevice(slot);
-
-        String[] deviceAndPort = getMappings(slot);
+        SlotRoute route = getRoute(slot);
 
-        return videoDevice.getVideoUrl(Integer.parseInt(deviceAndPort[1]), resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
+        return route.videoDevice().getVideoUrl(route.outlet(), resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp);
     }
 
     /**
@@ -102,11 +102,51 @@ public class VideoService extends AbstractGatewayService {
      * */
     public List<String> getSupportedResolutions(Integer slot) {
 
-        VideoDevice videoDevice = getVideoDevice(slot);
+        SlotRoute route = getRoute(slot);
 
-        String[] deviceAndPort = getMappings(slot);
+        return route.videoDevice().getSupportedResolutions(route.outlet());
+    }
 
-        return videoDevice.getSupportedResolutions(Integer.parseInt(deviceAndPort[1]));
+    /**
+     * Method to generate the video, snapshot and rtsp urls of several slots. Errors of individual slots, such as
+     * unmapped slots or unconfigured devices, are reported in the result of the slot instead of failing the batch.
+     *
+     * @param slots
+     *      -- slots to generate the urls for, all mapped slots if null.
+     * @param resolution
+     *      -- video resolution, the snapshot defaults to 704x480 if empty.
+     * @param videoCodec
+     *      -- video codec information.
+     * @param squarePixel
+     *      -- square pixel information.
+     * @param fps
+     *      -- frames per second of the video.
+     * @param useSSL
+     *      -- flag to enable ssl urls.
+     * @param isLocal
+     *      -- flag to enable local urls.
+     * @return Flux<SlotUrls>
+     *      -- urls of every slot in the given order.
+     * */
+    public Flux<SlotUrls> generateSlotUrls(List<Integer> slots, String resolution, String videoCodec, String squarePixel, String fps, Boolean useSSL, Boolean isLocal) {
+        List<Integer> selectedSlots = slots != null ? slots : videoDeviceFactory.getRoutingTable().slots();
+        String snapshotResolution = resolution == null || resolution.isBlank() ? "704x480" : resolution;
+
+        return Flux.fromIterable(selectedSlots).map(slot -> {
+            SlotUrls slotUrls = new SlotUrls();
+            slotUrls.setSlot(slot);
+            try {
+                SlotRoute route = getRoute(slot);
+                VideoDevice videoDevice = route.videoDevice();
+                slotUrls.setVideoUrl(videoDevice.getVideoUrl(route.outlet(), resolution, videoCodec, squarePixel, fps, useSSL, isLocal, false));
+                slotUrls.setSnapshotUrl(videoDevice.getSnapShotUrl(route.outlet(), snapshotResolution, videoCodec, squarePixel, useSSL, isLocal));
+                slotUrls.setRtspUrl(videoDevice.getVideoUrl(route.outlet(), resolution, videoCodec, squarePixel, fps, useSSL, isLocal, true));
+            } catch (ResponseStatusException ex) {
+                slotUrls.setStatus(ex.getStatusCode().value());
+                slotUrls.setError(ex.getReason());
+            }
+            return slotUrls;
+        });
     }
 
-}
\ No newline at end of file
+}
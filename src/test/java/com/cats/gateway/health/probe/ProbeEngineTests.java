@@ -0,0 +1,265 @@
+package com.cats.gateway.health.probe;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.VideoType;
+import com.cats.gateway.video.AxisVideoDevice;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.HanwhaVideoDevice;
+import com.cats.gateway.video.VideoDeviceClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Probes of the probe engine with stub strategies: selection of the strategy by vendor and probe mode, errors and
+ * timeouts reported as unhealthy outlets, the retries of failed attempts and the attempts they took.
+ */
+class ProbeEngineTests {
+
+    private final ProbeEngine probeEngine = new ProbeEngine(2);
+
+    private final DeviceCircuitBreakers deviceCircuitBreakers = new DeviceCircuitBreakers();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "failureThreshold", 10);
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "openDuration", 60000L);
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "halfOpenCalls", 1);
+        ReflectionTestUtils.setField(probeEngine, "videoDeviceClients", mock(VideoDeviceClients.class));
+        ReflectionTestUtils.setField(probeEngine, "deviceCircuitBreakers", deviceCircuitBreakers);
+        ReflectionTestUtils.setField(probeEngine, "retryBackoff", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        probeEngine.close();
+    }
+
+    @Test
+    void picksStrategyByVendorAndMode() {
+        StubStrategy vapix = new StubStrategy("vapix", (mode, type) -> mode != ProbeMode.RTSP && type == VideoType.AXIS_P7216, 0, attempt -> healthy());
+        StubStrategy sunapi = new StubStrategy("sunapi", (mode, type) -> mode != ProbeMode.RTSP && type == VideoType.HANWHA_SPE_1620, 0, attempt -> healthy());
+        StubStrategy rtsp = new StubStrategy("rtsp", (mode, type) -> mode == ProbeMode.RTSP, 0, attempt -> healthy());
+        strategies(vapix, sunapi, rtsp);
+
+        assertEquals("vapix", probe(axis(), ProbeMode.LIGHT).getMetadata().get("strategy"));
+        assertEquals("vapix", probe(axis(), ProbeMode.FULL).getMetadata().get("strategy"));
+        assertEquals("sunapi", probe(hanwha(), ProbeMode.LIGHT).getMetadata().get("strategy"));
+        assertEquals("rtsp", probe(hanwha(), ProbeMode.RTSP).getMetadata().get("strategy"));
+        assertEquals("full", probe(axis(), ProbeMode.FULL).getMetadata().get("probe"));
+
+        strategies(vapix);
+        HealthReport report = probe(hanwha(), ProbeMode.LIGHT);
+        assertFalse(report.getIsHealthy());
+        assertEquals("No light probe available for Hanwha.SPE-1620", report.getRemarks());
+    }
+
+    @Test
+    void reportsUnconfiguredAndUnsupportedDevicesAsUnhealthy() {
+        strategies(new StubStrategy("vapix", (mode, type) -> true, 0, attempt -> healthy()));
+
+        HealthReport unconfigured = probe(new ProbeTarget(1, null, null, 1), ProbeMode.LIGHT);
+        assertFalse(unconfigured.getIsHealthy());
+        assertEquals("Video device not configured", unconfigured.getRemarks());
+
+        HealthReport unsupported = probe(new ProbeTarget(1, device(3, "Unknown.Type"), null, 1), ProbeMode.LIGHT);
+        assertFalse(unsupported.getIsHealthy());
+        assertEquals("Video device type Unknown.Type is not supported", unsupported.getRemarks());
+    }
+
+    @Test
+    void reportsFailedProbeAsUnhealthyOnceRetriesAreExhausted() {
+        StubStrategy vapix = new StubStrategy("vapix", (mode, type) -> true, 2, attempt -> Mono.error(new IOException("Connection refused")));
+        strategies(vapix);
+
+        HealthReport report = probe(axis(), ProbeMode.LIGHT);
+
+        assertFalse(report.getIsHealthy());
+        assertEquals("Connection refused", report.getRemarks());
+        assertEquals("3", report.getMetadata().get("attempts"));
+        assertEquals("vapix", report.getMetadata().get("strategy"));
+        assertEquals(3, vapix.attempts.get());
+    }
+
+    @Test
+    void reportsTimedOutProbeAsUnhealthy() {
+        strategies(new StubStrategy("vapix", (mode, type) -> true, 0, attempt -> Mono.never()));
+
+        HealthReport report = probe(axis(), ProbeMode.LIGHT);
+
+        assertFalse(report.getIsHealthy());
+        assertEquals("Probe timed out after " + StubStrategy.TIMEOUT.toMillis() + " ms", report.getRemarks());
+        assertEquals("1", report.getMetadata().get("attempts"));
+    }
+
+    @Test
+    void doesNotRetryStatusErrors() {
+        StubStrategy vapix = new StubStrategy("vapix", (mode, type) -> true, 3,
+                attempt -> Mono.error(new VideoGatewayException(HttpStatus.BAD_REQUEST, "Outlet 9 does not exist")));
+        strategies(vapix);
+
+        HealthReport report = probe(axis(), ProbeMode.LIGHT);
+
+        assertFalse(report.getIsHealthy());
+        assertEquals("Outlet 9 does not exist", report.getRemarks());
+        assertEquals("1", report.getMetadata().get("attempts"));
+        assertEquals(1, vapix.attempts.get());
+    }
+
+    @Test
+    void doesNotRetryOpenBreaker() {
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "failureThreshold", 1);
+        StubStrategy vapix = new StubStrategy("vapix", (mode, type) -> true, 3, attempt -> Mono.error(new IOException("Connection refused")));
+        strategies(vapix);
+        probe(axis(), ProbeMode.LIGHT);
+        assertEquals(DeviceCircuitBreakers.State.OPEN, deviceCircuitBreakers.getState(1));
+        int attempts = vapix.attempts.get();
+
+        HealthReport report = probe(axis(), ProbeMode.LIGHT);
+
+        assertFalse(report.getIsHealthy());
+        assertEquals("1", report.getMetadata().get("attempts"));
+        assertEquals(attempts, vapix.attempts.get());
+    }
+
+    @Test
+    void reportsAttemptsOfRetriedProbe() {
+        StubStrategy vapix = new StubStrategy("vapix", (mode, type) -> true, 2,
+                attempt -> attempt == 1 ? Mono.error(new IOException("Connection reset")) : healthy());
+        strategies(vapix);
+
+        HealthReport report = probe(axis(), ProbeMode.LIGHT);
+
+        assertTrue(report.getIsHealthy());
+        assertEquals("2", report.getMetadata().get("attempts"));
+        assertEquals("2", report.getMetadata().get("attempt"));
+    }
+
+    private void strategies(ProbeStrategy... strategies) {
+        ReflectionTestUtils.setField(probeEngine, "strategies", List.of(strategies));
+    }
+
+    private HealthReport probe(ProbeTarget target, ProbeMode probeMode) {
+        return probeEngine.probe(target, probeMode).block(Duration.ofSeconds(5));
+    }
+
+    private static ProbeTarget axis() {
+        return new ProbeTarget(1, device(1, "Axis.P7216"),
+                new AxisVideoDevice("127.0.0.1", "80", "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null), 1);
+    }
+
+    private static ProbeTarget hanwha() {
+        return new ProbeTarget(2, device(2, "Hanwha.SPE-1620"),
+                new HanwhaVideoDevice("127.0.0.2", "80", "28002", "28402", "25502", "rack.example", "10.0.0.1", false, null), 1);
+    }
+
+    private static Device device(int id, String type) {
+        Device device = new Device();
+        device.setId(id);
+        device.setInternalIp("127.0.0." + id);
+        device.setType(type);
+        device.setMaxPort(16);
+        return device;
+    }
+
+    private static Mono<Boolean> healthy() {
+        return Mono.just(true);
+    }
+
+    /**
+     * Strategy whose attempts are answered by a function of the attempt number, with a healthy report for true.
+     */
+    private static final class StubStrategy implements ProbeStrategy {
+
+        private static final Duration TIMEOUT = Duration.ofMillis(50);
+
+        private final String name;
+
+        private final BiPredicate<ProbeMode, VideoType> supports;
+
+        private final int retries;
+
+        private final IntFunction<Mono<Boolean>> answers;
+
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        private StubStrategy(String name, BiPredicate<ProbeMode, VideoType> supports, int retries, IntFunction<Mono<Boolean>> answers) {
+            this.name = name;
+            this.supports = supports;
+            this.retries = retries;
+            this.answers = answers;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean supports(ProbeMode probeMode, VideoType videoType) {
+            return supports.test(probeMode, videoType);
+        }
+
+        @Override
+        public Duration timeout() {
+            return TIMEOUT;
+        }
+
+        @Override
+        public int retries() {
+            return retries;
+        }
+
+        @Override
+        public Mono<HealthReport> probe(WebClient webClient, ProbeTarget target, ProbeMode probeMode) {
+            return Mono.defer(() -> {
+                int attempt = attempts.incrementAndGet();
+                return answers.apply(attempt).map(healthy -> {
+                    HealthReport report = ProbeStrategy.newReport(target, probeMode, name);
+                    report.getMetadata().put("attempt", String.valueOf(attempt));
+                    report.setIsHealthy(healthy);
+                    report.setCheckedAt(Instant.now().toString());
+                    return report;
+                });
+            });
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the DC coefficient thumbnails against the block averages of the fully decoded fixture screenshots, and of
+ * the screen verdicts on the thumbnails.
+ */
+class JpegDcDecoderTests {
+
+    private static final String[][] SCREENS = {
+            {"black", "Black"},
+            {"blue", "Blue"},
+            {"green", "Green"},
+            {"partial-green", "Normal"},
+            {"normal", "Normal"}
+    };
+
+    static Stream<Arguments> fixtures() throws IOException {
+        List<Arguments> fixtures = new ArrayList<>();
+        for (String resolution : new String[]{"4cif", "1080p"}) {
+            for (String[] screen : SCREENS) {
+                fixtures.add(Arguments.of(resolution + "-" + screen[0] + ".jpg", ScreenFixtures.read(resolution + "-" + screen[0] + ".jpg"), screen[1]));
+            }
+        }
+        return fixtures.stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void thumbnailMatchesBlockAverages(String name, byte[] jpeg, String expected) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        BufferedImage thumbnail = JpegDcDecoder.decodeThumbnail(jpeg);
+        assertNotNull(thumbnail);
+        assertEquals((image.getWidth() + 7) / 8, thumbnail.getWidth());
+        assertEquals((image.getHeight() + 7) / 8, thumbnail.getHeight());
+        assertTrue(meanDifference(image, thumbnail) < 4, "mean difference to the block averages");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void classifiesThumbnailLikeFullFrame(String name, byte[] jpeg, String expected) throws IOException {
+        ScreenClassifier classifier = new ScreenClassifier(2, ScreenProfiles.shipped());
+        ScreenFrame frame = new ScreenFrame(ImageIO.read(new ByteArrayInputStream(jpeg)), 1);
+        ScreenFrame thumbnail = new ScreenFrame(JpegDcDecoder.decodeThumbnail(jpeg), 8);
+        assertEquals(expected, classifier.classify(frame).label());
+        assertEquals(expected, classifier.classify(thumbnail).label());
+    }
+
+    @Test
+    void decodesGrayscale() throws IOException {
+        BufferedImage gray = new BufferedImage(100, 60, BufferedImage.TYPE_BYTE_GRAY);
+        gray.getGraphics().drawImage(ScreenFixtures.image("4cif-normal.jpg"), 0, 0, 100, 60, null);
+        byte[] jpeg = write(gray, false);
+        BufferedImage thumbnail = JpegDcDecoder.decodeThumbnail(jpeg);
+        assertNotNull(thumbnail);
+        assertTrue(meanDifference(ImageIO.read(new ByteArrayInputStream(jpeg)), thumbnail) < 4, "mean difference to the block averages");
+    }
+
+    @Test
+    void rejectsUnsupportedImages() throws IOException {
+        BufferedImage image = ScreenFixtures.image("4cif-normal.jpg");
+        assertNull(JpegDcDecoder.decodeThumbnail(write(image, true)));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        assertNull(JpegDcDecoder.decodeThumbnail(png.toByteArray()));
+        byte[] jpeg = ScreenFixtures.read("4cif-normal.jpg");
+        byte[] truncated = new byte[jpeg.length / 10];
+        System.arraycopy(jpeg, 0, truncated, 0, truncated.length);
+        JpegDcDecoder.decodeThumbnail(truncated);
+    }
+
+    /**
+     * Mean absolute difference per channel between the thumbnail and the averages of the 8x8 blocks of the image.
+     * Grayscale images are compared on their samples, as their rgb values are gamma converted.
+     */
+    private static double meanDifference(BufferedImage image, BufferedImage thumbnail) {
+        long difference = 0;
+        long samples = 0;
+        for (int by = 0; by < thumbnail.getHeight(); by++) {
+            for (int bx = 0; bx < thumbnail.getWidth(); bx++) {
+                int[] sum = new int[3];
+                int count = 0;
+                for (int y = by * 8; y < Math.min(image.getHeight(), by * 8 + 8); y++) {
+                    for (int x = bx * 8; x < Math.min(image.getWidth(), bx * 8 + 8); x++) {
+                        int rgb = image.getRaster().getNumBands() == 1
+                                ? image.getRaster().getSample(x, y, 0) * 0x010101
+                                : image.getRGB(x, y);
+                        sum[0] += (rgb >> 16) & 0xff;
+                        sum[1] += (rgb >> 8) & 0xff;
+                        sum[2] += rgb & 0xff;
+                        count++;
+                    }
+                }
+                int rgb = thumbnail.getRGB(bx, by);
+                difference += Math.abs(sum[0] / count - ((rgb >> 16) & 0xff))
+                        + Math.abs(sum[1] / count - ((rgb >> 8) & 0xff))
+                        + Math.abs(sum[2] / count - (rgb & 0xff));
+                samples += 3;
+            }
+        }
+        return (double) difference / samples;
+    }
+
+    private static byte[] write(BufferedImage image, boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Per pixel screen classification the gateway used before the ScreenClassifier, kept as the reference of its verdicts.
+ * Black screens are reported as Black without the second frame comparison.
+ */
+final class LegacyScreenClassification {
+
+    private LegacyScreenClassification() {
+    }
+
+    static String screenInfo(BufferedImage image) {
+        int black = 0;
+        int blue = 0;
+        int green = 0;
+        int count = 0;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int x = width / 3; x < width - width / 3; x++) {
+            for (int y = height / 3; y < height - height / 3; y++) {
+                Color color = new Color(image.getRGB(x, y));
+                if (color.getRed() <= 35 && color.getGreen() <= 35) {
+                    if (color.getBlue() > 200) {
+                        blue++;
+                    } else if (color.getBlue() <= 35) {
+                        black++;
+                    }
+                } else if (color.getBlue() < 10 && color.getRed() < 10 && color.getGreen() > 40) {
+                    green++;
+                }
+                count++;
+            }
+        }
+        int bluePercent = blue * 100 / count;
+        int blackPercent = black * 100 / count;
+        int greenPercent = green * 100 / count;
+        if (blackPercent > 95) {
+            return "Black";
+        } else if (bluePercent > 95) {
+            return "Blue";
+        } else if (greenPercent > 50) {
+            if (greenPercent < 85) {
+                return checkGreenScreen(image);
+            }
+            return "Green";
+        }
+        return "Normal";
+    }
+
+    static String checkGreenScreen(BufferedImage image) {
+        int green = 0;
+        int count = 0;
+        for (int x = 0; x < image.getWidth(); x++) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                Color color = new Color(image.getRGB(x, y));
+                if (color.getBlue() < 10 && color.getRed() < 10 && color.getGreen() > 40 || (color.getBlue() < 60 && color.getGreen() > 150)
+                        || (color.getBlue() < 40 && color.getRed() < 40 && color.getGreen() > 100)) {
+                    green++;
+                }
+                count++;
+            }
+        }
+        return green * 100 / count > 70 ? "Green" : "Normal";
+    }
+
+    static boolean differs(BufferedImage initialFrame, BufferedImage nextFrame) {
+        int width = initialFrame.getWidth();
+        int height = initialFrame.getHeight();
+        if (height != nextFrame.getHeight() || width != nextFrame.getWidth()) {
+            return true;
+        }
+        for (int x = width / 3; x < width - width / 3; x++) {
+            for (int y = height / 3; y < height - height / 3; y++) {
+                if (initialFrame.getRGB(x, y) != nextFrame.getRGB(x, y)) {
+                    Color newColor = new Color(nextFrame.getRGB(x, y));
+                    Color oldColor = new Color(initialFrame.getRGB(x, y));
+                    int diff = Math.abs(newColor.getBlue() - oldColor.getBlue()) + Math.abs(newColor.getRed() - oldColor.getRed())
+                            + Math.abs(newColor.getGreen() - oldColor.getGreen());
+                    if (diff > 6) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
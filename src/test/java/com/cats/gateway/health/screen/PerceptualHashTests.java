@@ -0,0 +1,129 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Perceptual hashes of the fixture screenshots in src/test/resources/screens, decoded in full, to DC thumbnails and
+ * converted to the other raster layouts.
+ */
+class PerceptualHashTests {
+
+    private static final int DISTANCE = 2;
+
+    private static final String[] RESOLUTIONS = {"4cif", "1080p"};
+
+    private static final String[] SCREENS = {"black", "blue", "green", "partial-green", "normal"};
+
+    private static final int[] IMAGE_TYPES = {
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_INT_BGR
+    };
+
+    static Stream<Arguments> fixtures() {
+        List<Arguments> fixtures = new ArrayList<>();
+        for (String resolution : RESOLUTIONS) {
+            for (String screen : SCREENS) {
+                fixtures.add(Arguments.of(resolution + "-" + screen + ".jpg"));
+            }
+        }
+        return fixtures.stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void hashesSameScreenAlike(String fixture) throws IOException {
+        byte[] jpeg = ScreenFixtures.read(fixture);
+        ScreenFrame full = ScreenFrame.decode(jpeg, false);
+        ScreenFrame thumbnail = ScreenFrame.decode(jpeg, true);
+        PerceptualHash hash = PerceptualHash.of(full);
+        PerceptualHash thumbnailHash = PerceptualHash.of(thumbnail);
+        assertTrue(thumbnail.isThumbnail());
+        assertTrue(hash.matches(thumbnailHash, DISTANCE), hash + " " + thumbnailHash);
+        for (int imageType : IMAGE_TYPES) {
+            assertEquals(hash, PerceptualHash.of(new ScreenFrame(ScreenFixtures.convert(full.image(), imageType), 1)));
+        }
+    }
+
+    @Test
+    void tellsScreensApart() throws IOException {
+        for (String resolution : RESOLUTIONS) {
+            for (int i = 0; i < SCREENS.length; i++) {
+                for (int j = i + 1; j < SCREENS.length; j++) {
+                    PerceptualHash hash = PerceptualHash.of(ScreenFrame.decode(ScreenFixtures.read(resolution + "-" + SCREENS[i] + ".jpg"), true));
+                    PerceptualHash other = PerceptualHash.of(ScreenFrame.decode(ScreenFixtures.read(resolution + "-" + SCREENS[j] + ".jpg"), true));
+                    assertFalse(hash.matches(other, DISTANCE), SCREENS[i] + " " + SCREENS[j]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void ignoresNoise() throws IOException {
+        Random random = new Random(42);
+        for (String screen : SCREENS) {
+            BufferedImage image = ScreenFrame.decode(ScreenFixtures.read("4cif-" + screen + ".jpg"), false).image();
+            BufferedImage noisy = ScreenFixtures.convert(image, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < noisy.getHeight(); y++) {
+                for (int x = 0; x < noisy.getWidth(); x++) {
+                    int rgb = noisy.getRGB(x, y);
+                    int offset = random.nextInt(5) - 2;
+                    int r = Math.min(255, Math.max(0, ((rgb >> 16) & 0xff) + offset));
+                    int g = Math.min(255, Math.max(0, ((rgb >> 8) & 0xff) + offset));
+                    int b = Math.min(255, Math.max(0, (rgb & 0xff) + offset));
+                    noisy.setRGB(x, y, r << 16 | g << 8 | b);
+                }
+            }
+            PerceptualHash hash = PerceptualHash.of(new ScreenFrame(image, 1));
+            assertTrue(hash.matches(PerceptualHash.of(new ScreenFrame(noisy, 1)), DISTANCE), screen);
+        }
+    }
+
+    @Test
+    void detectsChangeOfPartOfScreen() throws IOException {
+        for (String screen : SCREENS) {
+            BufferedImage image = ScreenFrame.decode(ScreenFixtures.read("4cif-" + screen + ".jpg"), false).image();
+            BufferedImage changed = ScreenFixtures.convert(image, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = changed.createGraphics();
+            graphics.setColor(screen.equals("normal") ? Color.BLACK : Color.WHITE);
+            graphics.fillRect(changed.getWidth() / 3, changed.getHeight() / 3, changed.getWidth() / 4, changed.getHeight() / 4);
+            graphics.dispose();
+            PerceptualHash hash = PerceptualHash.of(new ScreenFrame(image, 1));
+            assertFalse(hash.matches(PerceptualHash.of(new ScreenFrame(changed, 1)), DISTANCE), screen);
+        }
+    }
+}
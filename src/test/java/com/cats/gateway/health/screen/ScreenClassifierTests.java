@@ -0,0 +1,117 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression of the screen classifier with the shipped screen profiles against the legacy per pixel classification,
+ * on the fixture screenshots in src/test/resources/screens decoded as is and converted to the other raster layouts.
+ */
+class ScreenClassifierTests {
+
+    private static final String[] RESOLUTIONS = {"4cif", "1080p"};
+
+    private static final String[][] SCREENS = {
+            {"black", "Black"},
+            {"blue", "Blue"},
+            {"green", "Green"},
+            {"partial-green", "Normal"},
+            {"normal", "Normal"}
+    };
+
+    private static final int[] IMAGE_TYPES = {
+            -1,
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_INT_BGR
+    };
+
+    static Stream<Arguments> fixtures() throws IOException {
+        List<Arguments> fixtures = new ArrayList<>();
+        for (String resolution : RESOLUTIONS) {
+            for (String[] screen : SCREENS) {
+                BufferedImage decoded = ScreenFixtures.image(resolution + "-" + screen[0] + ".jpg");
+                for (int imageType : IMAGE_TYPES) {
+                    BufferedImage image = imageType < 0 ? decoded : ScreenFixtures.convert(decoded, imageType);
+                    fixtures.add(Arguments.of(resolution + "-" + screen[0] + " type " + image.getType(), image, screen[1]));
+                }
+            }
+        }
+        BufferedImage greenFrame = greenFrame(704, 480);
+        for (int imageType : IMAGE_TYPES) {
+            BufferedImage image = imageType < 0 ? greenFrame : ScreenFixtures.convert(greenFrame, imageType);
+            fixtures.add(Arguments.of("green-frame type " + image.getType(), image, "Green"));
+        }
+        return fixtures.stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void classifiesLikeLegacy(String name, BufferedImage image, String expected) {
+        assertEquals(expected, LegacyScreenClassification.screenInfo(image));
+        for (int stride = 1; stride <= 3; stride++) {
+            assertEquals(expected, new ScreenClassifier(stride, ScreenProfiles.shipped()).classify(image).label(), "stride " + stride);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("fixtures")
+    void comparesFramesLikeLegacy(String name, BufferedImage image, String expected) throws IOException {
+        BufferedImage other = ScreenFixtures.image(name.startsWith("4cif") ? "4cif-black.jpg" : "1080p-black.jpg");
+        ScreenClassifier classifier = new ScreenClassifier(1, ScreenProfiles.shipped());
+        assertFalse(classifier.differs(image, image));
+        assertEquals(LegacyScreenClassification.differs(image, other), classifier.differs(image, other));
+
+        BufferedImage changed = ScreenFixtures.convert(image, BufferedImage.TYPE_INT_RGB);
+        int x = image.getWidth() / 2;
+        int y = image.getHeight() / 2;
+        changed.setRGB(x, y, changed.getRGB(x, y) ^ 0x404040);
+        assertTrue(LegacyScreenClassification.differs(image, changed));
+        assertTrue(classifier.differs(image, changed));
+    }
+
+    /**
+     * Green screen with a gray block over part of its center, green in the center is below the green cutoff so the
+     * verdict depends on the green of the whole screen.
+     */
+    private static BufferedImage greenFrame(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean block = x >= width * 17 / 30 && x < width * 2 / 3 && y >= height / 3 && y < height * 2 / 3;
+                image.setRGB(x, y, block ? 0x808080 : 0x00b400);
+            }
+        }
+        return image;
+    }
+}
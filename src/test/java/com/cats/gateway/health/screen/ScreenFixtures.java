@@ -0,0 +1,60 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Screen fixtures of the tests, read from the screens test resources.
+ */
+final class ScreenFixtures {
+
+    private ScreenFixtures() {
+    }
+
+    /**
+     * Method to read the JPEG bytes of a fixture.
+     */
+    static byte[] read(String fixture) throws IOException {
+        try (InputStream in = ScreenFixtures.class.getResourceAsStream("/screens/" + fixture)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Method to read a fixture decoded to an image.
+     */
+    static BufferedImage image(String fixture) throws IOException {
+        try (InputStream in = ScreenFixtures.class.getResourceAsStream("/screens/" + fixture)) {
+            return ImageIO.read(in);
+        }
+    }
+
+    /**
+     * Method to copy an image to an image of another type.
+     */
+    static BufferedImage convert(BufferedImage image, int imageType) {
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), imageType);
+        converted.getGraphics().drawImage(image, 0, 0, null);
+        return converted;
+    }
+}
@@ -0,0 +1,119 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.ScreenClassificationProperties;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the compiled screen profiles: coverage, confidence, ycbcr colors and configuration errors.
+ */
+class ScreenKernelTests {
+
+    private static final ScreenClassificationProperties NO_SIGNAL = ScreenProfiles.of(
+            "colors.magenta.ycbcr", "60-160,180-255,190-255",
+            "colors.gray.rgb", "100-160,100-160,100-160",
+            "regions.center", "1/3,1/3,2/3,2/3",
+            "regions.left", "0,0,0.5,1",
+            "profiles[0].name", "NoSignal",
+            "profiles[0].conditions", "center:magenta>=90",
+            "profiles[1].name", "Boot",
+            "profiles[1].conditions", "left:gray>=50,center:magenta<=10");
+
+    @Test
+    void reportsCoverageOfEveryRegion() {
+        BufferedImage image = new BufferedImage(90, 60, BufferedImage.TYPE_INT_RGB);
+        fill(image, 0, 45, 0xff00ff);
+        fill(image, 45, 90, 0x808080);
+        ScreenClassification classification = ScreenKernel.compile(NO_SIGNAL).classify(image, 1);
+        assertEquals(ScreenClassification.NORMAL, classification.label());
+        assertEquals(50.0, classification.coverage().get("center").get("magenta"));
+        assertEquals(50.0, classification.coverage().get("center").get("gray"));
+        assertEquals(100.0, classification.coverage().get("left").get("magenta"));
+        assertEquals(0.0, classification.coverage().get("left").get("gray"));
+        assertFalse(classification.stillFrame());
+        assertTrue(classification.confidence() >= 0.5 && classification.confidence() < 1);
+    }
+
+    @Test
+    void matchesProfilesInOrder() {
+        BufferedImage image = new BufferedImage(90, 60, BufferedImage.TYPE_3BYTE_BGR);
+        fill(image, 0, 90, 0xff00ff);
+        ScreenClassification noSignal = ScreenKernel.compile(NO_SIGNAL).classify(image, 2);
+        assertEquals("NoSignal", noSignal.label());
+        assertEquals(1.0, noSignal.confidence());
+
+        fill(image, 0, 90, 0x808080);
+        ScreenClassification boot = ScreenKernel.compile(NO_SIGNAL).classify(image, 2);
+        assertEquals("Boot", boot.label());
+        assertEquals(1.0, boot.confidence());
+    }
+
+    @Test
+    void scoresConfidenceByDistanceToThresholds() throws IOException {
+        ScreenKernel kernel = ScreenKernel.compile(ScreenProfiles.shipped());
+        ScreenClassification black = kernel.classify(ScreenFixtures.image("4cif-black.jpg"), 2);
+        assertEquals("Black", black.label());
+        assertTrue(black.stillFrame());
+        assertTrue(black.coverage().get("center").get("black") >= 96);
+        assertTrue(black.confidence() > 0.5);
+
+        ScreenClassification normal = kernel.classify(ScreenFixtures.image("4cif-normal.jpg"), 2);
+        assertEquals(ScreenClassification.NORMAL, normal.label());
+        assertTrue(normal.confidence() > 0.5);
+    }
+
+    @Test
+    void rejectsInvalidProfiles() {
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "colors.black.rgb", "0-35,0-35")));
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "colors.black.rgb", "0-35,0-35,0-256")));
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "regions.center", "2/3,1/3,1/3,2/3")));
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "regions.center", "0,0,1,1.5")));
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "colors.black.rgb", "0-35,0-35,0-35",
+                "regions.center", "1/3,1/3,2/3,2/3",
+                "profiles[0].name", "Black",
+                "profiles[0].conditions", "middle:black>=96")));
+        assertThrows(IllegalArgumentException.class, () -> ScreenKernel.compile(ScreenProfiles.of(
+                "colors.black.rgb", "0-35,0-35,0-35",
+                "regions.center", "1/3,1/3,2/3,2/3",
+                "profiles[0].name", "Black",
+                "profiles[0].conditions", "center:black>96")));
+    }
+
+    private static void fill(BufferedImage image, int from, int to, int rgb) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = from; x < to; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+    }
+}
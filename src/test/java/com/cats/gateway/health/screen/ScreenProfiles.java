@@ -0,0 +1,67 @@
+package com.cats.gateway.health.screen;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.ScreenClassificationProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Screen profiles of the tests, bound from properties the way the application binds them.
+ */
+final class ScreenProfiles {
+
+    private ScreenProfiles() {
+    }
+
+    /**
+     * Method to bind the screen profiles shipped in application.properties.
+     */
+    static ScreenClassificationProperties shipped() {
+        try {
+            return bind(PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties")));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Method to bind screen profiles from properties named without the video.health.screen.classification prefix.
+     */
+    static ScreenClassificationProperties of(String... properties) {
+        Properties prefixed = new Properties();
+        for (int i = 0; i < properties.length; i += 2) {
+            prefixed.setProperty("video.health.screen.classification." + properties[i], properties[i + 1]);
+        }
+        return bind(prefixed);
+    }
+
+    private static ScreenClassificationProperties bind(Properties properties) {
+        return new Binder(ConfigurationPropertySources.from(new PropertiesPropertySource("screen-profiles", properties)))
+                .bind("video.health.screen.classification", ScreenClassificationProperties.class)
+                .orElseGet(ScreenClassificationProperties::new);
+    }
+}
@@ -0,0 +1,100 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Queueing of the tasks beyond the limit in order of submission, and the cancellation of queued and running tasks.
+ */
+class ConcurrencyLimitTests {
+
+    private final ConcurrencyLimit limit = new ConcurrencyLimit(2);
+
+    private final List<String> started = new ArrayList<>();
+
+    private final List<String> completed = new ArrayList<>();
+
+    @Test
+    void startsQueuedTasksInOrder() {
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        Sinks.One<String> third = Sinks.one();
+        Sinks.One<String> fourth = Sinks.one();
+        run("first", first);
+        run("second", second);
+        run("third", third);
+        run("fourth", fourth);
+
+        assertEquals(List.of("first", "second"), started);
+        second.tryEmitValue("second");
+        assertEquals(List.of("first", "second", "third"), started);
+        first.tryEmitValue("first");
+        assertEquals(List.of("first", "second", "third", "fourth"), started);
+        third.tryEmitValue("third");
+        fourth.tryEmitValue("fourth");
+        assertEquals(List.of("second", "first", "third", "fourth"), completed);
+    }
+
+    @Test
+    void removesCancelledTaskFromQueue() {
+        Sinks.One<String> first = Sinks.one();
+        run("first", first);
+        run("second", Sinks.one());
+        Disposable third = run("third", Sinks.one());
+        run("fourth", Sinks.one());
+
+        third.dispose();
+        first.tryEmitValue("first");
+        assertEquals(List.of("first", "second", "fourth"), started);
+    }
+
+    @Test
+    void startsQueuedTaskOnceRunningTaskIsCancelled() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Disposable first = run("first", Mono.<String>never().doOnCancel(() -> cancelled.set(true)));
+        run("second", Sinks.one());
+        run("third", Sinks.one());
+
+        first.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(List.of("first", "second", "third"), started);
+    }
+
+    private Disposable run(String name, Sinks.One<String> result) {
+        return run(name, result.asMono());
+    }
+
+    private Disposable run(String name, Mono<String> result) {
+        return limit.run(Mono.defer(() -> {
+            started.add(name);
+            return result;
+        })).subscribe(completed::add);
+    }
+}
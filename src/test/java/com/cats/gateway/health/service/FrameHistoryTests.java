@@ -0,0 +1,121 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.FreezeStatus;
+import com.cats.gateway.health.screen.ScreenFrame;
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.video.VideoDeviceFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Freeze detection from the runs of frames kept in the frame history of a slot.
+ */
+class FrameHistoryTests {
+
+    private static final int SLOT = 1;
+
+    @Test
+    void collapsesFrozenScreenIntoSingleRun() {
+        FrameHistory frameHistory = frameHistory(4);
+        ScreenFrame frame = frame(100);
+        for (int second = 0; second < 1000; second++) {
+            frameHistory.record(SLOT, frame, Instant.ofEpochSecond(second));
+        }
+
+        FreezeStatus status = frameHistory.getFreezeStatus(SLOT, 600, 2);
+        assertTrue(status.getFrozen());
+        assertFalse(status.getTruncated());
+        assertEquals(999_000, status.getUnchangedMillis());
+        assertEquals(1000, status.getUnchangedFrames());
+        assertEquals(1000, status.getFrames());
+    }
+
+    @Test
+    void flagsUnchangedScreenBeyondOldestFrameKept() {
+        FrameHistory frameHistory = frameHistory(2);
+        frameHistory.record(SLOT, frame(100), Instant.ofEpochSecond(0));
+        frameHistory.record(SLOT, frame(104), Instant.ofEpochSecond(1));
+        frameHistory.record(SLOT, frame(104), Instant.ofEpochSecond(2));
+        frameHistory.record(SLOT, frame(108), Instant.ofEpochSecond(3));
+
+        FreezeStatus status = frameHistory.getFreezeStatus(SLOT, 1, 2);
+        assertTrue(status.getFrozen());
+        assertTrue(status.getTruncated());
+        assertEquals(2_000, status.getUnchangedMillis());
+        assertEquals(3, status.getUnchangedFrames());
+        assertEquals(3, status.getFrames());
+    }
+
+    @Test
+    void detectsChangeWithinFramesKept() {
+        FrameHistory frameHistory = frameHistory(2);
+        frameHistory.record(SLOT, frame(100), Instant.ofEpochSecond(0));
+        frameHistory.record(SLOT, frame(200), Instant.ofEpochSecond(1));
+        frameHistory.record(SLOT, frame(100), Instant.ofEpochSecond(2));
+        frameHistory.record(SLOT, frame(100), Instant.ofEpochSecond(3));
+
+        FreezeStatus status = frameHistory.getFreezeStatus(SLOT, 1, 2);
+        assertTrue(status.getFrozen());
+        assertFalse(status.getTruncated());
+        assertEquals(Instant.ofEpochSecond(2).toString(), status.getUnchangedSince());
+        assertEquals(2, status.getUnchangedFrames());
+        assertEquals(3, status.getFrames());
+    }
+
+    private static FrameHistory frameHistory(int size) {
+        Device device = new Device();
+        device.setId(1);
+        device.setInternalIp("127.0.0.1");
+        device.setType("Axis.P7216");
+        device.setMaxPort(4);
+        SlotToPortMappings mappings = new SlotToPortMappings();
+        mappings.setDevices(List.of(device));
+        mappings.addMapping(String.valueOf(SLOT), "1:1");
+        VideoDeviceFactory videoDeviceFactory = new VideoDeviceFactory();
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, mappings));
+
+        FrameHistory frameHistory = new FrameHistory();
+        ReflectionTestUtils.setField(frameHistory, "videoDeviceFactory", videoDeviceFactory);
+        ReflectionTestUtils.setField(frameHistory, "size", size);
+        return frameHistory;
+    }
+
+    private static ScreenFrame frame(int gray) {
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(gray, gray, gray));
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+        return new ScreenFrame(image, 1);
+    }
+}
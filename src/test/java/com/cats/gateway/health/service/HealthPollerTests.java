@@ -0,0 +1,118 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.HealthSnapshot;
+import com.cats.gateway.health.model.HealthStatusBean;
+import com.cats.gateway.health.model.ProbeMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshots of the video health published per probe mode by the health poller, the copy of the published report and
+ * the background polling.
+ */
+class HealthPollerTests {
+
+    private final HealthService healthService = mock(HealthService.class);
+
+    private final HealthPoller healthPoller = new HealthPoller();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(healthPoller, "healthService", healthService);
+        when(healthService.getVideoHealthReport(ProbeMode.LIGHT)).thenReturn(Mono.fromSupplier(() -> report("light")));
+        when(healthService.getVideoHealthReport(ProbeMode.FULL)).thenReturn(Mono.fromSupplier(() -> report("full")));
+    }
+
+    @Test
+    void keepsLightSnapshotAfterFullProbe() {
+        healthPoller.refresh(ProbeMode.LIGHT).block();
+
+        assertEquals("full", healthPoller.getHealth(false, ProbeMode.FULL).block().getRemarks());
+        assertEquals("light", healthPoller.getSnapshot().report().getRemarks());
+        assertEquals("full", healthPoller.getSnapshot(ProbeMode.FULL).report().getRemarks());
+        assertEquals("light", healthPoller.getHealth(false, ProbeMode.LIGHT).block().getRemarks());
+        verify(healthService, times(1)).getVideoHealthReport(ProbeMode.LIGHT);
+    }
+
+    @Test
+    void refreshesLightSnapshotOnFirstRequest() {
+        assertEquals("light", healthPoller.getHealth(false, ProbeMode.LIGHT).block().getRemarks());
+        assertEquals("light", healthPoller.getHealth(false, ProbeMode.LIGHT).block().getRemarks());
+        verify(healthService, times(1)).getVideoHealthReport(ProbeMode.LIGHT);
+    }
+
+    @Test
+    void publishesCopyOfReportLists() {
+        HealthStatusBean report = report("light");
+        report.setSlotHealthStatus(new ArrayList<>(List.of(new HealthReport())));
+        when(healthService.getVideoHealthReport(ProbeMode.LIGHT)).thenReturn(Mono.just(report));
+
+        HealthSnapshot snapshot = healthPoller.refresh(ProbeMode.LIGHT).block();
+        report.getSlotHealthStatus().add(new HealthReport());
+
+        assertEquals(1, snapshot.report().getSlotHealthStatus().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.report().getSlotHealthStatus().add(new HealthReport()));
+    }
+
+    @Test
+    void pollsOnceStarted() {
+        ReflectionTestUtils.setField(healthPoller, "pollInterval", 20L);
+        ReflectionTestUtils.setField(healthPoller, "pollJitter", 0L);
+        healthPoller.start();
+        try {
+            verify(healthService, timeout(1000).atLeast(2)).getVideoHealthReport(ProbeMode.LIGHT);
+        } finally {
+            healthPoller.stop();
+        }
+    }
+
+    @Test
+    void doesNotPollWithIntervalDisabled() throws InterruptedException {
+        ReflectionTestUtils.setField(healthPoller, "pollInterval", 0L);
+        healthPoller.start();
+        Thread.sleep(100);
+
+        verify(healthService, never()).getVideoHealthReport(ProbeMode.LIGHT);
+        assertNull(healthPoller.getSnapshot());
+    }
+
+    private static HealthStatusBean report(String remark) {
+        HealthStatusBean report = new HealthStatusBean();
+        report.setRemarks(remark);
+        return report;
+    }
+}
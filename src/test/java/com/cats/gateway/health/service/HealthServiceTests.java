@@ -0,0 +1,192 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.HealthReport;
+import com.cats.gateway.health.model.HealthStatusBean;
+import com.cats.gateway.health.model.ProbeMode;
+import com.cats.gateway.health.probe.ProbeEngine;
+import com.cats.gateway.health.probe.ProbeStrategy;
+import com.cats.gateway.health.probe.ProbeTarget;
+import com.cats.gateway.health.screen.ScreenClassification;
+import com.cats.gateway.health.screen.ScreenClassifier;
+import com.cats.gateway.health.screen.ScreenFrame;
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.slotmapping.service.SlotMappingService;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.VideoDeviceFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Health report of the mapped slots, with probes still pending at the probe deadline, and the timer scheduled check of
+ * still screens against later frames.
+ */
+class HealthServiceTests {
+
+    private static final long PROBE_DEADLINE = 200;
+
+    private static final long SLOT = 1;
+
+    private static final long BLACK_CHECK_DELAY = 5000;
+
+    private static final ScreenFrame BLACK = new ScreenFrame(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), 1);
+
+    private static final ScreenFrame MOVED = new ScreenFrame(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), 1);
+
+    private static final ScreenClassification STILL = new ScreenClassification("Black", true, 1.0, Map.of());
+
+    private final HealthService healthService = new HealthService();
+
+    private final ProbeEngine probeEngine = mock(ProbeEngine.class);
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private final AtomicInteger captures = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        Device device = new Device();
+        device.setId(1);
+        device.setInternalIp("127.0.0.1");
+        device.setType("Axis.P7216");
+        device.setMaxPort(4);
+        SlotToPortMappings mappings = new SlotToPortMappings();
+        mappings.setDevices(List.of(device));
+        mappings.addMapping("1", "1:1");
+        mappings.addMapping("2", "1:2");
+        VideoDeviceFactory videoDeviceFactory = new VideoDeviceFactory();
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, mappings));
+        SlotMappingService slotMappingService = mock(SlotMappingService.class);
+        when(slotMappingService.getVideoDevices()).thenReturn(List.of(device));
+
+        when(probeEngine.probe(any(), any())).thenAnswer(invocation -> {
+            ProbeTarget target = invocation.getArgument(0);
+            if (target.outlet() == 2) {
+                return Mono.never().doOnCancel(() -> cancelled.set(true));
+            }
+            HealthReport report = ProbeStrategy.newReport(target, invocation.getArgument(1), "stub");
+            report.setIsHealthy(true);
+            report.setCheckedAt(Instant.now().toString());
+            return Mono.just(report);
+        });
+
+        ReflectionTestUtils.setField(healthService, "videoDeviceFactory", videoDeviceFactory);
+        ReflectionTestUtils.setField(healthService, "slotMappingService", slotMappingService);
+        ReflectionTestUtils.setField(healthService, "probeEngine", probeEngine);
+        ReflectionTestUtils.setField(healthService, "deviceCircuitBreakers", new DeviceCircuitBreakers());
+        ReflectionTestUtils.setField(healthService, "probeDeadline", PROBE_DEADLINE);
+        ReflectionTestUtils.setField(healthService, "probeConcurrencyPerDevice", 2);
+    }
+
+    @Test
+    void reportsProbesPendingAtDeadlineAsUnhealthy() {
+        long start = System.nanoTime();
+        HealthStatusBean report = healthService.getHealthReport(ProbeMode.LIGHT).block();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis >= PROBE_DEADLINE && elapsedMillis < PROBE_DEADLINE * 10, elapsedMillis + " ms");
+        assertTrue(cancelled.get());
+        assertFalse(report.getIsHealthy());
+        List<HealthReport> slotReports = report.getSlotHealthStatus();
+        assertEquals(2, slotReports.size());
+        assertEquals("1", slotReports.get(0).getMetadata().get("slot"));
+        assertTrue(slotReports.get(0).getIsHealthy());
+        assertEquals("2", slotReports.get(1).getMetadata().get("slot"));
+        assertFalse(slotReports.get(1).getIsHealthy());
+        assertEquals("Probe did not complete within " + PROBE_DEADLINE + " ms", slotReports.get(1).getRemarks());
+        HealthReport deviceReport = report.getHwDevicesHealthStatus().get(0);
+        assertFalse(deviceReport.getIsHealthy());
+        assertEquals("1", deviceReport.getMetadata().get("unhealthyOutlets"));
+    }
+
+    @Test
+    void checksConfiguredFramesOfStillScreenOnTimer() {
+        HealthService screenService = screenService(3, List.of(BLACK, BLACK, BLACK));
+
+        Duration elapsed = StepVerifier.withVirtualTime(() -> screenService.checkImageDifference(BLACK, STILL, SLOT))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(BLACK_CHECK_DELAY - 1))
+                .then(() -> assertEquals(0, captures.get()))
+                .thenAwait(Duration.ofMillis(1))
+                .then(() -> assertEquals(1, captures.get()))
+                .thenAwait(Duration.ofMillis(2 * BLACK_CHECK_DELAY))
+                .expectNext(STILL)
+                .verifyComplete();
+
+        assertEquals(3, captures.get());
+        assertTrue(elapsed.toMillis() < BLACK_CHECK_DELAY, elapsed.toMillis() + " ms");
+    }
+
+    @Test
+    void stopsCheckAtFirstDifferingFrame() {
+        HealthService screenService = screenService(5, List.of(BLACK, MOVED, BLACK));
+
+        StepVerifier.withVirtualTime(() -> screenService.checkImageDifference(BLACK, STILL, SLOT))
+                .expectSubscription()
+                .thenAwait(Duration.ofMillis(2 * BLACK_CHECK_DELAY))
+                .expectNext(STILL.moving())
+                .verifyComplete();
+
+        assertEquals(2, captures.get());
+    }
+
+    /**
+     * Health service capturing the given frames in turn, counting the captures, with a classifier telling frames apart by identity.
+     */
+    private HealthService screenService(int frames, List<ScreenFrame> captured) {
+        ScreenClassifier screenClassifier = mock(ScreenClassifier.class);
+        when(screenClassifier.differs(any(ScreenFrame.class), any(ScreenFrame.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0) != invocation.getArgument(1));
+        ReflectionTestUtils.setField(healthService, "screenClassifier", screenClassifier);
+        ReflectionTestUtils.setField(healthService, "blackCheckDelay", BLACK_CHECK_DELAY);
+        ReflectionTestUtils.setField(healthService, "blackCheckFrames", frames);
+
+        HealthService screenService = spy(healthService);
+        Iterator<ScreenFrame> next = captured.iterator();
+        doAnswer(invocation -> Mono.fromSupplier(() -> {
+            captures.incrementAndGet();
+            return next.next();
+        })).when(screenService).getImage(SLOT, 0);
+        return screenService;
+    }
+}
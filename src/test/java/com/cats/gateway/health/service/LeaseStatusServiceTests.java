@@ -0,0 +1,140 @@
+package com.cats.gateway.health.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.health.model.LeaseStatusSnapshot;
+import com.cats.gateway.video.VideoDeviceClients;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Caching of the lease status of the router capability API: shared requests, stale serving and the back off after a
+ * failed request.
+ */
+class LeaseStatusServiceTests {
+
+    private static final long TTL = 100;
+
+    private static final String CAPABILITY = """
+            {"VID": {"isHealthy": true}, "PWR": {"isHealthy": true}, "MTR": {"isHealthy": false}}
+            """;
+
+    private final LeaseStatusService leaseStatusService = new LeaseStatusService();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicReference<Mono<ClientResponse>> router = new AtomicReference<>(Mono.fromSupplier(LeaseStatusServiceTests::capability));
+
+    @BeforeEach
+    void setUp() {
+        VideoDeviceClients videoDeviceClients = mock(VideoDeviceClients.class);
+        when(videoDeviceClients.forRack()).thenReturn(WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.incrementAndGet();
+                    return router.get();
+                })
+                .build());
+        ReflectionTestUtils.setField(leaseStatusService, "videoDeviceClients", videoDeviceClients);
+        ReflectionTestUtils.setField(leaseStatusService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(leaseStatusService, "catsRackCapability", "http://router/capability");
+        ReflectionTestUtils.setField(leaseStatusService, "ttl", TTL);
+        ReflectionTestUtils.setField(leaseStatusService, "maxStale", 1000L);
+    }
+
+    @Test
+    void sharesRequestOfConcurrentCallers() {
+        Sinks.One<ClientResponse> response = Sinks.one();
+        router.set(response.asMono());
+        CompletableFuture<LeaseStatusSnapshot> first = leaseStatusService.getLeaseStatus().toFuture();
+        CompletableFuture<LeaseStatusSnapshot> second = leaseStatusService.getLeaseStatus().toFuture();
+        response.tryEmitValue(capability());
+
+        assertEquals(2, first.join().statuses().size());
+        assertEquals(first.join(), second.join());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void servesCachedLeaseStatusWithinTtl() {
+        LeaseStatusSnapshot fetched = leaseStatusService.getLeaseStatus().block();
+
+        assertEquals(fetched, leaseStatusService.getLeaseStatus().block());
+        assertFalse(fetched.isStale());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void servesStaleLeaseStatusAndBacksOffAfterFailure() throws InterruptedException {
+        LeaseStatusSnapshot fetched = leaseStatusService.getLeaseStatus().block();
+        Thread.sleep(TTL + 20);
+        router.set(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.BAD_GATEWAY).build()));
+
+        LeaseStatusSnapshot stale = leaseStatusService.getLeaseStatus().block();
+        assertTrue(stale.isStale());
+        assertNotNull(stale.error());
+        assertEquals(fetched.fetchedAt(), stale.fetchedAt());
+        assertTrue(leaseStatusService.getLeaseStatus().block().isStale());
+        assertEquals(2, requests.get());
+
+        Thread.sleep(TTL + 20);
+        router.set(Mono.fromSupplier(LeaseStatusServiceTests::capability));
+        assertFalse(leaseStatusService.getLeaseStatus().block().isStale());
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void failsOnceStaleLeaseStatusExpired() throws InterruptedException {
+        ReflectionTestUtils.setField(leaseStatusService, "maxStale", TTL);
+        leaseStatusService.getLeaseStatus().block();
+        Thread.sleep(TTL + 20);
+        router.set(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.BAD_GATEWAY).build()));
+
+        assertThrows(RuntimeException.class, () -> leaseStatusService.getLeaseStatus().block());
+        assertThrows(RuntimeException.class, () -> leaseStatusService.getLeaseStatus().block());
+        assertEquals(2, requests.get());
+    }
+
+    private static ClientResponse capability() {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(CAPABILITY)
+                .build();
+    }
+}
@@ -0,0 +1,157 @@
+package com.cats.gateway.slotmapping.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.Configuration;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Coalescing of writes, the fallbacks when the mapping file cannot be replaced atomically and the shutdown of the
+ * slot mapping persister.
+ */
+class SlotMappingPersisterTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = directory.resolve("mappings.json");
+        Files.writeString(file, "{}");
+    }
+
+    @Test
+    void coalescesWritesWithinDelay() throws IOException {
+        SlotMappingPersister persister = persister(new SlotMappingPersister(), 200);
+        SlotToPortMappings first = mappings("1", "1:1");
+        SlotToPortMappings second = mappings("2", "1:2");
+
+        CompletableFuture<SlotToPortMappings> firstWrite = persister.write(first);
+        CompletableFuture<SlotToPortMappings> secondWrite = persister.write(second);
+
+        assertSame(second, firstWrite.join());
+        assertSame(second, secondWrite.join());
+        assertEquals(Map.of("2", "1:2"), read().getMappings());
+    }
+
+    @Test
+    void movesFileWhenAtomicMoveIsNotSupported() throws IOException {
+        SlotMappingPersister persister = persister(new SlotMappingPersister() {
+            @Override
+            void replace(Path source, Path target) throws IOException {
+                throw new AtomicMoveNotSupportedException(source.toString(), target.toString(), "not supported");
+            }
+        }, 0);
+
+        persister.write(mappings("1", "1:1")).join();
+
+        assertEquals(Map.of("1", "1:1"), read().getMappings());
+        assertEquals(List.of(file), files());
+    }
+
+    @Test
+    void writesInPlaceWhenFileCannotBeReplaced() throws IOException {
+        SlotMappingPersister persister = persister(new SlotMappingPersister() {
+            @Override
+            void replace(Path source, Path target) throws IOException {
+                throw new FileSystemException(target.toString(), null, "Device or resource busy");
+            }
+        }, 0);
+
+        persister.write(mappings("1", "1:1")).join();
+
+        assertEquals(Map.of("1", "1:1"), read().getMappings());
+        assertEquals(List.of(file), files());
+    }
+
+    @Test
+    void failsWriteWhichCannotBeWritten() {
+        SlotMappingPersister persister = persister(new SlotMappingPersister(), 0);
+        ReflectionTestUtils.setField(persister, "config", configuration(directory.resolve("missing").resolve("mappings.json")));
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> persister.write(mappings("1", "1:1")).join());
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+
+    @Test
+    void writesPendingMappingsOnShutdown() throws Exception {
+        SlotMappingPersister persister = persister(new SlotMappingPersister(), 60_000);
+        CompletableFuture<SlotToPortMappings> pending = persister.write(mappings("1", "1:1"));
+
+        persister.shutdown();
+
+        pending.join();
+        assertEquals(Map.of("1", "1:1"), read().getMappings());
+        CompletionException failure = assertThrows(CompletionException.class, () -> persister.write(mappings("2", "1:2")).join());
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    private SlotMappingPersister persister(SlotMappingPersister persister, long delay) {
+        ReflectionTestUtils.setField(persister, "config", configuration(file));
+        ReflectionTestUtils.setField(persister, "persistDelay", delay);
+        return persister;
+    }
+
+    private static Configuration configuration(Path path) {
+        Configuration configuration = new Configuration();
+        configuration.setSlotMappingFilePath(path.toString());
+        return configuration;
+    }
+
+    private static SlotToPortMappings mappings(String slot, String mapping) {
+        SlotToPortMappings slotToPortMappings = new SlotToPortMappings();
+        slotToPortMappings.addMapping(slot, mapping);
+        return slotToPortMappings;
+    }
+
+    private SlotToPortMappings read() throws IOException {
+        return mapper.readValue(file.toFile(), SlotToPortMappings.class);
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.cats.gateway.slotmapping.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.config.Configuration;
+import com.cats.gateway.exceptions.SlotMappingException;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotMappingUpdateResult;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Publication of slot mapping changes relative to their persistence, and validation of a batch of changes which is
+ * accepted or rejected as a whole.
+ */
+class SlotMappingServiceTests {
+
+    private static final String MAPPINGS = """
+            {"slots": {"1": "1:1"}, "devices": [{"id": 1, "internalIp": "127.0.0.1", "type": "Axis.P7216", "maxPort": 4}]}
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    private final List<SlotMappingSnapshot> events = new ArrayList<>();
+
+    private final AtomicInteger writes = new AtomicInteger();
+
+    private final SlotMappingPersister persister = new SlotMappingPersister() {
+        @Override
+        public CompletableFuture<SlotToPortMappings> write(SlotToPortMappings slotToPortMappings) {
+            writes.incrementAndGet();
+            return super.write(slotToPortMappings);
+        }
+    };
+
+    private final SlotMappingService service = new SlotMappingService();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = directory.resolve("mappings.json");
+        Files.writeString(file, MAPPINGS);
+        ReflectionTestUtils.setField(persister, "config", configuration(file));
+        ReflectionTestUtils.setField(persister, "persistDelay", 300L);
+        ReflectionTestUtils.setField(service, "config", configuration(file));
+        ReflectionTestUtils.setField(service, "persister", persister);
+        ReflectionTestUtils.setField(service, "eventPublisher", (ApplicationEventPublisher) event -> events.add((SlotMappingSnapshot) event));
+        ReflectionTestUtils.setField(service, "awaitPersistence", true);
+        ReflectionTestUtils.invokeMethod(service, "initializePortMapping");
+        writes.set(0);
+    }
+
+    @Test
+    void publishesChangeOnceWritten() throws IOException {
+        Mono<SlotMappingUpdateResult> update = service.applyMappings(Map.of("2", "1:2"));
+
+        assertEquals(1, service.getSnapshot().version());
+        assertFalse(service.getMappings().getMappings().containsKey("2"));
+        assertEquals(2, update.block().getVersion());
+        assertEquals("1:2", service.getMapping("2"));
+        assertTrue(Files.readString(file).contains("\"2\":\"1:2\""));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void publishesCoalescedChangesOnce() {
+        Mono<SlotMappingUpdateResult> first = service.applyMappings(Map.of("2", "1:2"));
+        Mono<SlotMappingUpdateResult> second = service.applyMappings(Map.of("3", "1:3"));
+
+        assertEquals(2, first.block().getVersion());
+        assertEquals(2, second.block().getVersion());
+        assertEquals("1:2", service.getMapping("2"));
+        assertEquals("1:3", service.getMapping("3"));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void doesNotPublishChangeWhichCouldNotBeWritten() {
+        ReflectionTestUtils.setField(persister, "config", configuration(directory.resolve("missing").resolve("mappings.json")));
+
+        assertThrows(RuntimeException.class, () -> service.applyMappings(Map.of("2", "1:2")).block());
+        assertEquals(1, service.getSnapshot().version());
+        assertEquals(1, events.size());
+
+        ReflectionTestUtils.setField(persister, "config", configuration(file));
+        service.applyMappings(Map.of("3", "1:3")).block();
+        assertFalse(service.getMappings().getMappings().containsKey("2"));
+        assertEquals("1:3", service.getMapping("3"));
+    }
+
+    @Test
+    void publishesChangeImmediatelyWithoutAwait() {
+        ReflectionTestUtils.setField(service, "awaitPersistence", false);
+
+        Mono<SlotMappingUpdateResult> update = service.applyMappings(Map.of("2", "1:2"));
+
+        assertEquals("1:2", service.getMapping("2"));
+        assertEquals(2, update.block().getVersion());
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    void rejectsUnknownDevice() throws IOException {
+        assertRejected(Map.of("2", "9:1"), "device 9 is not configured");
+    }
+
+    @Test
+    void rejectsOutletOutsideDevice() throws IOException {
+        assertRejected(Map.of("2", "1:5"), "outlet 5 is not available on device 1");
+        assertRejected(Map.of("2", "1:0"), "outlet 0 is not available on device 1");
+    }
+
+    @Test
+    void rejectsChangedSlotsOnSameOutlet() throws IOException {
+        assertRejected(Map.of("2", "1:2", "3", "1:2"), "outlet 1:2 is already mapped");
+    }
+
+    @Test
+    void rejectsChangedSlotOnOutletOfUnchangedSlot() throws IOException {
+        assertRejected(Map.of("2", "1:1"), "outlet 1:1 is already mapped");
+    }
+
+    @Test
+    void rejectsWholeBatchWithOneInvalidEntry() throws IOException {
+        assertRejected(Map.of("2", "1:2", "3", "1:3", "4", "one"), "slot 4: mapping one is not in the format device:outlet");
+        assertFalse(service.getMappings().getMappings().containsKey("2"));
+        assertFalse(service.getMappings().getMappings().containsKey("3"));
+    }
+
+    @Test
+    void unmapsSlotWithNotAvailable() {
+        SlotMappingUpdateResult result = service.applyMappings(Map.of("1", "N/A", "2", "1:1")).block();
+
+        assertEquals(2L, result.getVersion());
+        assertEquals("N/A", service.getMappings().getMappings().get("1"));
+        assertThrows(SlotMappingException.class, () -> service.getMapping("1"));
+        assertEquals("1:1", service.getMapping("2"));
+    }
+
+    @Test
+    void writesAndPublishesAcceptedBatchOnce() {
+        SlotMappingUpdateResult result = service.applyMappings(Map.of("2", "1:2", "3", "1:3", "4", "1:4")).block();
+
+        assertEquals(2L, result.getVersion());
+        assertEquals(3, result.getSlots().size());
+        assertEquals(1, writes.get());
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(1).version());
+    }
+
+    /**
+     * Asserts that a batch is rejected as a whole, leaving the mappings, their version and the file untouched.
+     */
+    private void assertRejected(Map<String, String> changes, String error) throws IOException {
+        IllegalArgumentException rejection = assertThrows(IllegalArgumentException.class, () -> service.applyMappings(changes));
+
+        assertTrue(rejection.getMessage().contains(error), rejection.getMessage());
+        assertEquals(1, service.getSnapshot().version());
+        assertEquals(Map.of("1", "1:1"), service.getMappings().getMappings());
+        assertEquals(1, events.size());
+        assertEquals(0, writes.get());
+        assertEquals(MAPPINGS, Files.readString(file));
+    }
+
+    private static Configuration configuration(Path path) {
+        Configuration configuration = new Configuration();
+        configuration.setSlotMappingFilePath(path.toString());
+        return configuration;
+    }
+}
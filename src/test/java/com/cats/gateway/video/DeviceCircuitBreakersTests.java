@@ -0,0 +1,163 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * States of the circuit breaker of a video device: opening after consecutive failures, trial calls once half open,
+ * reset on mapping changes and the errors which do not count as failures.
+ */
+class DeviceCircuitBreakersTests {
+
+    private static final long OPEN_DURATION = 100;
+
+    private final DeviceCircuitBreakers breakers = new DeviceCircuitBreakers();
+
+    private final Device device = device("127.0.0.1");
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(breakers, "failureThreshold", 3);
+        ReflectionTestUtils.setField(breakers, "openDuration", OPEN_DURATION);
+        ReflectionTestUtils.setField(breakers, "halfOpenCalls", 1);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        succeed();
+        fail(2);
+        assertEquals(DeviceCircuitBreakers.State.CLOSED, breakers.getState(device.getId()));
+
+        fail(1);
+        assertEquals(DeviceCircuitBreakers.State.OPEN, breakers.getState(device.getId()));
+        VideoGatewayException rejection = assertThrows(VideoGatewayException.class, this::succeed);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejection.getStatusCode());
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    void closesAfterSuccessfulTrial() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN_DURATION + 20);
+        assertEquals(DeviceCircuitBreakers.State.HALF_OPEN, breakers.getState(device.getId()));
+
+        succeed();
+        assertEquals(DeviceCircuitBreakers.State.CLOSED, breakers.getState(device.getId()));
+        succeed();
+    }
+
+    @Test
+    void reopensAfterFailedTrial() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN_DURATION + 20);
+
+        fail(1);
+        assertEquals(DeviceCircuitBreakers.State.OPEN, breakers.getState(device.getId()));
+        assertThrows(VideoGatewayException.class, this::succeed);
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void limitsTrialsWhileHalfOpen() throws InterruptedException {
+        fail(3);
+        Thread.sleep(OPEN_DURATION + 20);
+
+        Disposable trial = breakers.protect(device, Mono.never()).subscribe();
+        assertThrows(VideoGatewayException.class, this::succeed);
+        trial.dispose();
+        succeed();
+        assertEquals(DeviceCircuitBreakers.State.CLOSED, breakers.getState(device.getId()));
+    }
+
+    @Test
+    void resetsWhenMappingOfDeviceChanges() {
+        fail(3);
+        breakers.onMappingsChanged(snapshot(device("127.0.0.1")));
+        assertEquals(DeviceCircuitBreakers.State.OPEN, breakers.getState(device.getId()));
+
+        breakers.onMappingsChanged(snapshot(device("127.0.0.2")));
+        assertEquals(DeviceCircuitBreakers.State.CLOSED, breakers.getState(device.getId()));
+        succeed();
+    }
+
+    @Test
+    void doesNotCountErrorsAnsweredByDevice() {
+        List<RuntimeException> errors = List.of(
+                WebClientResponseException.create(404, "Not Found", null, null, null),
+                new ResponseStatusException(HttpStatus.BAD_GATEWAY),
+                new IllegalArgumentException("invalid resolution"));
+        for (int i = 0; i < 3; i++) {
+            for (RuntimeException error : errors) {
+                assertThrows(error.getClass(), () -> breakers.protect(device, Mono.error(error)).block());
+            }
+        }
+        assertEquals(DeviceCircuitBreakers.State.CLOSED, breakers.getState(device.getId()));
+    }
+
+    private void succeed() {
+        breakers.protect(device, Mono.fromCallable(calls::incrementAndGet)).block();
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            Mono<Object> call = Mono.defer(() -> {
+                calls.incrementAndGet();
+                return Mono.error(new IOException("Connection refused"));
+            });
+            assertThrows(RuntimeException.class, () -> breakers.protect(device, call).block());
+        }
+    }
+
+    private static Device device(String internalIp) {
+        Device device = new Device();
+        device.setId(1);
+        device.setInternalIp(internalIp);
+        device.setType("Axis.P7216");
+        device.setMaxPort(4);
+        return device;
+    }
+
+    private static SlotMappingSnapshot snapshot(Device device) {
+        SlotToPortMappings mappings = new SlotToPortMappings();
+        mappings.setDevices(List.of(device));
+        return new SlotMappingSnapshot(2, mappings);
+    }
+}
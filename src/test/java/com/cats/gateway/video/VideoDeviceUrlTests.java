@@ -0,0 +1,113 @@
+package com.cats.gateway.video;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Snapshot and video urls of the Axis and Hanwha video devices for the local, ssl, proxy and rtsp variants, the
+ * resolution tokens and unset flags, and the record semantics of the devices.
+ */
+class VideoDeviceUrlTests {
+
+    private static final String PROXY_BASE_URL = "proxy.example/";
+
+    static Stream<Arguments> snapshotUrls() {
+        return Stream.of(
+                Arguments.of("Axis", false, "", "", "", false, true,
+                        "http://192.168.100.001:80/axis-cgi/jpg/image.cgi?camera=3"),
+                Arguments.of("Axis", false, "704x480", "", "1", true, false,
+                        "https://rack.example:28401/axis-cgi/jpg/image.cgi?camera=3&squarepixel=1&resolution=4CIF"),
+                Arguments.of("Axis", true, "1920x1080", "h264", null, true, false,
+                        "https://proxy.example/rack.example/video/28401/axis-cgi/jpg/image.cgi?camera=3&resolution=1920x1080&videocodec=h264"),
+                Arguments.of("Axis", true, "176x144", null, " ", false, false,
+                        "http://proxy.example/rack.example/video/28001/axis-cgi/jpg/image.cgi?camera=3&resolution=QCIF"),
+                Arguments.of("Axis", false, "352x240", null, null, null, null,
+                        "http://rack.example:28001/axis-cgi/jpg/image.cgi?camera=3&resolution=CIF"),
+                Arguments.of("Hanwha", false, "704x480", "h264", "1", false, true,
+                        "http://192.168.100.001:80/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=2"),
+                Arguments.of("Hanwha", true, "", "", "", true, false,
+                        "https://proxy.example/rack.example/video/28401/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=2"),
+                Arguments.of("Hanwha", false, null, null, null, null, null,
+                        "http://rack.example:28001/stw-cgi/video.cgi?msubmenu=snapshot&action=view&Profile=1&Channel=2"));
+    }
+
+    static Stream<Arguments> videoUrls() {
+        return Stream.of(
+                Arguments.of("Axis", false, "", "", "", "", false, true, false,
+                        "http://192.168.100.001:80/mjpg/video.mjpg?camera=3"),
+                Arguments.of("Axis", true, "720x576", "h264", "1", "15", true, false, false,
+                        "https://proxy.example/rack.example/video/28401/mjpg/video.mjpg?camera=3&fps=15&squarepixel=1&resolution=D1&videocodec=h264"),
+                Arguments.of("Axis", false, "704x288", null, null, "30", true, false, false,
+                        "https://rack.example:28401/mjpg/video.mjpg?camera=3&fps=30&resolution=2CIF"),
+                Arguments.of("Axis", true, "720x480", "", "", "15", true, true, true,
+                        "rtsp://rack.example:25501/axis-media/media.amp?camera=3&fps=15&resolution=D1"),
+                Arguments.of("Axis", false, "1024x768", null, null, null, null, null, null,
+                        "http://rack.example:28001/mjpg/video.mjpg?camera=3&resolution=1024x768"),
+                Arguments.of("Hanwha", false, "4CIF", "", "1", "15", false, true, false,
+                        "http://192.168.100.001:80/stw-cgi/video.cgi?msubmenu=stream&action=view&Profile=1&Channel=2&FrameRate=15&Resolution=704x480&CodecType=MJPEG"),
+                Arguments.of("Hanwha", true, "1920x1080", "H264", null, null, false, false, false,
+                        "http://proxy.example/rack.example/video/28001/stw-cgi/video.cgi?msubmenu=stream&action=view&Profile=1&Channel=2&Resolution=1920x1080&CodecType=H264"),
+                Arguments.of("Hanwha", false, "", "", "", "", true, false, true,
+                        "rtsp://rack.example:25501/axis-media/media.amp?camera=2&CodecType=MJPEG"),
+                Arguments.of("Hanwha", false, null, null, null, null, null, null, null,
+                        "http://rack.example:28001/stw-cgi/video.cgi?msubmenu=stream&action=view&Profile=1&Channel=2&CodecType=MJPEG"));
+    }
+
+    private static VideoDevice device(String vendor, boolean useProxy) {
+        return vendor.equals("Axis")
+                ? new AxisVideoDevice(null, " ", "28001", "28401", "25501", "rack.example", "10.0.0.1", useProxy, PROXY_BASE_URL)
+                : new HanwhaVideoDevice(null, " ", "28001", "28401", "25501", "rack.example", "10.0.0.1", useProxy, PROXY_BASE_URL);
+    }
+
+    @ParameterizedTest
+    @MethodSource("snapshotUrls")
+    void generatesSnapshotUrl(String vendor, boolean useProxy, String resolution, String videoCodec, String squarePixel,
+                              Boolean useSSL, Boolean isLocal, String expected) {
+        assertEquals(expected, device(vendor, useProxy).getSnapShotUrl(3, resolution, videoCodec, squarePixel, useSSL, isLocal));
+    }
+
+    @ParameterizedTest
+    @MethodSource("videoUrls")
+    void generatesVideoUrl(String vendor, boolean useProxy, String resolution, String videoCodec, String squarePixel,
+                           String fps, Boolean useSSL, Boolean isLocal, Boolean isRtsp, String expected) {
+        assertEquals(expected, device(vendor, useProxy).getVideoUrl(3, resolution, videoCodec, squarePixel, fps, useSSL, isLocal, isRtsp));
+    }
+
+    @Test
+    void keepsUrlTemplateOutOfRecordComponents() {
+        AxisVideoDevice axis = new AxisVideoDevice("10.0.0.2", "8080", "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null);
+        axis.getSnapShotUrl(1, null, null, null, false, false);
+        AxisVideoDevice other = new AxisVideoDevice("10.0.0.2", "8080", "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null);
+
+        assertEquals(axis, other);
+        assertEquals(axis.hashCode(), other.hashCode());
+        assertEquals("AxisVideoDevice[internalIp=10.0.0.2, internalPort=8080, natPort=28001, natSSLPort=28401, natRTSPPort=25501, "
+                + "rackHost=rack.example, rackIp=10.0.0.1, useProxy=false, proxyBaseUrl=null]", axis.toString());
+        assertFalse(axis.equals(new HanwhaVideoDevice("10.0.0.2", "8080", "28001", "28401", "25501", "rack.example", "10.0.0.1", false, null)));
+    }
+}
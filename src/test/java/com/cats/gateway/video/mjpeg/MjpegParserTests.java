@@ -0,0 +1,167 @@
+package com.cats.gateway.video.mjpeg;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the MJPEG parser on streams split into buffers of various sizes, with and without part lengths, and of the
+ * release of the buffers of the stream.
+ */
+class MjpegParserTests {
+
+    private static final String BOUNDARY = "myboundary";
+
+    static Stream<Arguments> chunkings() {
+        List<Arguments> chunkings = new ArrayList<>();
+        for (boolean netty : new boolean[]{false, true}) {
+            for (boolean contentLength : new boolean[]{true, false}) {
+                for (int chunkSize : new int[]{1, 3, 17, 1000, 100000}) {
+                    chunkings.add(Arguments.of(netty ? "netty" : "heap", contentLength, chunkSize));
+                }
+            }
+        }
+        return chunkings.stream();
+    }
+
+    @ParameterizedTest(name = "{0} buffers, content length {1}, {2} byte chunks")
+    @MethodSource("chunkings")
+    void splitsFrames(String buffers, boolean contentLength, int chunkSize) {
+        List<byte[]> frames = frames(5);
+        byte[] stream = stream(frames, contentLength);
+        DataBufferFactory factory = "netty".equals(buffers) ? new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT) : DefaultDataBufferFactory.sharedInstance;
+        List<DataBuffer> chunks = chunk(factory, stream, chunkSize);
+
+        List<byte[]> parsed = MjpegParser.frames(Flux.fromIterable(chunks), MediaType.parseMediaType("multipart/x-mixed-replace; boundary=" + BOUNDARY), 1 << 20)
+                .map(MjpegParserTests::bytes)
+                .collectList()
+                .block();
+
+        assertEquals(frames.size(), parsed.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals(frames.get(i), parsed.get(i), "frame " + i);
+        }
+        assertReleased(chunks);
+    }
+
+    @Test
+    void takesBoundaryFromFirstPart() {
+        List<byte[]> frames = frames(3);
+        byte[] stream = stream(frames, false);
+        List<byte[]> parsed = MjpegParser.frames(Flux.fromIterable(chunk(DefaultDataBufferFactory.sharedInstance, stream, 64)), null, 1 << 20)
+                .map(MjpegParserTests::bytes)
+                .collectList()
+                .block();
+
+        assertEquals(frames.size(), parsed.size());
+        assertArrayEquals(frames.get(2), parsed.get(2));
+    }
+
+    @Test
+    void rejectsOversizedFrames() {
+        byte[] stream = stream(frames(2), true);
+        List<DataBuffer> chunks = chunk(new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT), stream, 256);
+        Flux<DataBuffer> frames = MjpegParser.frames(Flux.fromIterable(chunks), MediaType.parseMediaType("multipart/x-mixed-replace;boundary=" + BOUNDARY), 100);
+
+        assertThrows(IllegalStateException.class, frames::blockLast);
+        assertReleased(chunks);
+    }
+
+    private static List<byte[]> frames(int count) {
+        Random random = new Random(count);
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] frame = new byte[2000 + random.nextInt(3000)];
+            random.nextBytes(frame);
+            frame[0] = (byte) 0xFF;
+            frame[1] = (byte) 0xD8;
+            // bytes of the delimiter within a frame must not end it
+            byte[] partial = "\r\n--mybound".getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(partial, 0, frame, 100, partial.length);
+            frame[frame.length - 2] = (byte) 0xFF;
+            frame[frame.length - 1] = (byte) 0xD9;
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static byte[] stream(List<byte[]> frames, boolean contentLength) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            String headers = "--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\n"
+                    + (contentLength ? "Content-Length: " + frame.length + "\r\n" : "") + "\r\n";
+            stream.writeBytes(headers.getBytes(StandardCharsets.ISO_8859_1));
+            stream.writeBytes(frame);
+            stream.writeBytes("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        stream.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        return stream.toByteArray();
+    }
+
+    private static List<DataBuffer> chunk(DataBufferFactory factory, byte[] stream, int chunkSize) {
+        List<DataBuffer> chunks = new ArrayList<>();
+        for (int offset = 0; offset < stream.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, stream.length - offset);
+            DataBuffer chunk = factory.allocateBuffer(length);
+            chunk.write(stream, offset, length);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static byte[] bytes(DataBuffer frame) {
+        byte[] bytes = new byte[frame.readableByteCount()];
+        frame.read(bytes);
+        DataBufferUtils.release(frame);
+        return bytes;
+    }
+
+    private static void assertReleased(List<DataBuffer> chunks) {
+        for (DataBuffer chunk : chunks) {
+            if (chunk instanceof NettyDataBuffer nettyBuffer) {
+                ByteBuf byteBuf = nettyBuffer.getNativeBuffer();
+                assertEquals(0, byteBuf.refCnt(), "chunk not released");
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.cats.gateway.video.resource;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Parsing of slot selections given as lists of slots and slot ranges.
+ */
+class SlotRangeTests {
+
+    @Test
+    void parsesSlotsAndRangesInOrderWithoutDuplicates() {
+        assertEquals(List.of(1, 2, 3, 5, 7, 8), SlotRange.parse(" 7-8, 1-3,5 ,2,,"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " , ", "a", "1-", "3-1", "-1", "0-4096"})
+    void rejectsInvalidSelections(String slots) {
+        assertThrows(IllegalArgumentException.class, () -> SlotRange.parse(slots));
+    }
+}
@@ -0,0 +1,235 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.Device;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.video.DeviceCircuitBreakers;
+import com.cats.gateway.video.VideoDeviceClients;
+import com.cats.gateway.video.VideoDeviceFactory;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Relay of the MJPEG stream of a slot to its viewers: dropping the oldest frames of a slow viewer without holding back
+ * the others, closing the stream of the device once the last viewer has left, and the release of every frame.
+ */
+class MjpegRelayServiceTests {
+
+    private static final int SLOT = 1;
+
+    private static final String BOUNDARY = "frame";
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private final MjpegRelayService relayService = new MjpegRelayService();
+
+    private final List<Sinks.Many<DataBuffer>> streams = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger cancellations = new AtomicInteger();
+
+    private final List<ByteBuf> chunks = new CopyOnWriteArrayList<>();
+
+    private final List<Disposable> viewers = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Device device = new Device();
+        device.setId(1);
+        device.setInternalIp("127.0.0.1");
+        device.setType("Axis.P7216");
+        device.setMaxPort(4);
+        SlotToPortMappings mappings = new SlotToPortMappings();
+        mappings.setDevices(List.of(device));
+        mappings.addMapping(String.valueOf(SLOT), "1:1");
+        VideoDeviceFactory videoDeviceFactory = new VideoDeviceFactory();
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, mappings));
+
+        VideoDeviceClients videoDeviceClients = mock(VideoDeviceClients.class);
+        when(videoDeviceClients.forDevice(any())).thenReturn(WebClient.builder()
+                .exchangeFunction(request -> {
+                    Sinks.Many<DataBuffer> stream = Sinks.many().unicast().onBackpressureBuffer();
+                    streams.add(stream);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, "multipart/x-mixed-replace;boundary=" + BOUNDARY)
+                            .body(stream.asFlux().doOnCancel(cancellations::incrementAndGet))
+                            .build());
+                })
+                .build());
+
+        DeviceCircuitBreakers deviceCircuitBreakers = new DeviceCircuitBreakers();
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "failureThreshold", 3);
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "openDuration", 1000L);
+        ReflectionTestUtils.setField(deviceCircuitBreakers, "halfOpenCalls", 1);
+
+        ReflectionTestUtils.setField(relayService, "videoDeviceFactory", videoDeviceFactory);
+        ReflectionTestUtils.setField(relayService, "videoDeviceClients", videoDeviceClients);
+        ReflectionTestUtils.setField(relayService, "deviceCircuitBreakers", deviceCircuitBreakers);
+        ReflectionTestUtils.setField(relayService, "maxFrameSize", 1 << 20);
+        ReflectionTestUtils.setField(relayService, "bufferedFrames", 2);
+        ReflectionTestUtils.setField(relayService, "linger", 0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        viewers.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void dropsOldestFramesOfSlowViewerOnly() {
+        List<String> fast = watch();
+        SlowViewer slow = new SlowViewer();
+        relayService.frames(SLOT, "", "15").subscribe(slow);
+        viewers.add(slow);
+        for (int i = 1; i <= 5; i++) {
+            send("frame-" + i);
+        }
+
+        assertEquals(List.of("frame-1", "frame-2", "frame-3", "frame-4", "frame-5"), fast);
+        slow.request(Long.MAX_VALUE);
+        assertTrue(slow.frames.size() < 5, slow.frames.toString());
+        assertEquals(List.of("frame-4", "frame-5"), slow.frames.subList(slow.frames.size() - 2, slow.frames.size()));
+        send("frame-6");
+        assertEquals("frame-6", fast.get(5));
+        assertEquals("frame-6", slow.frames.get(slow.frames.size() - 1));
+        assertEquals(1, streams.size());
+    }
+
+    @Test
+    void releasesEveryFrame() {
+        watch();
+        SlowViewer slow = new SlowViewer();
+        relayService.frames(SLOT, "", "15").subscribe(slow);
+        viewers.add(slow);
+        for (int i = 1; i <= 5; i++) {
+            send("frame-" + i);
+        }
+        slow.request(1);
+        slow.cancel();
+        send("frame-6");
+
+        viewers.forEach(Disposable::dispose);
+        assertEquals(6, chunks.size());
+        chunks.forEach(chunk -> assertEquals(0, chunk.refCnt(), "chunk not released"));
+    }
+
+    @Test
+    void closesStreamOnceLastViewerLeaves() {
+        watch();
+        watch();
+        send("frame-1");
+
+        viewers.get(0).dispose();
+        assertEquals(0, cancellations.get());
+        viewers.get(1).dispose();
+        assertEquals(1, cancellations.get());
+        assertTrue(relays().isEmpty());
+
+        List<String> frames = watch();
+        send("frame-2");
+        assertEquals(2, streams.size());
+        assertEquals(List.of("frame-2"), frames);
+    }
+
+    @Test
+    void keepsStreamForViewerReturningWithinLinger() throws InterruptedException {
+        ReflectionTestUtils.setField(relayService, "linger", 200L);
+        watch();
+        viewers.get(0).dispose();
+        watch();
+
+        assertEquals(1, streams.size());
+        assertEquals(0, cancellations.get());
+        viewers.get(1).dispose();
+        Thread.sleep(600);
+        assertEquals(1, cancellations.get());
+        assertTrue(relays().isEmpty());
+    }
+
+    private List<String> watch() {
+        List<String> frames = new CopyOnWriteArrayList<>();
+        viewers.add(relayService.frames(SLOT, "", "15").map(MjpegRelayServiceTests::text).subscribe(frames::add));
+        return frames;
+    }
+
+    private void send(String frame) {
+        String part = "--" + BOUNDARY + "\r\nContent-Type: image/jpeg\r\nContent-Length: " + frame.length() + "\r\n\r\n" + frame + "\r\n";
+        ByteBuf chunk = PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(part.getBytes(StandardCharsets.ISO_8859_1));
+        chunks.add(chunk);
+        streams.get(streams.size() - 1).tryEmitNext(BUFFER_FACTORY.wrap(chunk)).orThrow();
+    }
+
+    private Map<?, ?> relays() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(relayService, "relays");
+    }
+
+    private static String text(DataBuffer frame) {
+        try {
+            return frame.toString(StandardCharsets.ISO_8859_1);
+        } finally {
+            DataBufferUtils.release(frame);
+        }
+    }
+
+    /**
+     * Viewer requesting frames only when asked to.
+     */
+    private static final class SlowViewer extends BaseSubscriber<DataBuffer> {
+
+        private final List<String> frames = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(DataBuffer frame) {
+            frames.add(text(frame));
+        }
+    }
+}
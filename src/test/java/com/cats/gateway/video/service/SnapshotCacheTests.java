@@ -0,0 +1,281 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.exceptions.VideoGatewayException;
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.video.VideoDeviceFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Hits, misses and joins of the snapshot cache, expiry, byte budget and the reference counts of the cached buffers.
+ */
+class SnapshotCacheTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static final NettyDataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    private VideoDeviceFactory videoDeviceFactory;
+
+    private MeterRegistry meterRegistry;
+
+    private SnapshotCache cache;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        videoDeviceFactory = new VideoDeviceFactory();
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, new SlotToPortMappings()));
+        meterRegistry = new SimpleMeterRegistry();
+        cache = cache(500, 1 << 20);
+    }
+
+    @Test
+    void servesCachedSnapshot() {
+        DataBuffer first = get(key(1), Long.MAX_VALUE, fetcher("one"));
+        DataBuffer second = get(key(1), Long.MAX_VALUE, fetcher("two"));
+
+        assertEquals("one", text(first));
+        assertEquals("one", text(second));
+        assertEquals(1, fetches.get());
+        assertEquals(1, count("video.snapshot.cache.misses"));
+        assertEquals(1, count("video.snapshot.cache.hits"));
+        assertEquals(3, cache.getBytes());
+    }
+
+    @Test
+    void joinsFetchInFlight() {
+        Sinks.One<ResponseEntity<Flux<DataBuffer>>> response = Sinks.one();
+        Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher = () -> {
+            fetches.incrementAndGet();
+            return response.asMono();
+        };
+        CompletableFuture<SnapshotCache.Snapshot> first = cache.get(key(1), Long.MAX_VALUE, fetcher).toFuture();
+        CompletableFuture<SnapshotCache.Snapshot> second = cache.get(key(1), Long.MAX_VALUE, fetcher).toFuture();
+        response.tryEmitValue(snapshot("one"));
+
+        assertEquals("one", text(first.join().body()));
+        assertEquals("one", text(second.join().body()));
+        assertEquals(1, fetches.get());
+        assertEquals(1, count("video.snapshot.cache.misses"));
+        assertEquals(1, count("video.snapshot.cache.joins"));
+    }
+
+    @Test
+    void fetchesExpiredSnapshot() throws InterruptedException {
+        cache = cache(50, 1 << 20);
+        release(get(key(1), Long.MAX_VALUE, fetcher("one")));
+        Thread.sleep(100);
+
+        assertEquals("two", text(get(key(1), Long.MAX_VALUE, fetcher("two"))));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void fetchesFreshSnapshotForZeroMaxAge() {
+        release(get(key(1), Long.MAX_VALUE, fetcher("one")));
+
+        assertEquals("two", text(get(key(1), 0, fetcher("two"))));
+        assertEquals("two", text(get(key(1), Long.MAX_VALUE, fetcher("three"))));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedSnapshotOverByteBudget() {
+        cache = cache(500, 10);
+        release(get(key(1), Long.MAX_VALUE, fetcher("aaaa")));
+        release(get(key(2), Long.MAX_VALUE, fetcher("bbbb")));
+        release(get(key(1), Long.MAX_VALUE, fetcher("xxxx")));
+        release(get(key(3), Long.MAX_VALUE, fetcher("cccc")));
+
+        assertEquals(8, cache.getBytes());
+        assertEquals(1, count("video.snapshot.cache.evictions"));
+        assertEquals("aaaa", text(get(key(1), Long.MAX_VALUE, fetcher("xxxx"))));
+        assertEquals("dddd", text(get(key(2), Long.MAX_VALUE, fetcher("dddd"))));
+        assertEquals(4, fetches.get());
+    }
+
+    @Test
+    void releasesCachedSnapshotWithLastView() {
+        DataBuffer view = get(key(1), Long.MAX_VALUE, fetcher("one"));
+        ByteBuf content = content(view);
+        assertEquals(2, content.refCnt());
+
+        cache.clear();
+        assertEquals(1, content.refCnt());
+        assertEquals(0, cache.getBytes());
+        assertEquals("one", text(view));
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    void releasesSnapshotNotCachedAfterMappingChange() {
+        Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher = () -> fetcher("one").get()
+                .doOnNext(response -> videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(2, new SlotToPortMappings())));
+        CompletableFuture<SnapshotCache.Snapshot> first = cache.get(key(1), Long.MAX_VALUE, fetcher).toFuture();
+        DataBuffer view = first.join().body();
+        ByteBuf content = content(view);
+
+        assertEquals(1, content.refCnt());
+        assertEquals(0, cache.getBytes());
+        release(view);
+        assertEquals(0, content.refCnt());
+    }
+
+    @Test
+    void keepsReceivedBufferWithoutCopying() {
+        DataBuffer received = buffer("one");
+        DataBuffer view = get(key(1), Long.MAX_VALUE, () -> Mono.just(snapshot(received)));
+
+        assertSame(content(received), content(view));
+        assertEquals("one", text(view));
+    }
+
+    @Test
+    void failsSnapshotOverByteBudget() {
+        cache = cache(500, 4);
+        DataBuffer first = buffer("too");
+        DataBuffer second = buffer("large");
+        ByteBuf firstContent = content(first);
+        ByteBuf secondContent = content(second);
+
+        VideoGatewayException failure = assertThrows(VideoGatewayException.class,
+                () -> get(key(1), Long.MAX_VALUE, () -> Mono.just(snapshot(first, second))));
+        assertEquals(HttpStatus.BAD_GATEWAY, failure.getStatusCode());
+        assertEquals(0, firstContent.refCnt());
+        assertEquals(0, secondContent.refCnt());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void releasesViewOfCancelledBody() {
+        SnapshotService snapshotService = new SnapshotService();
+        ReflectionTestUtils.setField(snapshotService, "snapshotCache", cache);
+        DataBuffer view = get(key(1), Long.MAX_VALUE, fetcher("one"));
+        ByteBuf content = content(view);
+        release(view);
+
+        ResponseEntity<Flux<DataBuffer>> response = snapshotService.getSnapshot(1, null, null, null).block(TIMEOUT);
+        assertEquals(2, content.refCnt());
+        response.getBody().subscribe(null, null, null, Subscription::cancel);
+        assertEquals(1, content.refCnt());
+        assertFalse(response.getBody().hasElements().block(TIMEOUT));
+    }
+
+    private SnapshotCache cache(long ttl, long maxBytes) {
+        SnapshotCache snapshotCache = new SnapshotCache();
+        ReflectionTestUtils.setField(snapshotCache, "videoDeviceFactory", videoDeviceFactory);
+        ReflectionTestUtils.setField(snapshotCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(snapshotCache, "ttl", ttl);
+        ReflectionTestUtils.setField(snapshotCache, "maxBytes", maxBytes);
+        meterRegistry.clear();
+        snapshotCache.registerMetrics();
+        return snapshotCache;
+    }
+
+    private DataBuffer get(SnapshotCache.Key key, long maxAge, Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher) {
+        return cache.get(key, maxAge, fetcher).block(TIMEOUT).body();
+    }
+
+    private Supplier<Mono<ResponseEntity<Flux<DataBuffer>>>> fetcher(String content) {
+        return () -> Mono.fromSupplier(() -> {
+            fetches.incrementAndGet();
+            return snapshot(content);
+        });
+    }
+
+    /**
+     * Snapshot received in two pooled buffers.
+     */
+    private static ResponseEntity<Flux<DataBuffer>> snapshot(String content) {
+        int half = content.length() / 2;
+        return snapshot(buffer(content.substring(0, half)), buffer(content.substring(half)));
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> snapshot(DataBuffer... buffers) {
+        return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(Flux.just(buffers));
+    }
+
+    private static DataBuffer buffer(String content) {
+        return BUFFER_FACTORY.wrap(PooledByteBufAllocator.DEFAULT.directBuffer().writeBytes(content.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static SnapshotCache.Key key(int slot) {
+        return new SnapshotCache.Key(slot, null, null, null);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).functionCounter().count();
+    }
+
+    /**
+     * Unwraps the cached buffer of a view.
+     */
+    private static ByteBuf content(DataBuffer view) {
+        ByteBuf content = ((NettyDataBuffer) view).getNativeBuffer();
+        while (content.unwrap() != null) {
+            content = content.unwrap();
+        }
+        return content;
+    }
+
+    /**
+     * Reads and releases a view.
+     */
+    private static String text(DataBuffer view) {
+        String text = view.toString(StandardCharsets.US_ASCII);
+        release(view);
+        return text;
+    }
+
+    private static void release(DataBuffer view) {
+        DataBufferUtils.release(view);
+    }
+}
@@ -0,0 +1,111 @@
+package com.cats.gateway.video.service;
+
+/*
+ * Copyright 2021 Comcast Cable Communications Management, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.cats.gateway.slotmapping.model.SlotMappingSnapshot;
+import com.cats.gateway.slotmapping.model.SlotToPortMappings;
+import com.cats.gateway.video.VideoDeviceFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hits, least recently used eviction, the bound under concurrent misses and invalidation on mapping changes of the url
+ * response cache.
+ */
+class UrlResponseCacheTests {
+
+    private final VideoDeviceFactory videoDeviceFactory = new VideoDeviceFactory();
+
+    private final UrlResponseCache cache = new UrlResponseCache();
+
+    @BeforeEach
+    void setUp() {
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(1, new SlotToPortMappings()));
+        ReflectionTestUtils.setField(cache, "videoDeviceFactory", videoDeviceFactory);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        cache.registerMetrics();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedResponse() {
+        assertEquals("1", get(1, "1"));
+        assertEquals("2", get(2, "2"));
+        assertEquals("1", get(1, "x"));
+        assertEquals("3", get(3, "3"));
+
+        assertEquals(2, cache.size());
+        assertEquals("1", get(1, "x"));
+        assertEquals("4", get(2, "4"));
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    void regeneratesResponseOfPreviousMappingVersion() {
+        assertEquals("1", get(1, "1"));
+        videoDeviceFactory.onMappingsChanged(new SlotMappingSnapshot(2, new SlotToPortMappings()));
+
+        assertEquals("2", get(1, "2"));
+        assertEquals("2", get(1, "x"));
+    }
+
+    @Test
+    void staysNearBoundUnderConcurrentMisses() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "maxEntries", 64);
+        int threads = 4;
+        List<Thread> workers = new ArrayList<>();
+        AtomicInteger mismatches = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 1000;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    get(offset + i, String.valueOf(offset + i));
+                    if (!get(offset, String.valueOf(offset)).equals(String.valueOf(offset))) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(0, mismatches.get());
+        assertTrue(cache.size() <= 64 + threads, String.valueOf(cache.size()));
+        assertEquals(2 * threads * 1000, cache.getHits() + cache.getMisses());
+    }
+
+    private String get(int slot, String url) {
+        UrlResponseCache.Key key = UrlResponseCache.Key.video(slot, "4cif", "h264", null, null, false, false, false);
+        return new String(cache.getOrGenerate(key, () -> url), StandardCharsets.UTF_8);
+    }
+}